@@ -1,5 +1,6 @@
 package com.patniom.api_guardian.config;
 
+import com.patniom.api_guardian.ratelimit.OverloadSheddingFilter;
 import com.patniom.api_guardian.ratelimit.RateLimitingFilter;
 import com.patniom.api_guardian.security.apikey.ApiKeyFilter;
 import com.patniom.api_guardian.security.jwt.JwtFilter;
@@ -19,6 +20,9 @@ public class SecurityConfig {
     @Autowired
     private ApiKeyFilter apiKeyFilter;
 
+    @Autowired
+    private OverloadSheddingFilter overloadSheddingFilter;
+
     @Autowired
     private RateLimitingFilter rateLimitingFilter;
 
@@ -50,14 +54,17 @@ public class SecurityConfig {
                 // FILTER EXECUTION ORDER (CRITICAL):
                 // 1. JWT Filter - Extracts user from token
                 // 2. API Key Filter - Validates API key and checks permissions
-                // 3. Rate Limiting Filter - Enforces rate limits based on tier
+                // 3. Overload Shedding Filter - Sheds low priority tiers first when saturated
+                // 4. Rate Limiting Filter - Enforces rate limits based on tier
 
                 .addFilterBefore(jwtFilter,
                         UsernamePasswordAuthenticationFilter.class)
                 .addFilterAfter(apiKeyFilter,
                         JwtFilter.class)
+                .addFilterAfter(overloadSheddingFilter,
+                        ApiKeyFilter.class)
                 .addFilterAfter(rateLimitingFilter,
-                        ApiKeyFilter.class);
+                        OverloadSheddingFilter.class);
 
         return http.build();
     }
@@ -1,11 +1,18 @@
 package com.patniom.api_guardian.controller;
 
 import com.patniom.api_guardian.ratelimit.AbuseDetectionService;
-import com.patniom.api_guardian.ratelimit.RateLimiterService;
+import com.patniom.api_guardian.ratelimit.BanEntry;
+import com.patniom.api_guardian.ratelimit.CidrBanService;
+import com.patniom.api_guardian.ratelimit.CidrImportResult;
+import com.patniom.api_guardian.ratelimit.GuardDecisionService;
+import com.patniom.api_guardian.ratelimit.StateMemoryReporter;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,7 +23,13 @@ public class AdminController {
     private AbuseDetectionService abuseDetectionService;
 
     @Autowired
-    private RateLimiterService rateLimiterService;
+    private GuardDecisionService guardDecisionService;
+
+    @Autowired
+    private CidrBanService cidrBanService;
+
+    @Autowired
+    private StateMemoryReporter stateMemoryReporter;
 
     /**
      * Clear ban for specific identifier
@@ -31,6 +44,43 @@ public class AdminController {
         ));
     }
 
+    /**
+     * Ban an identifier manually
+     * POST /api/admin/ban/{identifier}?seconds=300
+     */
+    @PostMapping("/ban/{identifier}")
+    public ResponseEntity<?> ban(@PathVariable String identifier,
+                                 @RequestParam(defaultValue = "300") long seconds) {
+        if (seconds <= 0) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "seconds must be positive"
+            ));
+        }
+        abuseDetectionService.ban(identifier, seconds);
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Banned " + identifier + " for " + seconds + " seconds"
+        ));
+    }
+
+    /**
+     * List active bans, soonest expiry first
+     * GET /api/admin/bans?page=0&size=100
+     */
+    @GetMapping("/bans")
+    public ResponseEntity<?> listBans(@RequestParam(defaultValue = "0") int page,
+                                      @RequestParam(defaultValue = "100") int size) {
+        int pageSize = Math.max(1, Math.min(size, 1000));
+        List<BanEntry> bans = abuseDetectionService.listBans(Math.max(0, page), pageSize);
+        return ResponseEntity.ok(Map.of(
+                "page", Math.max(0, page),
+                "size", pageSize,
+                "total", abuseDetectionService.countActiveBans(),
+                "bans", bans
+        ));
+    }
+
     /**
      * Clear all bans (use carefully!)
      * POST /api/admin/ban/clear-all
@@ -68,10 +118,84 @@ public class AdminController {
      */
     @PostMapping("/ratelimit/reset/{identifier}")
     public ResponseEntity<?> resetRateLimit(@PathVariable String identifier) {
-        rateLimiterService.resetRateLimit(identifier);
+        guardDecisionService.resetRateLimit(identifier);
         return ResponseEntity.ok(Map.of(
                 "success", true,
                 "message", "Rate limit reset for: " + identifier
         ));
     }
-}
\ No newline at end of file
+
+    /**
+     * Sampled Redis memory per identifier (state hash size, fields, encoding)
+     * GET /api/admin/ratelimit/memory?sample=1000
+     */
+    @GetMapping("/ratelimit/memory")
+    public ResponseEntity<?> stateMemory(@RequestParam(defaultValue = "1000") int sample) {
+        return ResponseEntity.ok(stateMemoryReporter.report(Math.max(1, Math.min(sample, 10000))));
+    }
+
+    /**
+     * Ban a subnet (or single address)
+     * POST /api/admin/ban/cidr?cidr=1.2.3.0/24&ttlSeconds=3600 (ttlSeconds 0 = permanent)
+     */
+    @PostMapping("/ban/cidr")
+    public ResponseEntity<?> banCidr(@RequestParam String cidr,
+                                     @RequestParam(defaultValue = "0") long ttlSeconds) {
+        try {
+            String canonical = cidrBanService.ban(cidr, ttlSeconds);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", "Subnet banned: " + canonical
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Remove a subnet ban
+     * DELETE /api/admin/ban/cidr?cidr=1.2.3.0/24
+     */
+    @DeleteMapping("/ban/cidr")
+    public ResponseEntity<?> unbanCidr(@RequestParam String cidr) {
+        try {
+            boolean removed = cidrBanService.unban(cidr);
+            return ResponseEntity.ok(Map.of(
+                    "success", removed,
+                    "message", removed ? "Subnet ban cleared for: " + cidr : "No subnet ban for: " + cidr
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Bulk import a blocklist, streamed (text/plain, one address or CIDR per line)
+     * POST /api/admin/ban/cidr/import?ttlSeconds=0
+     */
+    @PostMapping(value = "/ban/cidr/import", consumes = "text/plain")
+    public ResponseEntity<?> importCidrBlocklist(HttpServletRequest request,
+                                                 @RequestParam(defaultValue = "0") long ttlSeconds) {
+        try {
+            CidrImportResult result = cidrBanService.importBlocklist(request.getInputStream(), ttlSeconds);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "imported", result.getImported(),
+                    "rejected", result.getRejected(),
+                    "errors", result.getErrors(),
+                    "totalCidrBans", result.getTotalCidrBans()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", "Import failed: " + e.getMessage()
+            ));
+        }
+    }
+}
@@ -3,17 +3,24 @@ package com.patniom.api_guardian.controller;
 import com.patniom.api_guardian.security.apikey.ApiKey;
 import com.patniom.api_guardian.security.apikey.ApiKeyService;
 import com.patniom.api_guardian.security.apikey.GeneratedApiKeyResponse;
+import com.patniom.api_guardian.usage.ApiKeyUsageStore;
+import com.patniom.api_guardian.usage.UsageGranularity;
+import com.patniom.api_guardian.usage.UsageStats;
 import jakarta.validation.Valid;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/keys")
@@ -22,6 +29,9 @@ public class ApiKeyController {
     @Autowired
     private ApiKeyService apiKeyService;
 
+    @Autowired
+    private ApiKeyUsageStore apiKeyUsageStore;
+
     /**
      * Generate a new API key
      * POST /api/keys/generate
@@ -231,25 +241,57 @@ public class ApiKeyController {
 
     /**
      * Get API key statistics
-     * GET /api/keys/{keyId}/stats
+     * GET /api/keys/{keyId}/stats?from=2026-01-01T00:00:00Z&to=...&granularity=HOUR
+     *
+     * Defaults to the last 24 hours; granularity (MINUTE, HOUR, DAY) is picked
+     * from the range when omitted. Served from pre-aggregated usage buckets.
+     *
+     * SECURITY: Only the owner can read their key's usage
      */
     @GetMapping("/{keyId}/stats")
-    public ResponseEntity<?> getApiKeyStats(@PathVariable String keyId) {
+    public ResponseEntity<?> getApiKeyStats(
+            @PathVariable String keyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) UsageGranularity granularity) {
         try {
             String userId = SecurityContextHolder.getContext()
                     .getAuthentication()
                     .getName();
 
-            // TODO: Implement stats retrieval from MongoDB
-            // TODO: Add ownership check
+            Optional<ApiKey> apiKey = apiKeyService.getUserApiKey(userId, keyId);
+            if (apiKey.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(createErrorResponse("Not Found", "API key not found"));
+            }
+
+            Instant rangeEnd = to != null ? to : Instant.now();
+            Instant rangeStart = from != null ? from : rangeEnd.minus(Duration.ofHours(24));
+            if (!rangeStart.isBefore(rangeEnd)) {
+                return ResponseEntity.badRequest()
+                        .body(createErrorResponse("Bad Request", "'from' must be before 'to'"));
+            }
+
+            UsageStats stats = apiKeyUsageStore.stats(keyId, rangeStart, rangeEnd, granularity);
 
             Map<String, Object> body = new HashMap<>();
             body.put("success", true);
-            body.put("message", "Stats endpoint - to be implemented with analytics");
             body.put("keyId", keyId);
+            body.put("from", stats.from());
+            body.put("to", stats.to());
+            body.put("granularity", stats.granularity());
+            body.put("totalRequests", stats.totalRequests());
+            body.put("successfulRequests", stats.successfulRequests());
+            body.put("failedRequests", stats.failedRequests());
+            body.put("buckets", stats.buckets());
+            body.put("lifetimeRequests", apiKey.get().getTotalRequests()); // Safe even if null
+            body.put("lastUsedAt", apiKey.get().getLastUsedAt());
 
             return ResponseEntity.ok(body);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Bad Request", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(createErrorResponse("Internal Server Error", e.getMessage()));
@@ -0,0 +1,267 @@
+package com.patniom.api_guardian.kafka;
+
+import com.patniom.api_guardian.kafka.events.ApiKeyUsageEvent;
+import com.patniom.api_guardian.security.apikey.ApiKey;
+import com.patniom.api_guardian.usage.ApiKeyUsageStore;
+import com.patniom.api_guardian.usage.UsageCount;
+import com.patniom.api_guardian.usage.UsageGranularity;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Aggregates api-key-usage events into per-key counters and writes them to
+ * the api_keys collection in bulk, committing the Kafka offsets only after
+ * the write succeeded (at-least-once usage accounting).
+ *
+ * Listener threads add into LongAdder counters (no shared lock) and then
+ * hand over their batch's Acknowledgment. A flush - once flush-size events
+ * are pending, or every flush-ms - first takes the pending acks, then
+ * drains the counters, so every acked batch is fully contained in what it
+ * writes. The acks are released once the bulk write succeeded; on failure
+ * counts and acks stay queued for the next flush. A crash before that
+ * redelivers the uncommitted batches.
+ *
+ * The same events are also counted per key and minute for the usage
+ * history (ApiKeyUsageStore). That map is swapped out at each flush; the
+ * read lock, taken once per batch, only keeps a swap from happening in the
+ * middle of one. The two writes are retried independently, and the acks
+ * wait for both.
+ */
+@Slf4j
+@Component
+public class ApiKeyUsageAggregator {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApiKeyUsageStore usageStore;
+
+    @Value("${kafka.usage.flush-size:1000}")
+    private long flushSize;
+
+    private final Map<String, KeyUsage> usage = new ConcurrentHashMap<>();
+    private final Queue<Acknowledgment> pendingAcks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile Map<MinuteKey, MinuteUsage> minutes = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock minutesLock = new ReentrantReadWriteLock();
+
+    /**
+     * Count a polled batch; its offsets are committed by the flush that persists it
+     */
+    public void add(List<ApiKeyUsageEvent> events, Acknowledgment ack) {
+        minutesLock.readLock().lock();
+        try {
+            Map<MinuteKey, MinuteUsage> current = minutes;
+            for (ApiKeyUsageEvent event : events) {
+                if (event == null || event.getApiKeyId() == null) {
+                    continue;
+                }
+                usage.computeIfAbsent(event.getApiKeyId(), id -> new KeyUsage()).add(event);
+
+                long at = event.getTimestamp() != null ? toEpochMs(event.getTimestamp()) : System.currentTimeMillis();
+                current.computeIfAbsent(new MinuteKey(event.getApiKeyId(), UsageGranularity.MINUTE.truncate(at)),
+                        key -> new MinuteUsage()).add(event.isSuccess());
+            }
+        } finally {
+            minutesLock.readLock().unlock();
+        }
+        pendingAcks.add(ack);
+
+        // Size-triggered flush on the listener thread; skipped while another flush runs
+        if (pendingEvents.addAndGet(events.size()) >= flushSize && flushLock.tryLock()) {
+            try {
+                flushLocked();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${kafka.usage.flush-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void flushLocked() {
+        // Acks first: each was queued after its batch was fully counted
+        List<Acknowledgment> acks = new ArrayList<>();
+        for (Acknowledgment ack; (ack = pendingAcks.poll()) != null; ) {
+            acks.add(ack);
+        }
+        pendingEvents.set(0);
+
+        Map<String, UsageSnapshot> dirty = new HashMap<>();
+        usage.forEach((apiKeyId, keyUsage) -> {
+            UsageSnapshot snapshot = keyUsage.drain();
+            if (snapshot.totalRequests() > 0) {
+                dirty.put(apiKeyId, snapshot);
+            } else {
+                keyUsage.restore(snapshot); // Keeps a timestamp that raced ahead of its count
+            }
+        });
+
+        Map<MinuteKey, MinuteUsage> drained;
+        minutesLock.writeLock().lock();
+        try {
+            drained = minutes;
+            minutes = new ConcurrentHashMap<>();
+        } finally {
+            minutesLock.writeLock().unlock();
+        }
+        List<UsageCount> counts = new ArrayList<>(drained.size());
+        drained.forEach((key, minute) -> counts.add(new UsageCount(key.apiKeyId(), key.minuteStartMs(),
+                minute.successfulRequests.sum(), minute.failedRequests.sum())));
+
+        boolean countersWritten = dirty.isEmpty() || write(dirty);
+        boolean historyWritten = usageStore.record(counts);
+
+        if (!countersWritten) {
+            dirty.forEach((apiKeyId, snapshot) ->
+                    usage.computeIfAbsent(apiKeyId, id -> new KeyUsage()).restore(snapshot));
+        }
+        if (!historyWritten) {
+            restoreMinutes(drained);
+        }
+        if (!countersWritten || !historyWritten) {
+            pendingAcks.addAll(acks);
+            return;
+        }
+
+        // Committed on each consumer's next poll
+        acks.forEach(Acknowledgment::acknowledge);
+    }
+
+    /**
+     * One unordered bulk write of atomic $inc / $max updates, so nothing is
+     * read first and concurrent edits to other fields of the key are never
+     * overwritten. Keys deleted meanwhile match nothing (no upsert - that
+     * would create a bare key).
+     */
+    private boolean write(Map<String, UsageSnapshot> dirty) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class);
+        dirty.forEach((apiKeyId, snapshot) -> {
+            Update update = new Update()
+                    .inc("totalRequests", snapshot.totalRequests())
+                    .inc("successfulRequests", snapshot.successfulRequests())
+                    .inc("failedRequests", snapshot.failedRequests());
+            if (snapshot.lastUsedAtMs() > 0) {
+                update.max("lastUsedAt", LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(snapshot.lastUsedAtMs()), ZoneId.systemDefault()));
+            }
+            bulk.updateOne(Query.query(Criteria.where("id").is(apiKeyId)), update);
+        });
+
+        try {
+            bulk.execute();
+
+            long requests = dirty.values().stream().mapToLong(UsageSnapshot::totalRequests).sum();
+            log.info("💾 Flushed usage stats to MongoDB for {} API key(s) (+{} requests)",
+                    dirty.size(), requests);
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush usage stats to MongoDB: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void restoreMinutes(Map<MinuteKey, MinuteUsage> drained) {
+        minutesLock.readLock().lock();
+        try {
+            Map<MinuteKey, MinuteUsage> current = minutes;
+            drained.forEach((key, minute) -> {
+                MinuteUsage target = current.computeIfAbsent(key, k -> new MinuteUsage());
+                target.successfulRequests.add(minute.successfulRequests.sum());
+                target.failedRequests.add(minute.failedRequests.sum());
+            });
+        } finally {
+            minutesLock.readLock().unlock();
+        }
+    }
+
+    private static long toEpochMs(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Striped counters of one key; drain() hands them over without blocking adders
+     */
+    private static class KeyUsage {
+        private final LongAdder successfulRequests = new LongAdder();
+        private final LongAdder failedRequests = new LongAdder();
+        private final LongAccumulator lastUsedAtMs = new LongAccumulator(Math::max, 0);
+
+        void add(ApiKeyUsageEvent event) {
+            (event.isSuccess() ? successfulRequests : failedRequests).increment();
+            if (event.getTimestamp() != null) {
+                lastUsedAtMs.accumulate(toEpochMs(event.getTimestamp()));
+            }
+        }
+
+        UsageSnapshot drain() {
+            long successful = successfulRequests.sumThenReset();
+            long failed = failedRequests.sumThenReset();
+            return new UsageSnapshot(successful + failed, successful, failed, lastUsedAtMs.getThenReset());
+        }
+
+        void restore(UsageSnapshot snapshot) {
+            successfulRequests.add(snapshot.successfulRequests());
+            failedRequests.add(snapshot.failedRequests());
+            lastUsedAtMs.accumulate(snapshot.lastUsedAtMs());
+        }
+    }
+
+    private record MinuteKey(String apiKeyId, long minuteStartMs) {
+    }
+
+    private static class MinuteUsage {
+        private final LongAdder successfulRequests = new LongAdder();
+        private final LongAdder failedRequests = new LongAdder();
+
+        void add(boolean success) {
+            (success ? successfulRequests : failedRequests).increment();
+        }
+    }
+
+    private record UsageSnapshot(long totalRequests, long successfulRequests,
+                                 long failedRequests, long lastUsedAtMs) {
+    }
+}
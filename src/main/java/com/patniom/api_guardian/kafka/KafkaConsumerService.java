@@ -1,28 +1,20 @@
 package com.patniom.api_guardian.kafka;
 
 import com.patniom.api_guardian.kafka.events.*;
-import com.patniom.api_guardian.security.apikey.ApiKey;
-import com.patniom.api_guardian.security.apikey.ApiKeyRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.List;
 
 @Slf4j
 @Service
 public class KafkaConsumerService {
 
     @Autowired
-    private ApiKeyRepository apiKeyRepository;
-
-    // In-memory cache for batching API key usage updates
-    private final Map<String, UsageStats> usageCache = new HashMap<>();
+    private ApiKeyUsageAggregator usageAggregator;
 
     /**
      * Consumer for API Request events
@@ -75,44 +67,19 @@ public class KafkaConsumerService {
     /**
      * Consumer for API Key Usage events
      * CRITICAL: This solves the MongoDB hot-path issue!
-     * Batch updates MongoDB instead of writing on every request
+     * Batch updates MongoDB instead of writing on every request: whole polls
+     * are counted by ApiKeyUsageAggregator, and their offsets are committed
+     * only once the aggregate is persisted
      */
     @KafkaListener(
             topics = "${kafka.topics.api-key-usage}",
             groupId = "api-key-usage-tracker",
-            concurrency = "2"
+            concurrency = "2",
+            containerFactory = "batchKafkaListenerContainerFactory"
     )
-    public void consumeApiKeyUsage(ApiKeyUsageEvent event, Acknowledgment ack) {
-        try {
-            log.debug("📊 Received API key usage: {} for {}",
-                    event.getApiKeyId(), event.getEndpoint());
-
-            // Accumulate usage in memory
-            synchronized (usageCache) {
-                UsageStats stats = usageCache.computeIfAbsent(
-                        event.getApiKeyId(),
-                        k -> new UsageStats()
-                );
-
-                stats.totalRequests++;
-                if (event.isSuccess()) {
-                    stats.successfulRequests++;
-                } else {
-                    stats.failedRequests++;
-                }
-                stats.lastUsedAt = event.getTimestamp();
-
-                // Batch flush to MongoDB every 100 requests
-                if (stats.totalRequests % 100 == 0) {
-                    flushUsageToMongoDB(event.getApiKeyId(), stats);
-                    usageCache.remove(event.getApiKeyId());
-                }
-            }
-
-            ack.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing API key usage event: {}", e.getMessage());
-        }
+    public void consumeApiKeyUsage(List<ApiKeyUsageEvent> events, Acknowledgment ack) {
+        log.debug("📊 Received {} API key usage event(s)", events.size());
+        usageAggregator.add(events, ack);
     }
 
     /**
@@ -140,67 +107,4 @@ public class KafkaConsumerService {
             log.error("Error processing ban event: {}", e.getMessage());
         }
     }
-
-    /**
-     * Flush accumulated usage stats to MongoDB
-     */
-    private void flushUsageToMongoDB(String apiKeyId, UsageStats stats) {
-        try {
-            Optional<ApiKey> apiKeyOpt = apiKeyRepository.findById(apiKeyId);
-
-            if (apiKeyOpt.isPresent()) {
-                ApiKey apiKey = apiKeyOpt.get();
-
-                // Update usage statistics
-                apiKey.setTotalRequests(
-                        (apiKey.getTotalRequests() != null ? apiKey.getTotalRequests() : 0L)
-                                + stats.totalRequests
-                );
-                apiKey.setSuccessfulRequests(
-                        (apiKey.getSuccessfulRequests() != null ? apiKey.getSuccessfulRequests() : 0L)
-                                + stats.successfulRequests
-                );
-                apiKey.setFailedRequests(
-                        (apiKey.getFailedRequests() != null ? apiKey.getFailedRequests() : 0L)
-                                + stats.failedRequests
-                );
-                apiKey.setLastUsedAt(stats.lastUsedAt);
-
-                apiKeyRepository.save(apiKey);
-
-                log.info("💾 Flushed usage stats to MongoDB for API key: {} (+{} requests)",
-                        apiKeyId, stats.totalRequests);
-            }
-        } catch (Exception e) {
-            log.error("Failed to flush usage stats to MongoDB: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Scheduled job to flush remaining usage stats
-     * Runs every 5 minutes to ensure data is eventually consistent
-     */
-    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 300000) // 5 minutes
-    public void scheduledFlush() {
-        log.info("🔄 Running scheduled flush of API key usage stats...");
-
-        synchronized (usageCache) {
-            usageCache.forEach((apiKeyId, stats) -> {
-                flushUsageToMongoDB(apiKeyId, stats);
-            });
-            usageCache.clear();
-        }
-
-        log.info("✅ Scheduled flush complete");
-    }
-
-    /**
-     * Internal class to accumulate usage statistics
-     */
-    private static class UsageStats {
-        long totalRequests = 0;
-        long successfulRequests = 0;
-        long failedRequests = 0;
-        LocalDateTime lastUsedAt;
-    }
-}
\ No newline at end of file
+}
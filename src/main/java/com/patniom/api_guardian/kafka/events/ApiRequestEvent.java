@@ -16,7 +16,7 @@ public class ApiRequestEvent {
     private String identifier;       // USER:xxx, KEY:xxx, or IP:xxx
     private String endpoint;         // /api/test/hello
     private String httpMethod;       // GET, POST, etc.
-    private String decision;         // ALLOW, RATE_LIMIT, BANNED
+    private String decision;         // ALLOW, RATE_LIMIT, BANNED, SHED
     private String tier;             // FREE, BASIC, PREMIUM, ENTERPRISE
     private Integer statusCode;      // 200, 429, 403
     private Long responseTimeMs;     // How long the request took
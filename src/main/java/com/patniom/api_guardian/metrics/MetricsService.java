@@ -1,6 +1,7 @@
 package com.patniom.api_guardian.metrics;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -8,7 +9,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
 
 @Slf4j
 @Service
@@ -23,11 +26,22 @@ public class MetricsService {
     private final Counter requestsBanned;
     private final Counter violationsTotal;
     private final Counter bansTotal;
+    private final Counter leaseRedisCalls;
+    private final Counter leaseLocalAdmits;
+    private final Counter leaseTokensReturned;
+    private final Counter leaseTokensExpired;
+    private final Counter ipAdmitted;
+    private final Counter ipAggregated;
 
     private final AtomicLong activeBans = new AtomicLong(0);
     private final AtomicLong activeApiKeys = new AtomicLong(0);
+    private final AtomicLong leaseOutstanding = new AtomicLong(0);
+    private final AtomicLong redisBreakerState = new AtomicLong(0);
+    private final AtomicLong cidrBans = new AtomicLong(0);
+    private final AtomicLong overloadShedLevel = new AtomicLong(0); // x1000
 
     private final Timer requestDuration;
+    private final DistributionSummary redisBatchSize;
 
     // ===== DYNAMIC METERS (SEPARATED CACHES) =====
     private final ConcurrentHashMap<String, Counter> endpointCounters = new ConcurrentHashMap<>();
@@ -35,6 +49,12 @@ public class MetricsService {
     private final ConcurrentHashMap<String, Counter> violationCounters = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Counter> banCounters = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Counter> kafkaCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> apiKeyCacheCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> shapingCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> overloadShedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> semaphoreRejectedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> concurrencyShedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> fallbackCounters = new ConcurrentHashMap<>();
 
     public MetricsService(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
@@ -64,6 +84,34 @@ public class MetricsService {
                 .description("Total bans applied")
                 .register(meterRegistry);
 
+        // ---- Token leasing ----
+        this.leaseRedisCalls = Counter.builder("api_guardian_lease_redis_calls_total")
+                .description("Token lease requests sent to Redis")
+                .register(meterRegistry);
+
+        this.leaseLocalAdmits = Counter.builder("api_guardian_lease_local_admits_total")
+                .description("Requests admitted from a local token lease")
+                .register(meterRegistry);
+
+        this.leaseTokensReturned = Counter.builder("api_guardian_lease_tokens_returned_total")
+                .description("Unused leased tokens returned to Redis")
+                .register(meterRegistry);
+
+        this.leaseTokensExpired = Counter.builder("api_guardian_lease_tokens_expired_total")
+                .description("Leased tokens that expired unused")
+                .register(meterRegistry);
+
+        // ---- IP admission ----
+        this.ipAdmitted = Counter.builder("api_guardian_ip_admission_total")
+                .tag("result", "admitted")
+                .description("IP lookups limited on their own state or their subnet's aggregate")
+                .register(meterRegistry);
+
+        this.ipAggregated = Counter.builder("api_guardian_ip_admission_total")
+                .tag("result", "aggregated")
+                .description("IP lookups limited on their own state or their subnet's aggregate")
+                .register(meterRegistry);
+
         // ---- Gauges ----
         Gauge.builder("api_guardian_active_bans", activeBans, AtomicLong::get)
                 .description("Currently active bans")
@@ -73,11 +121,32 @@ public class MetricsService {
                 .description("Active API keys")
                 .register(meterRegistry);
 
+        Gauge.builder("api_guardian_lease_tokens_outstanding", leaseOutstanding, AtomicLong::get)
+                .description("Leased tokens held by this node (upper bound on over-admission)")
+                .register(meterRegistry);
+
+        Gauge.builder("api_guardian_redis_circuit_state", redisBreakerState, AtomicLong::get)
+                .description("Redis circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+
+        Gauge.builder("api_guardian_cidr_bans", cidrBans, AtomicLong::get)
+                .description("Banned CIDR prefixes in this node's index")
+                .register(meterRegistry);
+
+        Gauge.builder("api_guardian_overload_shed_level", overloadShedLevel, v -> v.get() / 1000.0)
+                .description("Overload shed level (0 = none, 1 = all anonymous, ... 5 = everything)")
+                .register(meterRegistry);
+
         // ---- Timer ----
         this.requestDuration = Timer.builder("api_guardian_request_duration")
                 .description("Request processing latency")
                 .publishPercentileHistogram()
                 .register(meterRegistry);
+
+        // ---- Redis batching ----
+        this.redisBatchSize = DistributionSummary.builder("api_guardian_redis_batch_size")
+                .description("Calls sent per pipelined Redis flush")
+                .register(meterRegistry);
     }
 
     // ================= REQUEST METRICS =================
@@ -140,8 +209,11 @@ public class MetricsService {
         return Timer.start(meterRegistry);
     }
 
-    public void stopTimer(Timer.Sample sample) {
-        sample.stop(requestDuration);
+    /**
+     * Records the request duration; returns it (ns) for the adaptive concurrency limit
+     */
+    public long stopTimer(Timer.Sample sample) {
+        return sample.stop(requestDuration);
     }
 
     // ================= VIOLATION & BAN =================
@@ -161,7 +233,6 @@ public class MetricsService {
 
     public void recordBan(String identifier, long durationSeconds) {
         bansTotal.increment();
-        activeBans.incrementAndGet();
 
         String type = extractIdentifierType(identifier);
         Counter counter = banCounters.computeIfAbsent(type, t ->
@@ -176,8 +247,21 @@ public class MetricsService {
                 .record(durationSeconds);
     }
 
-    public void recordBanExpired() {
-        activeBans.decrementAndGet();
+    public void setCidrBans(long count) {
+        cidrBans.set(count);
+    }
+
+    /**
+     * Active bans as counted by the ban registry (not incremented per ban, so it can't drift)
+     */
+    public void setActiveBans(long count) {
+        activeBans.set(count);
+    }
+
+    public void recordBansExpired(long count) {
+        if (count > 0) {
+            meterRegistry.counter("api_guardian_bans_expired_total").increment(count);
+        }
     }
 
     private String extractIdentifierType(String identifier) {
@@ -186,6 +270,125 @@ public class MetricsService {
                 : "UNKNOWN";
     }
 
+    // ================= TOKEN LEASING =================
+
+    public void recordLeaseRedisCall() {
+        leaseRedisCalls.increment();
+    }
+
+    public void recordLeaseLocalAdmit() {
+        leaseLocalAdmits.increment();
+    }
+
+    public void recordLeaseTokensReturned(long tokens) {
+        if (tokens > 0) leaseTokensReturned.increment(tokens);
+    }
+
+    public void recordLeaseTokensExpired(long tokens) {
+        if (tokens > 0) leaseTokensExpired.increment(tokens);
+    }
+
+    public void addLeaseOutstanding(long delta) {
+        leaseOutstanding.addAndGet(delta);
+    }
+
+    // ================= REDIS BATCHING =================
+
+    public void recordRedisBatch(int size) {
+        redisBatchSize.record(size);
+    }
+
+    // ================= REDIS CIRCUIT BREAKER =================
+
+    public void setRedisBreakerState(int state) {
+        redisBreakerState.set(state);
+    }
+
+    public void recordRateLimitFallback(String mode) {
+        Counter counter = fallbackCounters.computeIfAbsent(mode, k ->
+                Counter.builder("api_guardian_ratelimit_fallback_total")
+                        .tag("mode", mode)
+                        .description("Rate limit decisions made by the fallback while Redis is unavailable")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    // ================= ADAPTIVE CONCURRENCY =================
+
+    public <T> void registerConcurrencyLimit(String route, T limit,
+                                             ToDoubleFunction<T> current, ToDoubleFunction<T> inFlight) {
+        Gauge.builder("api_guardian_concurrency_limit", limit, current)
+                .tag("route", route)
+                .description("Adaptive in-flight request limit")
+                .register(meterRegistry);
+
+        Gauge.builder("api_guardian_concurrency_in_flight", limit, inFlight)
+                .tag("route", route)
+                .description("Requests currently in flight under the adaptive limit")
+                .register(meterRegistry);
+    }
+
+    public void recordConcurrencyShed(String route) {
+        Counter counter = concurrencyShedCounters.computeIfAbsent(route, k ->
+                Counter.builder("api_guardian_concurrency_shed_total")
+                        .tag("route", route)
+                        .description("Requests shed by the adaptive concurrency limit")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    public void recordSemaphoreRejected(String name) {
+        Counter counter = semaphoreRejectedCounters.computeIfAbsent(name, k ->
+                Counter.builder("api_guardian_semaphore_rejected_total")
+                        .tag("name", name)
+                        .description("Requests rejected by a distributed semaphore")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    // ================= OVERLOAD SHEDDING =================
+
+    public void setOverloadShedLevel(double level) {
+        overloadShedLevel.set(Math.round(level * 1000));
+    }
+
+    public void recordOverloadShed(String priority) {
+        Counter counter = overloadShedCounters.computeIfAbsent(priority, k ->
+                Counter.builder("api_guardian_overload_shed_total")
+                        .tag("priority", priority)
+                        .description("Requests shed by overload priority")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    // ================= REQUEST SHAPING =================
+
+    public void registerParkedRequests(AtomicInteger parked) {
+        Gauge.builder("api_guardian_shaping_parked_requests", parked, AtomicInteger::get)
+                .description("Rate limited requests parked until the limiter admits them")
+                .register(meterRegistry);
+    }
+
+    public void recordShapingOutcome(String outcome) {
+        Counter counter = shapingCounters.computeIfAbsent(outcome, k ->
+                Counter.builder("api_guardian_shaping_total")
+                        .tag("outcome", outcome)
+                        .description("Shaped (parked) rate limited requests by outcome")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    // ================= IP ADMISSION =================
+
+    public void recordAdmission(boolean ownState) {
+        (ownState ? ipAdmitted : ipAggregated).increment();
+    }
+
     // ================= API KEY =================
 
     public void setActiveApiKeys(long count) {
@@ -212,6 +415,20 @@ public class MetricsService {
         counter.increment();
     }
 
+    public void recordApiKeyWriteBehind(int updates) {
+        meterRegistry.counter("api_guardian_api_key_write_behind_updates_total").increment(updates);
+    }
+
+    public void recordApiKeyCache(String result) {
+        Counter counter = apiKeyCacheCounters.computeIfAbsent(result, k ->
+                Counter.builder("api_guardian_api_key_cache_total")
+                        .tag("result", result)
+                        .description("API key cache lookups by result")
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
     // ================= KAFKA =================
 
     public void recordKafkaProduced(String topic) {
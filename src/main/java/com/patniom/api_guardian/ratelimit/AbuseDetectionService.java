@@ -6,11 +6,16 @@ import com.patniom.api_guardian.kafka.events.RateLimitViolationEvent;
 import com.patniom.api_guardian.metrics.MetricsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -19,38 +24,138 @@ public class AbuseDetectionService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private RedisBatchDispatcher redisBatchDispatcher;
+
     @Autowired
     private KafkaProducerService kafkaProducerService;
 
     @Autowired
     private MetricsService metricsService; // ✅ NEW
 
-    private static final int VIOLATION_WINDOW_SECONDS = 300;
-    private static final int VIOLATION_THRESHOLD_MINOR = 3;
-    private static final int VIOLATION_THRESHOLD_MODERATE = 5;
-    private static final int VIOLATION_THRESHOLD_SEVERE = 10;
+    @Autowired
+    private RedisShardRing shardRing;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    private BanNearCache banNearCache;
+
+    @Autowired
+    private CidrBanService cidrBanService;
+
+    @Autowired
+    private BanRegistry banRegistry;
+
+    @Autowired
+    private List<RateLimitStore> stores;
 
-    private static final long BAN_DURATION_MINOR = 60;
-    private static final long BAN_DURATION_MODERATE = 300;
-    private static final long BAN_DURATION_SEVERE = 1800;
+    @Autowired
+    private LocalRateLimitStore localRateLimitStore;
+
+    private static final int CLEAR_CHUNK = 500;
+
+    static final String[] BAN_FIELDS = {
+            RedisKeys.F_BAN_UNTIL, RedisKeys.F_VIOLATIONS, RedisKeys.F_VIOLATIONS_UNTIL
+    };
+
+    // Package-private: GuardDecisionService passes these to its Lua script
+    static final int VIOLATION_WINDOW_SECONDS = 300;
+    static final int VIOLATION_THRESHOLD_MINOR = 3;
+    static final int VIOLATION_THRESHOLD_MODERATE = 5;
+    static final int VIOLATION_THRESHOLD_SEVERE = 10;
+
+    static final long BAN_DURATION_MINOR = 60;
+    static final long BAN_DURATION_MODERATE = 300;
+    static final long BAN_DURATION_SEVERE = 1800;
+
+    /**
+     * Counts one violation in the state hash KEYS[1] (fixed window, started
+     * by the first violation). Expects: now (ms), keep, ARGV[1] = window seconds.
+     * Sets: violations. Shared with the guard script.
+     */
+    static final String RECORD_VIOLATION = """
+            local counter = redis.call("HMGET", KEYS[1], "v", "vx")
+            local violations = tonumber(counter[1]) or 0
+            local windowEnd = tonumber(counter[2]) or 0
+            if windowEnd <= now then
+                violations = 0
+                windowEnd = now + tonumber(ARGV[1]) * 1000
+            end
+            violations = violations + 1
+            redis.call("HSET", KEYS[1], "v", violations, "vx", windowEnd)
+            keep = math.max(keep, windowEnd - now)
+            """;
+
+    private static final String CLOCK = """
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local keep = 0
+            """;
+
+    /**
+     * Manual ban of KEYS[1], ARGV[1] = ban seconds. Expiry is taken from the
+     * Redis clock like the guard script's. Run by the Redis-backed stores.
+     */
+    static final String APPLY_BAN = CLOCK + """
+            keep = tonumber(ARGV[1]) * 1000
+            redis.call("HSET", KEYS[1], "b", now + keep)
+            """ + RedisKeys.KEEP_TTL + """
+            return 1
+            """;
+
+    private final DefaultRedisScript<Long> violationScript;
+    private final DefaultRedisScript<Long> banRemainingScript;
+
+    public AbuseDetectionService() {
+        // Returns the violation count after this one
+        violationScript = new DefaultRedisScript<>();
+        violationScript.setResultType(Long.class);
+        violationScript.setScriptText(CLOCK + RECORD_VIOLATION + RedisKeys.KEEP_TTL + """
+            return violations
+        """);
+
+        // Remaining ban in ms (0 = not banned)
+        banRemainingScript = new DefaultRedisScript<>();
+        banRemainingScript.setResultType(Long.class);
+        banRemainingScript.setScriptText("""
+            local banUntil = tonumber(redis.call("HGET", KEYS[1], "b"))
+            if banUntil == nil then
+                return 0
+            end
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            return math.max(0, banUntil - now)
+        """);
+    }
 
     public boolean isBanned(String identifier) {
-        Boolean banned = redisTemplate.hasKey("ban:" + identifier);
+        // Near-cache first; Redis only on a miss (fails open while Redis is down)
+        boolean banned = cidrBanService.bannedUntil(identifier) > 0
+                || banNearCache.isBanned(identifier, () -> redisCircuitBreaker.execute(
+                        () -> remainingBanMillis(identifier), () -> null));
 
-        if (Boolean.TRUE.equals(banned)) {
+        if (banned) {
             log.warn("⛔ Banned identifier attempted access: {}", identifier);
         }
 
-        return Boolean.TRUE.equals(banned);
+        return banned;
     }
 
-    public void recordViolation(String identifier) {
-        String violationKey = "abuse:" + identifier + ":violations";
+    private Long remainingBanMillis(String identifier) {
+        Long remaining = redisBatchDispatcher.execute(
+                banRemainingScript, List.of(RedisKeys.state(identifier)));
+        return remaining != null ? remaining : 0;
+    }
 
-        Long violations = redisTemplate.opsForValue().increment(violationKey);
+    public void recordViolation(String identifier) {
+        Long violations = redisTemplate.execute(
+                violationScript, List.of(RedisKeys.state(identifier)), VIOLATION_WINDOW_SECONDS);
 
-        if (violations == 1) {
-            redisTemplate.expire(violationKey, VIOLATION_WINDOW_SECONDS, TimeUnit.SECONDS);
+        if (violations != null && violations == 1) {
             log.debug("First violation recorded for: {}", identifier);
         }
 
@@ -68,6 +173,51 @@ public class AbuseDetectionService {
         }
     }
 
+    /**
+     * Side effects of a violation that the guard script already wrote to Redis
+     * (violation counter and ban key). Only metrics and Kafka events remain.
+     */
+    public void onViolationRecorded(String identifier, long violations, long banSeconds) {
+        log.warn("⚠️ Rate limit violation #{} for: {}", violations, identifier);
+
+        metricsService.recordViolation(identifier);
+        sendViolationEventToKafka(identifier, violations);
+
+        if (banSeconds > 0) {
+            log.error("🚫 BAN APPLIED to {} for {} seconds (violations: {})",
+                    identifier, banSeconds, violations);
+
+            metricsService.recordBan(identifier, banSeconds);
+            sendBanEventToKafka(identifier, violations, banSeconds);
+            banNearCache.publishBan(identifier, banSeconds);
+            indexBan(identifier, banSeconds);
+        }
+    }
+
+    /**
+     * Manual ban (admin), same key and side effects as an escalation ban
+     */
+    public void ban(String identifier, long banSeconds) {
+        applyBan(identifier, banSeconds, getViolationCount(identifier));
+    }
+
+    public List<BanEntry> listBans(int page, int size) {
+        return banRegistry.list((long) page * size, size);
+    }
+
+    public long countActiveBans() {
+        return banRegistry.countActive();
+    }
+
+    private void indexBan(String identifier, long banSeconds) {
+        try {
+            banRegistry.record(identifier, banSeconds);
+        } catch (Exception e) {
+            // The ban key is in place; the reaper/backfill doesn't need this to enforce it
+            log.error("Failed to index ban for {}: {}", identifier, e.getMessage());
+        }
+    }
+
     private void sendViolationEventToKafka(String identifier, Long violations) {
         try {
             RateLimitViolationEvent event = RateLimitViolationEvent.builder()
@@ -85,10 +235,15 @@ public class AbuseDetectionService {
         }
     }
 
+    /**
+     * The ban goes to every store, since which one evaluates the identifier
+     * depends on the request (tier, route, fallback). Other nodes' LOCAL
+     * stores get it through BanNearCache.
+     */
     private void applyBan(String identifier, long banSeconds, Long violations) {
-        String banKey = "ban:" + identifier;
-
-        redisTemplate.opsForValue().set(banKey, "1", banSeconds, TimeUnit.SECONDS);
+        stores.forEach(store -> store.ban(identifier, banSeconds));
+        banNearCache.publishBan(identifier, banSeconds);
+        indexBan(identifier, banSeconds);
 
         log.error("🚫 BAN APPLIED to {} for {} seconds (violations: {})",
                 identifier, banSeconds, violations);
@@ -138,48 +293,86 @@ public class AbuseDetectionService {
     }
 
     public long getViolationCount(String identifier) {
-        String violationKey = "abuse:" + identifier + ":violations";
-        Object violations = redisTemplate.opsForValue().get(violationKey);
+        List<Object> counter = redisTemplate.opsForHash().multiGet(RedisKeys.state(identifier),
+                List.of(RedisKeys.F_VIOLATIONS, RedisKeys.F_VIOLATIONS_UNTIL));
 
-        if (violations == null) {
-            return 0;
+        if (counter.get(0) == null || counter.get(1) == null
+                || toLong(counter.get(1)) <= System.currentTimeMillis()) {
+            return 0; // Window over - the next violation starts from 1
         }
 
-        return violations instanceof Integer ? (Integer) violations :
-                Long.parseLong(violations.toString());
+        return toLong(counter.get(0));
     }
 
     public long getRemainingBanTime(String identifier) {
-        String banKey = "ban:" + identifier;
-        Long ttl = redisTemplate.getExpire(banKey, TimeUnit.SECONDS);
-        return ttl != null && ttl > 0 ? ttl : 0;
+        Long remaining = redisTemplate.execute(banRemainingScript, List.of(RedisKeys.state(identifier)));
+        return remaining != null ? (remaining + 999) / 1000 : 0;
     }
 
     public void clearBan(String identifier) {
-        String banKey = "ban:" + identifier;
-        String violationKey = "abuse:" + identifier + ":violations";
-
-        redisTemplate.delete(banKey);
-        redisTemplate.delete(violationKey);
-
-        // ✅ Record ban expired
-        metricsService.recordBanExpired();
+        stores.forEach(store -> store.clearBan(identifier));
+        banRegistry.remove(List.of(identifier));
+        banNearCache.publishClear(identifier);
 
         log.info("✅ Ban cleared for: {}", identifier);
     }
 
+    /**
+     * Clear every ban and violation record without blocking Redis: indexed bans
+     * are cleared in chunks, then a SCAN sweep catches state hashes the index
+     * never saw (limiter and quota fields are kept)
+     */
     public void clearAllBans() {
-        var banKeys = redisTemplate.keys("ban:*");
-        var violationKeys = redisTemplate.keys("abuse:*");
+        long indexed = 0;
+        List<String> chunk;
+        while (!(chunk = banRegistry.head(CLEAR_CHUNK)).isEmpty()) {
+            deleteBanKeys(chunk);
+            banRegistry.remove(chunk);
+            indexed += chunk.size();
+        }
+
+        long swept = 0;
 
-        if (banKeys != null && !banKeys.isEmpty()) {
-            redisTemplate.delete(banKeys);
-            log.info("Cleared {} ban(s)", banKeys.size());
+        // SCAN the primary and every shard of the ring (KEYS would block Redis)
+        List<RedisTemplate<String, Object>> targets = new ArrayList<>();
+        targets.add(redisTemplate);
+        targets.addAll(shardRing.shards());
+
+        for (RedisTemplate<String, Object> target : targets) {
+            swept += RedisKeyScanner.deleteFieldsMatching(target, RedisKeys.STATE_PATTERN, BAN_FIELDS);
         }
 
-        if (violationKeys != null && !violationKeys.isEmpty()) {
-            redisTemplate.delete(violationKeys);
-            log.info("Cleared {} violation record(s)", violationKeys.size());
+        swept += localRateLimitStore.clearAllBans();
+        banNearCache.publishClearAll();
+
+        log.info("Cleared {} indexed ban(s) and ban/violation state of {} identifier(s)",
+                indexed, swept);
+    }
+
+    /**
+     * Drop ban + violation fields on the primary and, for sharded identifiers, on their shard
+     * (pipelined - for clearing whole chunks of the ban index)
+     */
+    private void deleteBanKeys(List<String> identifiers) {
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[][] fields = Arrays.stream(BAN_FIELDS).map(serializer::serialize).toArray(byte[][]::new);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String identifier : identifiers) {
+                connection.hashCommands().hDel(serializer.serialize(RedisKeys.state(identifier)), fields);
+            }
+            return null;
+        });
+
+        if (shardRing.isEnabled()) {
+            for (String identifier : identifiers) {
+                shardRing.shardFor(identifier).opsForHash()
+                        .delete(RedisKeys.state(identifier), (Object[]) BAN_FIELDS);
+            }
         }
     }
-}
\ No newline at end of file
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+    }
+}
@@ -0,0 +1,254 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive in-flight limit around the protected backend.
+ *
+ * Rate limits cap requests per second, not how many are being served at
+ * once: when the backend slows down, admitted requests pile up until the
+ * server's thread pool is exhausted and throughput collapses. Each limit
+ * here tunes itself from measured latency (gradient algorithm):
+ *
+ * - longRtt is a slow moving average of latency (the "no queueing" baseline)
+ * - every sample window, the window's average latency (shortRtt) is
+ *   compared with it: gradient = tolerance * longRtt / shortRtt, in [0.5, 1]
+ * - newLimit = limit * gradient + sqrt(limit), smoothed into the limit
+ *
+ * While latency stays near the baseline the sqrt(limit) headroom grows the
+ * limit; once requests start queueing, latency rises and the limit shrinks,
+ * so concurrency holds near the knee of the latency curve. Growth is
+ * skipped while less than half the limit is in use (no signal), and a
+ * failed request backs the limit off by backoff-ratio.
+ *
+ * There is one global limit and one per configured route
+ * (ratelimit.routes[n].pattern); a request needs a permit from both.
+ * Samples are the request durations MetricsService.requestDuration records.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public static final String GLOBAL = "global";
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.concurrency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.concurrency.initial-limit:100}")
+    private int initialLimit;
+
+    @Value("${ratelimit.concurrency.min-limit:10}")
+    private int minLimit;
+
+    @Value("${ratelimit.concurrency.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${ratelimit.concurrency.tolerance:1.5}")
+    private double tolerance;
+
+    @Value("${ratelimit.concurrency.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${ratelimit.concurrency.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${ratelimit.concurrency.long-window:100}")
+    private int longWindow; // Sample windows the latency baseline averages over
+
+    @Value("${ratelimit.concurrency.sample-window-ms:100}")
+    private long sampleWindowMs;
+
+    @Value("${ratelimit.concurrency.min-samples:10}")
+    private int minSamples;
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Permit for one request, or null when the global or route limit is
+     * reached (shed the request). route = matched route pattern, or null.
+     */
+    public Permit tryAcquire(String route) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+
+        Limit global = limit(GLOBAL);
+        if (!global.tryAcquire()) {
+            metricsService.recordConcurrencyShed(GLOBAL);
+            return null;
+        }
+        if (route == null) {
+            return new Permit(global, null);
+        }
+
+        Limit routeLimit = limit(route);
+        if (!routeLimit.tryAcquire()) {
+            global.release();
+            metricsService.recordConcurrencyShed(route);
+            return null;
+        }
+        return new Permit(global, routeLimit);
+    }
+
+    /**
+     * Retry-After for a shed request: about one baseline latency, at least a second
+     */
+    public long retryAfterSeconds(String route) {
+        Limit limit = limits.get(route != null ? route : GLOBAL);
+        double rttMs = limit != null ? limit.longRttNanos / 1_000_000.0 : 0;
+        return Math.max(1, (long) Math.ceil(rttMs / 1000));
+    }
+
+    private Limit limit(String name) {
+        return limits.computeIfAbsent(name, key -> {
+            Limit limit = new Limit(key);
+            metricsService.registerConcurrencyLimit(key,
+                    limit, Limit::current, l -> l.inFlight.get());
+            return limit;
+        });
+    }
+
+    /**
+     * In-flight slot(s) held by one request; release exactly once
+     */
+    public static class Permit {
+
+        static final Permit NONE = new Permit(null, null);
+
+        private final Limit global;
+        private final Limit route;
+
+        Permit(Limit global, Limit route) {
+            this.global = global;
+            this.route = route;
+        }
+
+        /**
+         * Request completed; latencyNanos feeds the limit
+         */
+        public void release(long latencyNanos) {
+            if (global != null) global.onSample(latencyNanos);
+            if (route != null) route.onSample(latencyNanos);
+        }
+
+        /**
+         * Request never reached the backend (rejected further on): no sample
+         */
+        public void cancel() {
+            if (global != null) global.release();
+            if (route != null) route.release();
+        }
+
+        /**
+         * Request failed or was abandoned: back off instead of sampling
+         */
+        public void drop() {
+            if (global != null) global.onDrop();
+            if (route != null) route.onDrop();
+        }
+    }
+
+    /**
+     * One adaptive limit. inFlight is lock-free; the limit itself is
+     * recomputed under the lock once per sample window.
+     */
+    class Limit {
+
+        private final String name;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit = initialLimit;
+        private volatile long longRttNanos;
+
+        // Current sample window - guarded by this
+        private long windowStart = System.currentTimeMillis();
+        private long windowSumNanos;
+        private int windowSamples;
+        private int windowMaxInFlight;
+
+        Limit(String name) {
+            this.name = name;
+        }
+
+        int current() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= (int) limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        void onDrop() {
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+        }
+
+        void onSample(long latencyNanos) {
+            int inFlightAtRelease = inFlight.getAndDecrement();
+            synchronized (this) {
+                windowSumNanos += latencyNanos;
+                windowSamples++;
+                windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtRelease);
+
+                long now = System.currentTimeMillis();
+                if (now - windowStart < sampleWindowMs || windowSamples < minSamples) {
+                    return;
+                }
+
+                update(windowSumNanos / windowSamples, windowMaxInFlight);
+                windowStart = now;
+                windowSumNanos = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+            }
+        }
+
+        private void update(long shortRtt, int maxInFlight) {
+            long longRtt = longRttNanos == 0 ? shortRtt
+                    : longRttNanos + (shortRtt - longRttNanos) / Math.max(1, longWindow);
+            // The baseline drifts up under sustained load; pull it back when latency recovers
+            if (longRtt > 2 * shortRtt) {
+                longRtt = (long) (longRtt * 0.95);
+            }
+            longRttNanos = longRtt;
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / Math.max(1, shortRtt)));
+            if (gradient >= 1.0 && maxInFlight * 2 < limit) {
+                return; // Mostly idle: latency says nothing about the limit
+            }
+
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            double previous = limit;
+            limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+
+            if ((int) previous != (int) limit && gradient < 1.0) {
+                log.debug("Concurrency limit {} {} -> {} (latency {}ms, baseline {}ms)", name,
+                        (int) previous, (int) limit, shortRtt / 1_000_000, longRtt / 1_000_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One active ban as listed by the ban registry
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BanEntry {
+
+    private String identifier;
+    private long expiresAtEpochMs;
+    private long remainingSeconds;
+}
@@ -0,0 +1,203 @@
+package com.patniom.api_guardian.ratelimit;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of ban state, kept in sync through Redis pub/sub.
+ *
+ * Active bans are cached with their expiry, so a banned client is rejected
+ * without a Redis call until the ban runs out. "Not banned" answers are not
+ * cached: a ban escalated by another node's guard script is only remembered
+ * there, so a cached "no" could hide it from the admin status read.
+ *
+ * Every ban change (applied, cleared, all cleared) is published on
+ * ratelimit.ban-cache.channel and applied by every node, including the
+ * publisher. Entries are also bounded by max-stale-ms in case a message is
+ * lost while the subscription reconnects; a lookup that races with an
+ * invalidation is not cached.
+ *
+ * Received events are also written to this node's LOCAL store, which has
+ * no shared state to read a ban from.
+ */
+@Slf4j
+@Component
+public class BanNearCache implements MessageListener {
+
+    private static final String BAN = "BAN";
+    private static final String CLEAR = "CLEAR";
+    private static final String CLEAR_ALL = "CLEAR_ALL";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private LocalRateLimitStore localRateLimitStore;
+
+    @Value("${ratelimit.ban-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.ban-cache.channel:ratelimit:bans}")
+    private String channel;
+
+    // Upper bound on how long a cached ban is trusted without Redis
+    @Value("${ratelimit.ban-cache.max-stale-ms:30000}")
+    private long maxStaleMs;
+
+    private final Map<String, CachedBan> activeBans = new ConcurrentHashMap<>();
+
+    // Bumped by every invalidation - lookups that overlap one are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+            log.info("Ban near-cache subscribed to {}", channel);
+        }
+    }
+
+    /**
+     * Cached ban expiry (epoch ms) if the identifier is known to be banned, otherwise 0
+     */
+    public long activeBanUntil(String identifier) {
+        if (!enabled) {
+            return 0;
+        }
+        CachedBan ban = activeBans.get(identifier);
+        if (ban == null) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        if (ban.until() <= now || now - ban.cachedAt() > maxStaleMs) {
+            activeBans.remove(identifier, ban);
+            return 0;
+        }
+        return ban.until();
+    }
+
+    /**
+     * Ban check through the cache. The lookup runs unless a ban is cached and
+     * returns the remaining ban in ms (0 = not banned, null = unknown)
+     */
+    public boolean isBanned(String identifier, Supplier<Long> lookup) {
+        if (!enabled) {
+            Long remainingMs = lookup.get();
+            return remainingMs != null && remainingMs > 0;
+        }
+        if (activeBanUntil(identifier) > 0) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        long seen = generation.get();
+        Long remainingMs = lookup.get();
+        if (remainingMs == null || remainingMs <= 0) {
+            return false;
+        }
+        if (generation.get() == seen) {
+            remember(identifier, now + remainingMs);
+        }
+        return true;
+    }
+
+    /**
+     * Cache a ban seen by this node (guard script result) without publishing it
+     */
+    public void remember(String identifier, long bannedUntilMs) {
+        if (!enabled) {
+            return;
+        }
+        activeBans.put(identifier, new CachedBan(bannedUntilMs, System.currentTimeMillis()));
+    }
+
+    // ========== Publishing (all nodes apply these, including this one) ==========
+
+    public void publishBan(String identifier, long banSeconds) {
+        long until = System.currentTimeMillis() + banSeconds * 1000;
+        publish(BAN + "|" + until + "|" + identifier);
+    }
+
+    public void publishClear(String identifier) {
+        publish(CLEAR + "||" + identifier);
+    }
+
+    public void publishClearAll() {
+        publish(CLEAR_ALL + "||");
+    }
+
+    private void publish(String event) {
+        if (!enabled) {
+            return;
+        }
+        apply(event); // Don't wait for the round trip on this node
+        try {
+            redisTemplate.convertAndSend(channel, event);
+        } catch (Exception e) {
+            log.error("Failed to publish ban invalidation {}: {}", event, e.getMessage());
+        }
+    }
+
+    // ========== Subscription ==========
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object event = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (event != null) {
+            apply(event.toString());
+            applyToLocalStore(event.toString());
+        }
+    }
+
+    private void apply(String event) {
+        String[] parts = event.split("\\|", 3);
+        if (parts.length < 3) {
+            log.warn("Ignoring malformed ban event: {}", event);
+            return;
+        }
+        generation.incrementAndGet();
+
+        String identifier = parts[2];
+        switch (parts[0]) {
+            case BAN -> remember(identifier, Long.parseLong(parts[1]));
+            case CLEAR -> activeBans.remove(identifier);
+            case CLEAR_ALL -> activeBans.clear();
+            default -> log.warn("Ignoring unknown ban event: {}", event);
+        }
+    }
+
+    private void applyToLocalStore(String event) {
+        String[] parts = event.split("\\|", 3);
+        if (parts.length < 3) {
+            return;
+        }
+        switch (parts[0]) {
+            case BAN -> localRateLimitStore.banUntil(parts[2], Long.parseLong(parts[1]));
+            case CLEAR -> localRateLimitStore.clearBan(parts[2]);
+            case CLEAR_ALL -> localRateLimitStore.clearAllBans();
+            default -> {
+                // Already logged by apply
+            }
+        }
+    }
+
+    private record CachedBan(long until, long cachedAt) {
+    }
+}
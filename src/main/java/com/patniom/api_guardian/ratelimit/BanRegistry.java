@@ -0,0 +1,130 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of every identifier ban: one sorted set on the primary Redis,
+ * member = identifier, score = ban expiry (epoch ms).
+ *
+ * The bans themselves (field b of s:{id}) stay where the guard script
+ * writes them - possibly on a shard - and remain the source of truth for
+ * the per-request check. The index is what admin operations work from:
+ * listing is a ZRANGEBYSCORE page, clearing walks it in chunks, and the
+ * active ban gauge is a ZCOUNT (refreshed by the reaper) instead of a
+ * counter that drifts. Expired members are reaped in chunks on a schedule.
+ */
+@Slf4j
+@Component
+public class BanRegistry {
+
+    private static final int REAP_CHUNK = 1000;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    public void record(String identifier, long banSeconds) {
+        long expiresAt = System.currentTimeMillis() + banSeconds * 1000;
+        redisTemplate.opsForZSet().add(RedisKeys.BAN_INDEX, identifier, expiresAt);
+    }
+
+    public void remove(Collection<String> identifiers) {
+        if (!identifiers.isEmpty()) {
+            redisTemplate.opsForZSet().remove(RedisKeys.BAN_INDEX, identifiers.toArray());
+            refreshGauge();
+        }
+    }
+
+    /**
+     * Active bans ordered by expiry (soonest first)
+     */
+    public List<BanEntry> list(long offset, long limit) {
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<Object>> page = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(RedisKeys.BAN_INDEX, now, Double.POSITIVE_INFINITY, offset, limit);
+
+        List<BanEntry> entries = new ArrayList<>();
+        if (page != null) {
+            for (ZSetOperations.TypedTuple<Object> tuple : page) {
+                long expiresAt = tuple.getScore() != null ? tuple.getScore().longValue() : now;
+                entries.add(BanEntry.builder()
+                        .identifier(String.valueOf(tuple.getValue()))
+                        .expiresAtEpochMs(expiresAt)
+                        .remainingSeconds(Math.max(0, (expiresAt - now + 999) / 1000))
+                        .build());
+            }
+        }
+        return entries;
+    }
+
+    public boolean exists() {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(RedisKeys.BAN_INDEX));
+    }
+
+    public long countActive() {
+        Long count = redisTemplate.opsForZSet().count(
+                RedisKeys.BAN_INDEX, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Next chunk of indexed identifiers (active or not) - for chunked clears
+     */
+    public List<String> head(int chunk) {
+        Set<Object> members = redisTemplate.opsForZSet().range(RedisKeys.BAN_INDEX, 0, chunk - 1);
+        List<String> identifiers = new ArrayList<>();
+        if (members != null) {
+            members.forEach(member -> identifiers.add(String.valueOf(member)));
+        }
+        return identifiers;
+    }
+
+    /**
+     * Drop expired members in chunks and refresh the gauge (all nodes run this; ZREM is idempotent)
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.bans.reap-interval-ms:10000}")
+    public void reapExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            long reaped = 0;
+
+            for (;;) {
+                Set<Object> expired = redisTemplate.opsForZSet()
+                        .rangeByScore(RedisKeys.BAN_INDEX, Double.NEGATIVE_INFINITY, now, 0, REAP_CHUNK);
+                if (expired == null || expired.isEmpty()) {
+                    break;
+                }
+                Long removed = redisTemplate.opsForZSet().remove(RedisKeys.BAN_INDEX, expired.toArray());
+                reaped += removed != null ? removed : 0;
+                if (expired.size() < REAP_CHUNK) {
+                    break;
+                }
+            }
+
+            if (reaped > 0) {
+                metricsService.recordBansExpired(reaped);
+                log.debug("Reaped {} expired ban(s) from the registry", reaped);
+            }
+            refreshGauge();
+        } catch (Exception e) {
+            log.debug("Ban registry reap failed: {}", e.getMessage());
+        }
+    }
+
+    private void refreshGauge() {
+        metricsService.setActiveBans(countActive());
+    }
+}
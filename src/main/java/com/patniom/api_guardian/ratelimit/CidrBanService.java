@@ -0,0 +1,348 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Subnet bans (1.2.3.0/24, 2001:db8::/64) matched against every IP identifier.
+ *
+ * Redis is the source of truth: one hash (CIDR -> expiry ms, 0 = permanent)
+ * plus a version counter bumped on every change. Each node keeps the whole
+ * set in a CidrTrie, so a lookup is one longest-prefix walk in memory -
+ * at most 128 steps regardless of how many prefixes are banned.
+ *
+ * Single adds/removes are applied in place on every node via pub/sub. Bulk
+ * imports and missed messages are handled by a full rebuild: nodes compare
+ * the version counter periodically (and on a RELOAD message) and swap in a
+ * freshly built trie when it changed.
+ */
+@Slf4j
+@Service
+public class CidrBanService implements MessageListener {
+
+    private static final int WRITE_CHUNK = 1000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final long PERMANENT_RETRY_SECONDS = 86_400;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.cidr-bans.channel:ratelimit:cidr-bans}")
+    private String channel;
+
+    private volatile CidrTrie trie = new CidrTrie();
+    private volatile long loadedVersion = -1;
+
+    @PostConstruct
+    void start() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("CIDR bans not loaded at startup (retrying on next sync): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ban expiry (epoch ms) if the identifier is an IP inside a banned prefix, otherwise 0
+     */
+    public long bannedUntil(String identifier) {
+        CidrTrie current = trie;
+        if (current.size() == 0 || !identifier.startsWith("IP:")) {
+            return 0;
+        }
+
+        CidrTrie.Prefix address = CidrTrie.parseAddress(identifier.substring(3));
+        if (address == null) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long expiresAt = current.match(address.hi(), address.lo(), now);
+        if (expiresAt == CidrTrie.NONE) {
+            return 0;
+        }
+        return expiresAt == CidrTrie.PERMANENT ? now + PERMANENT_RETRY_SECONDS * 1000 : expiresAt;
+    }
+
+    /**
+     * Ban one prefix (ttlSeconds <= 0 = until removed). Returns the canonical CIDR.
+     */
+    public String ban(String cidr, long ttlSeconds) {
+        CidrTrie.Prefix prefix = CidrTrie.parseCidr(cidr);
+        String field = CidrTrie.format(prefix);
+        long expiresAt = expiryFor(ttlSeconds);
+
+        redisTemplate.opsForHash().put(RedisKeys.CIDR_BANS, field, expiresAt);
+        String event = "ADD|" + nextVersion() + "|" + expiresAt + "|" + field;
+
+        apply(event);
+        publish(event);
+
+        log.warn("🚫 CIDR BAN APPLIED to {} ({})", field,
+                ttlSeconds > 0 ? ttlSeconds + " seconds" : "permanent");
+        return field;
+    }
+
+    public boolean unban(String cidr) {
+        CidrTrie.Prefix prefix = CidrTrie.parseCidr(cidr);
+        String field = CidrTrie.format(prefix);
+
+        Long removed = redisTemplate.opsForHash().delete(RedisKeys.CIDR_BANS, field);
+        String event = "REMOVE|" + nextVersion() + "||" + field;
+
+        apply(event);
+        publish(event);
+
+        log.info("✅ CIDR ban cleared for: {}", field);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * Stream a blocklist (one address or CIDR per line; '#' / ';' comments and
+     * trailing text ignored) into Redis in chunks, then have every node rebuild
+     */
+    public CidrImportResult importBlocklist(InputStream input, long ttlSeconds) throws IOException {
+        long expiresAt = expiryFor(ttlSeconds);
+        long imported = 0;
+        long rejected = 0;
+        List<String> errors = new ArrayList<>();
+        Map<String, Object> chunk = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String entry = firstToken(line);
+                if (entry == null) {
+                    continue;
+                }
+                try {
+                    chunk.put(CidrTrie.format(CidrTrie.parseCidr(entry)), expiresAt);
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(line);
+                    }
+                    continue;
+                }
+
+                if (chunk.size() >= WRITE_CHUNK) {
+                    imported += flush(chunk);
+                }
+            }
+        }
+        imported += flush(chunk);
+
+        long version = nextVersion();
+        reload();
+        publish("RELOAD|" + version + "||");
+
+        log.warn("🚫 CIDR blocklist imported: {} prefixes ({} rejected lines)", imported, rejected);
+
+        return CidrImportResult.builder()
+                .imported(imported)
+                .rejected(rejected)
+                .errors(errors)
+                .totalCidrBans(trie.size())
+                .build();
+    }
+
+    public int size() {
+        return trie.size();
+    }
+
+    // ========== Replication ==========
+
+    /**
+     * Safety net for missed pub/sub messages: rebuild when the version moved
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.cidr-bans.sync-ms:30000}")
+    public void syncIfChanged() {
+        try {
+            if (currentVersion() != loadedVersion) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.debug("CIDR ban sync failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body != null) {
+            apply(body.toString());
+        }
+    }
+
+    /**
+     * Apply "ADD|version|expiresAt|cidr", "REMOVE|version||cidr" or "RELOAD|version||".
+     * An in-place change that directly follows the loaded version keeps the trie
+     * current; anything else (gap, bulk import) is left to a full rebuild.
+     */
+    private void apply(String event) {
+        String[] parts = event.split("\\|", 4);
+        if (parts.length < 4) {
+            log.warn("Ignoring malformed CIDR ban event: {}", event);
+            return;
+        }
+
+        try {
+            long version = Long.parseLong(parts[1]);
+            switch (parts[0]) {
+                case "ADD" -> trie.put(CidrTrie.parseCidr(parts[3]), Long.parseLong(parts[2]));
+                case "REMOVE" -> trie.remove(CidrTrie.parseCidr(parts[3]));
+                case "RELOAD" -> {
+                    // Off the listener thread - a rebuild can take a while
+                    CompletableFuture.runAsync(this::syncIfChanged);
+                    return;
+                }
+                default -> {
+                    log.warn("Ignoring unknown CIDR ban event: {}", event);
+                    return;
+                }
+            }
+            advanceVersion(version);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid CIDR ban event {}: {}", event, e.getMessage());
+        }
+    }
+
+    private synchronized void advanceVersion(long version) {
+        if (version == loadedVersion + 1) {
+            loadedVersion = version;
+            metricsService.setCidrBans(trie.size());
+        }
+    }
+
+    /**
+     * Build a new trie from Redis and swap it in; expired prefixes are dropped from Redis on the way
+     */
+    private synchronized void reload() {
+        long version = currentVersion();
+        if (version == loadedVersion) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        CidrTrie fresh = new CidrTrie();
+        List<Object> expired = new ArrayList<>();
+
+        ScanOptions options = ScanOptions.scanOptions().count(WRITE_CHUNK).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor =
+                     redisTemplate.opsForHash().scan(RedisKeys.CIDR_BANS, options)) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                long expiresAt = toLong(entry.getValue());
+                if (expiresAt != CidrTrie.PERMANENT && expiresAt <= now) {
+                    expired.add(entry.getKey());
+                    continue;
+                }
+                try {
+                    fresh.put(CidrTrie.parseCidr(entry.getKey().toString()), expiresAt);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping invalid CIDR ban in Redis: {}", entry.getKey());
+                }
+            }
+        }
+
+        for (int i = 0; i < expired.size(); i += WRITE_CHUNK) {
+            List<Object> batch = expired.subList(i, Math.min(expired.size(), i + WRITE_CHUNK));
+            redisTemplate.opsForHash().delete(RedisKeys.CIDR_BANS, batch.toArray());
+        }
+
+        trie = fresh;
+        loadedVersion = version;
+        metricsService.setCidrBans(fresh.size());
+
+        log.info("CIDR ban index loaded: {} prefixes (version {}, {} expired removed)",
+                fresh.size(), version, expired.size());
+    }
+
+    private long nextVersion() {
+        Long version = redisTemplate.opsForValue().increment(RedisKeys.CIDR_BANS_VERSION);
+        return version != null ? version : 0;
+    }
+
+    private long currentVersion() {
+        return toLong(redisTemplate.opsForValue().get(RedisKeys.CIDR_BANS_VERSION));
+    }
+
+    private long flush(Map<String, Object> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        redisTemplate.opsForHash().putAll(RedisKeys.CIDR_BANS, chunk);
+        int written = chunk.size();
+        chunk.clear();
+        return written;
+    }
+
+    private void publish(String event) {
+        try {
+            redisTemplate.convertAndSend(channel, event);
+        } catch (Exception e) {
+            log.error("Failed to publish CIDR ban event {}: {}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * Plain integer value (0 if missing or not a number)
+     */
+    private static long toLong(Object value) {
+        if (value instanceof Number n) {
+            return n.longValue();
+        }
+        try {
+            return value != null ? Long.parseLong(value.toString()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long expiryFor(long ttlSeconds) {
+        return ttlSeconds > 0 ? System.currentTimeMillis() + ttlSeconds * 1000 : CidrTrie.PERMANENT;
+    }
+
+    private static String firstToken(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith(";")) {
+            return null;
+        }
+        int end = 0;
+        while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))
+                && trimmed.charAt(end) != ';' && trimmed.charAt(end) != '#' && trimmed.charAt(end) != ',') {
+            end++;
+        }
+        return trimmed.substring(0, end);
+    }
+}
@@ -0,0 +1,23 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk CIDR blocklist import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CidrImportResult {
+
+    private long imported;            // Prefixes written (new or refreshed)
+    private long rejected;            // Lines that were not a valid address / CIDR
+    private List<String> errors;      // First few rejected lines, for the admin
+    private long totalCidrBans;       // Prefixes in the index after the import
+}
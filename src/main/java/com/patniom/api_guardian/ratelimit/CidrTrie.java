@@ -0,0 +1,310 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Path-compressed binary (Patricia) trie of CIDR prefixes for longest-prefix
+ * matching of client addresses.
+ *
+ * All keys are 128 bits: IPv6 as is, IPv4 as IPv4-mapped IPv6
+ * (::ffff:a.b.c.d, prefix length + 96), so one trie serves both families
+ * and ::ffff:1.2.3.4 matches 1.2.3.0/24. A lookup visits at most one node
+ * per address bit no matter how many prefixes are stored, and the trie
+ * holds at most two nodes per prefix.
+ *
+ * Lookups (match, size) are lock-free. Writers are serialized; a new node is fully built
+ * before it is linked in, so readers only ever see complete nodes. Removal
+ * just unmarks the node - the structure shrinks on the next full rebuild.
+ */
+final class CidrTrie {
+
+    static final long NONE = -1;       // Node is only a branch point
+    static final long PERMANENT = 0;   // Prefix never expires
+
+    private final Node root = new Node(0, 0, 0, NONE);
+    private volatile int entries;   // Written under the monitor, read without it
+
+    /**
+     * Ban expiry (epoch ms, 0 = permanent) of the longest live prefix containing the address, else NONE
+     */
+    long match(long hi, long lo, long now) {
+        long best = NONE;
+        Node node = root;
+
+        while (node != null && node.covers(hi, lo)) {
+            long expiresAt = node.expiresAt;
+            if (expiresAt == PERMANENT || expiresAt > now) {
+                best = expiresAt;
+            }
+            if (node.length == 128) {
+                break;
+            }
+            node = bit(hi, lo, node.length) == 0 ? node.zero : node.one;
+        }
+        return best;
+    }
+
+    synchronized void put(Prefix prefix, long expiresAt) {
+        long hi = prefix.hi() & maskHi(prefix.length());
+        long lo = prefix.lo() & maskLo(prefix.length());
+        int length = prefix.length();
+        Node node = root;
+
+        for (;;) {
+            if (node.length == length) {
+                if (node.expiresAt == NONE) entries++;
+                node.expiresAt = expiresAt;
+                return;
+            }
+
+            int b = bit(hi, lo, node.length);
+            Node child = node.child(b);
+            if (child == null) {
+                node.setChild(b, new Node(hi, lo, length, expiresAt));
+                entries++;
+                return;
+            }
+
+            int common = Math.min(Math.min(commonPrefix(child.hi, child.lo, hi, lo), child.length), length);
+            if (common == child.length) {
+                node = child;
+                continue;
+            }
+
+            // Split the edge: branch point (or the new prefix itself) above the child
+            Node mid = new Node(hi & maskHi(common), lo & maskLo(common), common,
+                    common == length ? expiresAt : NONE);
+            mid.setChild(bit(child.hi, child.lo, common), child);
+            if (common != length) {
+                mid.setChild(bit(hi, lo, common), new Node(hi, lo, length, expiresAt));
+            }
+            node.setChild(b, mid);
+            entries++;
+            return;
+        }
+    }
+
+    synchronized boolean remove(Prefix prefix) {
+        long hi = prefix.hi() & maskHi(prefix.length());
+        long lo = prefix.lo() & maskLo(prefix.length());
+        Node node = root;
+
+        while (node != null && node.covers(hi, lo) && node.length <= prefix.length()) {
+            if (node.length == prefix.length()) {
+                if (node.expiresAt == NONE) {
+                    return false;
+                }
+                node.expiresAt = NONE;
+                entries--;
+                return true;
+            }
+            node = node.child(bit(hi, lo, node.length));
+        }
+        return false;
+    }
+
+    /**
+     * Live prefixes; lock-free, checked on every request
+     */
+    int size() {
+        return entries;
+    }
+
+    // ========== Parsing ==========
+
+    /**
+     * 128-bit prefix (IPv4 mapped into ::ffff:0:0/96)
+     */
+    record Prefix(long hi, long lo, int length) {
+    }
+
+    /**
+     * Parse "1.2.3.0/24", "2001:db8::/32" or a bare address (full-length prefix)
+     */
+    static Prefix parseCidr(String text) {
+        String value = text.trim();
+        int slash = value.indexOf('/');
+        String address = slash < 0 ? value : value.substring(0, slash);
+
+        Prefix full = parseAddress(address);
+        if (full == null) {
+            throw new IllegalArgumentException("Invalid address: " + text);
+        }
+        if (slash < 0) {
+            return full;
+        }
+
+        int bits;
+        try {
+            bits = Integer.parseInt(value.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix length: " + text);
+        }
+        int offset = full.length() == 128 && isIpv4Literal(address) ? 96 : 0;
+        int maxBits = 128 - offset;
+        if (bits < 0 || bits > maxBits) {
+            throw new IllegalArgumentException("Invalid prefix length: " + text);
+        }
+        int length = bits + offset;
+        return new Prefix(full.hi() & maskHi(length), full.lo() & maskLo(length), length);
+    }
+
+    /**
+     * Parse an address literal (never a DNS lookup); null if it isn't one
+     */
+    static Prefix parseAddress(String address) {
+        if (isIpv4Literal(address)) {
+            long v4 = parseIpv4(address);
+            return v4 < 0 ? null : new Prefix(0, 0xFFFF_0000_0000L | v4, 128);
+        }
+        if (address.indexOf(':') < 0) {
+            return null;
+        }
+
+        String literal = address;
+        int zone = literal.indexOf('%');
+        if (zone >= 0) {
+            literal = literal.substring(0, zone);
+        }
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return null;
+            }
+        }
+
+        try {
+            // Contains ':' and only hex digits, so this is parsed as a literal
+            byte[] bytes = InetAddress.getByName(literal).getAddress();
+            if (bytes.length == 4) {
+                return new Prefix(0, 0xFFFF_0000_0000L | (toLong(bytes, 0, 4)), 128);
+            }
+            return new Prefix(toLong(bytes, 0, 8), toLong(bytes, 8, 8), 128);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Canonical text of a prefix (IPv4 in dotted form), used as the Redis field
+     */
+    static String format(Prefix prefix) {
+        if (prefix.hi() == 0 && (prefix.lo() >>> 32) == 0xFFFF && prefix.length() >= 96) {
+            long v4 = prefix.lo() & 0xFFFF_FFFFL;
+            return (v4 >>> 24) + "." + ((v4 >>> 16) & 0xFF) + "." + ((v4 >>> 8) & 0xFF) + "." + (v4 & 0xFF)
+                    + "/" + (prefix.length() - 96);
+        }
+
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (prefix.hi() >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (prefix.lo() >>> (56 - 8 * i));
+        }
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress() + "/" + prefix.length();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid prefix", e);
+        }
+    }
+
+    /**
+     * The first length bits of a prefix
+     */
+    static Prefix mask(Prefix prefix, int length) {
+        int bits = Math.min(length, prefix.length());
+        return new Prefix(prefix.hi() & maskHi(bits), prefix.lo() & maskLo(bits), bits);
+    }
+
+    private static boolean isIpv4Literal(String address) {
+        return address.indexOf(':') < 0 && !address.isEmpty() && Character.isDigit(address.charAt(0));
+    }
+
+    private static long parseIpv4(String address) {
+        long value = 0;
+        int octets = 0;
+        int current = -1;
+
+        for (int i = 0; i <= address.length(); i++) {
+            char c = i < address.length() ? address.charAt(i) : '.';
+            if (c == '.') {
+                if (current < 0 || current > 255 || ++octets > 4) {
+                    return -1;
+                }
+                value = (value << 8) | current;
+                current = -1;
+            } else if (c >= '0' && c <= '9') {
+                current = (current < 0 ? 0 : current * 10) + (c - '0');
+                if (current > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static long toLong(byte[] bytes, int from, int count) {
+        long value = 0;
+        for (int i = from; i < from + count; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    // ========== Bit helpers ==========
+
+    private static int bit(long hi, long lo, int index) {
+        return (int) (index < 64 ? (hi >>> (63 - index)) & 1 : (lo >>> (127 - index)) & 1);
+    }
+
+    private static long maskHi(int length) {
+        return length >= 64 ? -1L : length == 0 ? 0 : -1L << (64 - length);
+    }
+
+    private static long maskLo(int length) {
+        return length <= 64 ? 0 : length == 128 ? -1L : -1L << (128 - length);
+    }
+
+    private static int commonPrefix(long aHi, long aLo, long bHi, long bLo) {
+        long diff = aHi ^ bHi;
+        if (diff != 0) {
+            return Long.numberOfLeadingZeros(diff);
+        }
+        diff = aLo ^ bLo;
+        return diff == 0 ? 128 : 64 + Long.numberOfLeadingZeros(diff);
+    }
+
+    private static final class Node {
+        final long hi;
+        final long lo;
+        final int length;
+        volatile long expiresAt;
+        volatile Node zero;
+        volatile Node one;
+
+        Node(long hi, long lo, int length, long expiresAt) {
+            this.hi = hi;
+            this.lo = lo;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean covers(long addressHi, long addressLo) {
+            return ((addressHi ^ hi) & maskHi(length)) == 0 && ((addressLo ^ lo) & maskLo(length)) == 0;
+        }
+
+        Node child(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        void setChild(int bit, Node child) {
+            if (bit == 0) zero = child;
+            else one = child;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size frequency estimator (count-min sketch).
+ *
+ * depth rows of width counters; an item maps to one counter per row and
+ * its estimate is the smallest of them. Estimates never undercount and
+ * overcount by at most ~e/width of the total with high probability, in
+ * constant memory however many distinct items pass through. Row indexes
+ * come from one 64-bit hash (h1 + i * h2), so an update hashes the item once.
+ *
+ * Updates are lock-free. Concurrent increments may overcount slightly but
+ * never lose a count.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int widthMask;
+    private final AtomicIntegerArray counters;
+
+    CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > Long.SIZE) {
+            throw new IllegalArgumentException("Sketch depth must be between 1 and " + Long.SIZE + ": " + depth);
+        }
+        this.depth = depth;
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.widthMask = size - 1;
+        this.counters = new AtomicIntegerArray(depth * size);
+    }
+
+    /**
+     * Count one occurrence and return the new estimate.
+     * Conservative update: only the counters at the current minimum are
+     * raised, which keeps overcounting far lower when the sketch is busy.
+     * Each is moved from exactly the minimum that was read, so two concurrent
+     * increments can't both claim the same step - the loser reads again.
+     */
+    int increment(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (;;) {
+            int min = Integer.MAX_VALUE;
+            long atMin = 0; // Rows holding the minimum
+            for (int row = 0; row < depth; row++) {
+                int value = counters.get(index(row, h1, h2));
+                if (value < min) {
+                    min = value;
+                    atMin = 1L << row;
+                } else if (value == min) {
+                    atMin |= 1L << row;
+                }
+            }
+            if (raise(atMin, min, h1, h2)) {
+                return min + 1;
+            }
+        }
+    }
+
+    int estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            int value = counters.get(index(row, h1, h2));
+            if (value < estimate) {
+                estimate = value;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Move the given rows from min to min + 1. False = one of them changed
+     * since it was read (rows raised before that only overcount).
+     */
+    private boolean raise(long rows, int min, int h1, int h2) {
+        for (int row = 0; row < depth; row++) {
+            if ((rows & (1L << row)) != 0 && !counters.compareAndSet(index(row, h1, h2), min, min + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int row, int h1, int h2) {
+        return row * (widthMask + 1) + ((h1 + row * h2) & widthMask);
+    }
+
+    void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    long memoryBytes() {
+        return (long) counters.length() * Integer.BYTES;
+    }
+}
@@ -0,0 +1,238 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster-wide counting semaphore in Redis, e.g. at most 50 concurrent
+ * report generations across all nodes.
+ *
+ * Each semaphore is a ZSET (RedisKeys.semaphore): member = lease id,
+ * score = lease expiry (Redis TIME, ms). Acquire is one script: drop expired
+ * leases, then add ours if fewer than `permits` remain. Release is one
+ * ZREM. Held leases are renewed by a heartbeat every heartbeat-ms, so a
+ * lease only expires when its node stops renewing it (crash, GC pause,
+ * partition) - leaked permits are reclaimed by the next acquire, with no
+ * manual cleanup.
+ *
+ * Redis calls run behind RedisCircuitBreaker. While Redis is unavailable
+ * the caller's RateLimitFallback applies: LOCAL enforces permits / nodes on
+ * this node, FAIL_OPEN admits, FAIL_CLOSED rejects.
+ */
+@Slf4j
+@Component
+public class DistributedSemaphore {
+
+    @Autowired
+    private RedisBatchDispatcher redisBatchDispatcher;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    private NodeCountEstimator nodeCountEstimator;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.semaphore.lease-ms:30000}")
+    private long leaseMs;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong leaseSequence = new AtomicLong();
+
+    // Leases held by this node, by semaphore name (renewed by the heartbeat)
+    private final Map<String, Set<String>> held = new ConcurrentHashMap<>();
+
+    // In-flight count per semaphore while running on the LOCAL fallback
+    private final Map<String, AtomicInteger> localHeld = new ConcurrentHashMap<>();
+
+    // KEYS[1] = semaphore, ARGV[1] = permits, ARGV[2] = lease ms, ARGV[3] = lease id
+    // Returns {1, held} or {0, held}
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> acquireScript;
+
+    // KEYS[1] = semaphore, ARGV[1] = lease ms, ARGV[2..] = lease ids; returns how many were still held
+    private final DefaultRedisScript<Long> renewScript;
+
+    // KEYS[1] = semaphore, ARGV[1] = lease id
+    private final DefaultRedisScript<Long> releaseScript;
+
+    public DistributedSemaphore() {
+        acquireScript = new DefaultRedisScript<>();
+        acquireScript.setResultType(List.class);
+        acquireScript.setScriptText("""
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local lease = tonumber(ARGV[2])
+
+            -- Reclaim leases whose node stopped renewing them
+            redis.call("ZREMRANGEBYSCORE", KEYS[1], "-inf", now)
+
+            local held = redis.call("ZCARD", KEYS[1])
+            if held >= tonumber(ARGV[1]) then
+                return {0, held}
+            end
+
+            redis.call("ZADD", KEYS[1], now + lease, ARGV[3])
+            redis.call("PEXPIRE", KEYS[1], lease)
+            return {1, held + 1}
+        """);
+
+        renewScript = new DefaultRedisScript<>();
+        renewScript.setResultType(Long.class);
+        renewScript.setScriptText("""
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local lease = tonumber(ARGV[1])
+
+            local renewed = 0
+            for i = 2, #ARGV do
+                renewed = renewed + redis.call("ZADD", KEYS[1], "XX", "CH", now + lease, ARGV[i])
+            end
+            if renewed > 0 then
+                redis.call("PEXPIRE", KEYS[1], lease)
+            end
+            return renewed
+        """);
+
+        releaseScript = new DefaultRedisScript<>();
+        releaseScript.setResultType(Long.class);
+        releaseScript.setScriptText("""
+            return redis.call("ZREM", KEYS[1], ARGV[1])
+        """);
+    }
+
+    /**
+     * Take one of `permits` leases on the named semaphore, or null when all
+     * are in use. The lease must be released exactly once.
+     */
+    public Lease tryAcquire(String name, int permits, RateLimitFallback fallback) {
+        return redisCircuitBreaker.execute(
+                () -> acquireRemote(name, permits),
+                () -> acquireFallback(name, permits, fallback));
+    }
+
+    private Lease acquireRemote(String name, int permits) {
+        String leaseId = nodeId + ":" + leaseSequence.incrementAndGet();
+        List<?> result = redisBatchDispatcher.execute(acquireScript,
+                List.of(RedisKeys.semaphore(name)), permits, leaseMs, leaseId);
+
+        if (result == null || result.isEmpty() || toLong(result.get(0)) != 1) {
+            metricsService.recordSemaphoreRejected(name);
+            return null;
+        }
+
+        held.computeIfAbsent(name, key -> ConcurrentHashMap.newKeySet()).add(leaseId);
+        return new Lease(name, leaseId);
+    }
+
+    private Lease acquireFallback(String name, int permits, RateLimitFallback fallback) {
+        RateLimitFallback mode = fallback != null ? fallback : RateLimitFallback.LOCAL;
+        metricsService.recordRateLimitFallback(mode.name());
+
+        return switch (mode) {
+            case FAIL_OPEN -> new Lease(name, null);
+            case FAIL_CLOSED -> null;
+            case LOCAL -> {
+                int share = Math.max(1, permits / nodeCountEstimator.nodeCount());
+                AtomicInteger inFlight = localHeld.computeIfAbsent(name, key -> new AtomicInteger());
+                if (inFlight.incrementAndGet() > share) {
+                    inFlight.decrementAndGet();
+                    metricsService.recordSemaphoreRejected(name);
+                    yield null;
+                }
+                yield new Lease(name, "");
+            }
+        };
+    }
+
+    private void release(Lease lease) {
+        if (lease.id == null) {
+            return; // Admitted by FAIL_OPEN
+        }
+        if (lease.id.isEmpty()) {
+            localHeld.get(lease.name).decrementAndGet();
+            return;
+        }
+
+        Set<String> leases = held.get(lease.name);
+        if (leases != null) {
+            leases.remove(lease.id);
+        }
+        // If Redis is unreachable the lease is no longer renewed and expires within lease-ms
+        redisCircuitBreaker.execute(
+                () -> redisBatchDispatcher.execute(releaseScript, List.of(RedisKeys.semaphore(lease.name)), lease.id),
+                () -> 0L);
+    }
+
+    /**
+     * Renew every lease this node holds - one script call per semaphore
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.semaphore.heartbeat-ms:10000}")
+    public void heartbeat() {
+        held.forEach((name, leases) -> {
+            if (leases.isEmpty()) {
+                return;
+            }
+            List<Object> args = new ArrayList<>();
+            args.add(leaseMs);
+            args.addAll(leases);
+
+            try {
+                Long renewed = redisBatchDispatcher.execute(renewScript,
+                        List.of(RedisKeys.semaphore(name)), args.toArray());
+                if (renewed != null && renewed < leases.size()) {
+                    // Released meanwhile, or expired during an outage and possibly re-granted
+                    log.debug("Semaphore {}: {} of {} lease(s) renewed", name, renewed, leases.size());
+                }
+            } catch (Exception e) {
+                log.warn("Semaphore lease renewal failed for {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+    }
+
+    /**
+     * One acquired permit
+     */
+    public final class Lease {
+
+        private final String name;
+        private final String id;   // null = FAIL_OPEN, "" = LOCAL fallback
+        private boolean released;
+
+        private Lease(String name, String id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public synchronized void release() {
+            if (!released) {
+                released = true;
+                DistributedSemaphore.this.release(this);
+            }
+        }
+    }
+}
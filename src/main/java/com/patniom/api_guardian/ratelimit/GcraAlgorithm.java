@@ -0,0 +1,91 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GCRA (Generic Cell Rate Algorithm): one theoretical arrival time (TAT)
+ * per identifier. Admits one request every (interval / capacity) with
+ * bursts up to capacity, without refill-edge bursts.
+ * State: tat (g, µs)
+ */
+@Component
+public class GcraAlgorithm implements RateLimitAlgorithm {
+
+    private static final String LUA_BODY = """
+            local burst = tonumber(ARGV[la])
+            local emission = tonumber(ARGV[la + 1])
+            local tat = tonumber(redis.call("HGET", KEYS[1], "g")) or nowUs
+            if tat < nowUs then
+                tat = nowUs
+            end
+
+            local newTat = tat + emission
+            local allowAt = newTat - burst * emission
+
+            if nowUs >= allowAt then
+                -- %.0f keeps all digits (Redis would format large numbers with %.14g)
+                redis.call("HSET", KEYS[1], "g", string.format("%.0f", newTat))
+                keep = math.max(keep, math.ceil((newTat - nowUs) / 1000) + 1)
+                allowed = true
+                remaining = math.floor((nowUs - allowAt) / emission)
+                reset = math.ceil(newTat / 1000)
+            else
+                retryMs = math.ceil((allowAt - nowUs) / 1000)
+                reset = math.ceil(tat / 1000)
+            end
+            """;
+
+    /**
+     * Emission interval: time between two requests at the sustained rate
+     */
+    static long emissionIntervalMicros(RateLimitConfig config) {
+        return Math.max(1, config.getRefillIntervalMs() * 1000 / Math.max(1, config.getCapacity()));
+    }
+
+    @Override
+    public RateLimitStrategy strategy() {
+        return RateLimitStrategy.GCRA;
+    }
+
+    @Override
+    public String luaBody() {
+        return LUA_BODY;
+    }
+
+    @Override
+    public List<String> redisFields() {
+        return List.of(RedisKeys.F_TAT);
+    }
+
+    @Override
+    public List<Object> luaArgs(RateLimitConfig config) {
+        return List.of(config.getCapacity(), emissionIntervalMicros(config));
+    }
+
+    @Override
+    public int stateSize() {
+        return 1;
+    }
+
+    @Override
+    public LimiterOutcome evaluate(long[] state, long nowMicros, RateLimitConfig config) {
+        long emission = emissionIntervalMicros(config);
+        long tat = Math.max(state[0], nowMicros);
+        long newTat = tat + emission;
+        long allowAt = newTat - config.getCapacity() * emission;
+
+        if (nowMicros >= allowAt) {
+            state[0] = newTat;
+            return new LimiterOutcome(true, (nowMicros - allowAt) / emission,
+                    ceilDiv(newTat, 1000), 0);
+        }
+
+        return new LimiterOutcome(false, 0, ceilDiv(tat, 1000), ceilDiv(allowAt - nowMicros, 1000));
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
@@ -0,0 +1,35 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of a single guard evaluation (ban check + rate limit + violation escalation)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuardDecision {
+
+    private AuditDecision decision;   // ALLOW, RATE_LIMIT, BANNED
+    private long remaining;           // Tokens left after this request
+    private long resetEpochSeconds;   // When the bucket refills (Unix epoch)
+    private long retryAfterSeconds;   // Only set when the request was rejected
+    private long retryAfterMs;        // Same in ms, when the store knows it (0 = use retryAfterSeconds)
+    private long violations;          // Violation count after this request
+    private long banSeconds;          // > 0 when this request triggered a new ban
+    private QuotaWindow limitedBy;    // Quota window that rejected (null = burst limiter)
+    private LimitScope limitedScope;  // Hierarchy level of limitedBy (IDENTIFIER unless a parent level rejected)
+
+    public boolean isAllowed() {
+        return decision == AuditDecision.ALLOW;
+    }
+
+    public boolean isBanApplied() {
+        return banSeconds > 0;
+    }
+}
@@ -0,0 +1,228 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single entry point for the per-request guard decision.
+ *
+ * Resolves the configured RateLimitAlgorithm (token bucket, GCRA, sliding
+ * window) and RateLimitStore (Redis, local, sharded) for the request, lets the store
+ * make the decision, then emits metrics/Kafka events for violations.
+ * New algorithms and stores are picked up automatically as Spring beans.
+ *
+ * Redis-backed stores run behind RedisCircuitBreaker. While Redis is failing
+ * or slow the request gets its configured RateLimitFallback instead: a
+ * per-node share of the limit enforced by the LOCAL store, allow, or reject.
+ *
+ * For Redis-backed stores, IP identifiers first pass IdentifierAdmission:
+ * rarely seen addresses are limited through their subnet's aggregate
+ * identifier so an IP spray can't create per-address state. The same goes
+ * for IP levels of the limit hierarchy (RateLimitConfig.levels).
+ *
+ * Large token buckets with no quotas or levels on the REDIS store spend
+ * tokens leased in batches by TokenLeaseManager (ratelimit.lease.*) and only
+ * reach Redis to renew the lease or to reject (without escalating).
+ */
+@Slf4j
+@Service
+public class GuardDecisionService {
+
+    @Autowired
+    private AbuseDetectionService abuseDetectionService;
+
+    @Autowired
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Autowired
+    private NodeCountEstimator nodeCountEstimator;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Autowired
+    private BanNearCache banNearCache;
+
+    @Autowired
+    private CidrBanService cidrBanService;
+
+    @Autowired
+    private IdentifierAdmission identifierAdmission;
+
+    @Autowired
+    private TokenLeaseManager tokenLeaseManager;
+
+    @Autowired
+    private List<RateLimitAlgorithm> algorithmBeans;
+
+    @Autowired
+    private List<RateLimitStore> storeBeans;
+
+    private final Map<RateLimitStrategy, RateLimitAlgorithm> algorithms =
+            new EnumMap<>(RateLimitStrategy.class);
+    private final Map<RateLimitStoreType, RateLimitStore> stores =
+            new EnumMap<>(RateLimitStoreType.class);
+
+    @PostConstruct
+    void registerProviders() {
+        algorithmBeans.forEach(algorithm -> algorithms.put(algorithm.strategy(), algorithm));
+        storeBeans.forEach(store -> stores.put(store.type(), store));
+
+        log.info("Rate limit algorithms: {}, stores: {}", algorithms.keySet(), stores.keySet());
+    }
+
+    /**
+     * Evaluate ban + quotas + rate limit for a request
+     */
+    public GuardDecision evaluate(String identifier, RateLimitConfig config) {
+        RateLimitAlgorithm algorithm = algorithms.getOrDefault(
+                config.getStrategy(), algorithms.get(RateLimitStrategy.TOKEN_BUCKET));
+        RateLimitStore store = stores.getOrDefault(
+                config.getStore(), stores.get(RateLimitStoreType.REDIS));
+
+        // Limiter state (and escalation bans) live under this identifier
+        String stateId = identifier;
+        RateLimitConfig stateConfig = config;
+
+        GuardDecision decision;
+        long subnetBannedUntil = cidrBanService.bannedUntil(identifier);
+        long bannedUntil = banNearCache.activeBanUntil(identifier);
+        if (subnetBannedUntil > 0) {
+            decision = bannedDecision(subnetBannedUntil);
+        } else if (store.type() == RateLimitStoreType.LOCAL) {
+            decision = store.evaluate(identifier, config, algorithm);
+        } else if (bannedUntil > 0) {
+            // Known active bans are rejected without a Redis call
+            decision = bannedDecision(bannedUntil);
+        } else {
+            stateId = identifierAdmission.admit(identifier);
+            if (!stateId.equals(identifier)) {
+                stateConfig = config.aggregate(identifierAdmission.getAggregateMultiplier());
+            }
+            decision = evaluateRemote(stateId, admitLevels(stateConfig), algorithm, store);
+        }
+
+        if (decision.getDecision() == AuditDecision.BANNED) {
+            log.warn("⛔ Banned identifier attempted access: {}", stateId);
+        } else if (decision.getLimitedBy() != null) {
+            log.debug("{} {} quota exhausted for: {}",
+                    decision.getLimitedScope(), decision.getLimitedBy(), stateId);
+        } else if (decision.getDecision() == AuditDecision.RATE_LIMIT && decision.getViolations() > 0) {
+            // Store state is already updated - only metrics and Kafka events remain
+            // (fallback rejections record no violation)
+            abuseDetectionService.onViolationRecorded(
+                    stateId, decision.getViolations(), decision.getBanSeconds());
+        }
+
+        return decision;
+    }
+
+    /**
+     * Route IP levels through IdentifierAdmission like IP identifiers
+     */
+    private RateLimitConfig admitLevels(RateLimitConfig config) {
+        if (config.getLevels().isEmpty()) {
+            return config;
+        }
+
+        List<LimitLevel> levels = new ArrayList<>(config.getLevels().size());
+        for (LimitLevel level : config.getLevels()) {
+            String stateId = level.scope() == LimitScope.IP
+                    ? identifierAdmission.admit(level.identifier())
+                    : level.identifier();
+            levels.add(stateId.equals(level.identifier()) ? level
+                    : level.aggregate(stateId, identifierAdmission.getAggregateMultiplier()));
+        }
+
+        RateLimitConfig admitted = config.withoutLevels();
+        admitted.setLevels(levels);
+        return admitted;
+    }
+
+    private GuardDecision evaluateRemote(String identifier, RateLimitConfig config,
+                                         RateLimitAlgorithm algorithm, RateLimitStore store) {
+        long bannedUntil = banNearCache.activeBanUntil(identifier);
+        if (bannedUntil > 0) {
+            return bannedDecision(bannedUntil);
+        }
+
+        boolean leasing = store.type() == RateLimitStoreType.REDIS && tokenLeaseManager.isEligible(config);
+        if (leasing) {
+            GuardDecision leased = tokenLeaseManager.trySpend(identifier, config);
+            if (leased != null) {
+                return leased;
+            }
+        }
+
+        GuardDecision decision = redisCircuitBreaker.execute(
+                () -> leasing ? leaseOrEvaluate(identifier, config, algorithm, store)
+                        : store.evaluate(identifier, config, algorithm),
+                () -> fallback(identifier, config, algorithm));
+        if (decision.getDecision() == AuditDecision.BANNED) {
+            banNearCache.remember(identifier,
+                    System.currentTimeMillis() + decision.getRetryAfterSeconds() * 1000);
+        }
+        return decision;
+    }
+
+    /**
+     * Renew the identifier's lease; without a token from it the guard script
+     * decides. That rejection doesn't escalate - the bucket may only be empty
+     * because other nodes hold unspent leases.
+     */
+    private GuardDecision leaseOrEvaluate(String identifier, RateLimitConfig config,
+                                          RateLimitAlgorithm algorithm, RateLimitStore store) {
+        GuardDecision leased = tokenLeaseManager.tryLease(identifier, config);
+        return leased != null ? leased : store.evaluate(identifier, config.withoutEscalation(), algorithm);
+    }
+
+    private GuardDecision bannedDecision(long bannedUntil) {
+        long retryAfter = Math.max(1, (bannedUntil - System.currentTimeMillis() + 999) / 1000);
+        return GuardDecision.builder()
+                .decision(AuditDecision.BANNED)
+                .resetEpochSeconds(bannedUntil / 1000)
+                .retryAfterSeconds(retryAfter)
+                .build();
+    }
+
+    /**
+     * Decision while the Redis circuit is open or the call failed
+     */
+    private GuardDecision fallback(String identifier, RateLimitConfig config, RateLimitAlgorithm algorithm) {
+        RateLimitFallback mode = config.getFallback() != null ? config.getFallback() : RateLimitFallback.LOCAL;
+        metricsService.recordRateLimitFallback(mode.name());
+
+        return switch (mode) {
+            case LOCAL -> stores.get(RateLimitStoreType.LOCAL).evaluate(
+                    identifier, config.perNodeShare(nodeCountEstimator.nodeCount()), algorithm);
+            case FAIL_OPEN -> GuardDecision.builder()
+                    .decision(AuditDecision.ALLOW)
+                    .remaining(config.getCapacity())
+                    .resetEpochSeconds((System.currentTimeMillis() + config.getRefillIntervalMs()) / 1000)
+                    .build();
+            case FAIL_CLOSED -> GuardDecision.builder()
+                    .decision(AuditDecision.RATE_LIMIT)
+                    .resetEpochSeconds(System.currentTimeMillis() / 1000 + redisCircuitBreaker.retryAfterSeconds())
+                    .retryAfterSeconds(redisCircuitBreaker.retryAfterSeconds())
+                    .build();
+        };
+    }
+
+    /**
+     * Reset limiter state for an identifier in every store (admin feature)
+     */
+    public void resetRateLimit(String identifier) {
+        stores.values().forEach(store -> store.reset(identifier));
+        tokenLeaseManager.discard(identifier);
+        log.info("Rate limit reset for identifier: {}", identifier);
+    }
+}
@@ -0,0 +1,142 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Admission gate for per-IP limiter state.
+ *
+ * A spray of rotating or spoofed source IPs would otherwise create one set
+ * of Redis keys per address. Each IP: identifier is counted in a count-min
+ * sketch over a short window; only IPs seen more than threshold times in
+ * the current or previous window get their own state. The rest fall back to
+ * subnet aggregates (IPNET:1.2.3.0/24, then IPNET:1.2.0.0/16; IPv6 /64 then
+ * /48): the finest subnet that is itself busy gets the state, and anything
+ * rarer lands in the coarsest one. Aggregates get a proportionally larger
+ * limit and are never banned: their rejections record no violation, so a
+ * few noisy sources can't lock every new address of the subnet out. Redis memory follows the number of heavy clients and busy subnets
+ * rather than distinct addresses, even for a spray across the whole space.
+ *
+ * The sketch is per node and approximate: an IP can only be promoted too
+ * early (overcount), never kept out while it is heavy.
+ */
+@Slf4j
+@Component
+public class IdentifierAdmission {
+
+    private static final String IP_PREFIX = "IP:";
+    private static final String AGGREGATE_PREFIX = "IPNET:";
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.admission.enabled:true}")
+    private boolean enabled;
+
+    // Requests per window before an IP gets its own limiter state
+    @Value("${ratelimit.admission.threshold:10}")
+    private int threshold;
+
+    @Value("${ratelimit.admission.window-ms:10000}")
+    private long windowMs;
+
+    // Aggregation levels, finest first
+    @Value("${ratelimit.admission.ipv4-prefixes:24,16}")
+    private List<Integer> ipv4Prefixes;
+
+    @Value("${ratelimit.admission.ipv6-prefixes:64,48}")
+    private List<Integer> ipv6Prefixes;
+
+    // Aggregate limit = identifier limit x this
+    @Value("${ratelimit.admission.aggregate-multiplier:16}")
+    private int aggregateMultiplier;
+
+    @Value("${ratelimit.admission.sketch-width:262144}")
+    private int sketchWidth;
+
+    @Value("${ratelimit.admission.sketch-depth:4}")
+    private int sketchDepth;
+
+    private volatile CountMinSketch current;
+    private volatile CountMinSketch previous;
+    private volatile long windowStart;
+
+    /**
+     * Identifier that should carry limiter state for this request (the
+     * original one, or the subnet aggregate for an IP seen rarely)
+     */
+    public String admit(String identifier) {
+        if (!enabled || !identifier.startsWith(IP_PREFIX)) {
+            return identifier;
+        }
+
+        long now = System.currentTimeMillis();
+        if (current == null || now - windowStart >= windowMs) {
+            rotate(now);
+        }
+
+        if (isHeavy(identifier)) {
+            metricsService.recordAdmission(true);
+            return identifier;
+        }
+
+        CidrTrie.Prefix address = CidrTrie.parseAddress(identifier.substring(IP_PREFIX.length()));
+        if (address == null) {
+            return identifier;
+        }
+        boolean ipv4 = address.hi() == 0 && (address.lo() >>> 32) == 0xFFFF;
+        List<Integer> levels = ipv4 ? ipv4Prefixes : ipv6Prefixes;
+
+        String aggregate = identifier;
+        for (int level : levels) {
+            int length = ipv4 ? 96 + level : level;
+            aggregate = AGGREGATE_PREFIX + CidrTrie.format(CidrTrie.mask(address, length));
+            if (isHeavy(aggregate)) {
+                break;
+            }
+        }
+        metricsService.recordAdmission(false);
+        return aggregate;
+    }
+
+    public boolean isAggregate(String identifier) {
+        return identifier.startsWith(AGGREGATE_PREFIX);
+    }
+
+    public int getAggregateMultiplier() {
+        return aggregateMultiplier;
+    }
+
+    private synchronized void rotate(long now) {
+        if (current != null && now - windowStart < windowMs) {
+            return; // Another thread rotated first
+        }
+
+        if (current == null) {
+            current = new CountMinSketch(sketchDepth, sketchWidth);
+            previous = new CountMinSketch(sketchDepth, sketchWidth);
+            log.info("IP admission sketch: {}x{} counters ({} KB per window), threshold {} per {}ms",
+                    sketchDepth, sketchWidth, current.memoryBytes() / 1024, threshold, windowMs);
+        } else {
+            // Reuse the oldest sketch as the new window
+            CountMinSketch recycled = previous;
+            recycled.clear();
+            previous = current;
+            current = recycled;
+        }
+        windowStart = now;
+    }
+
+    /**
+     * Count one hit; true once seen more than threshold times in this or the last window
+     */
+    private boolean isHeavy(String key) {
+        long hash = OffHeapLimiterTable.hash(key, 0x5ca1ab1eL);
+        return current.increment(hash) > threshold || previous.estimate(hash) > threshold;
+    }
+}
@@ -0,0 +1,281 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * One-shot fold of the key-per-value layout into the per-identifier state
+ * hash (RedisKeys.state), so active bans, violation counts and day/month
+ * quota counters survive the upgrade:
+ *
+ * ban:{id} / ban:id / banned:id       -> b  (ban expiry from the key's TTL)
+ * abuse:{id}:violations               -> v, vx
+ * swc:{id}:<seconds>                  -> q<seconds>w / c / p
+ * sliding:{id}:<seconds>              -> renamed to sl:{id}:<seconds>
+ *
+ * Fields already written under the new layout win (HSETNX), the hash TTL is
+ * raised to the old key's TTL and the old key is deleted. Short-lived limiter
+ * keys (bucket, gcra, sw, violations) are dropped - they only hold the
+ * current refill window, and bucket:*:lastRefill could lose its TTL in the
+ * old layout. Folded bans are added to the ban registry so they show up in
+ * listings and the gauge. Only the primary Redis is migrated.
+ *
+ * Layout 2 stores values as plain text instead of JSON, so ban registry
+ * members written as "\"KEY:abc\"" are rewritten as KEY:abc.
+ *
+ * The layout version reached is kept in RedisKeys.LAYOUT_VERSION: once it is
+ * current, a boot costs one GET and no SCAN. A short-lived lock key keeps
+ * nodes starting together from migrating side by side.
+ */
+@Slf4j
+@Component
+public class LegacyKeyMigrator {
+
+    private static final String[] DROPPED_PATTERNS = {"bucket:*", "gcra:*", "sw:*", "violations:*"};
+
+    // 1 = per-identifier state hashes, 2 = plain-text values
+    static final int LAYOUT = 2;
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+    private static final int REGISTRY_CHUNK = 1000;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private BanRegistry banRegistry;
+
+    @Value("${ratelimit.keys.migrate-legacy:true}")
+    private boolean enabled;
+
+    // KEYS[1] = state hash, ARGV[1] = TTL (ms) the fields need, ARGV[2..] = field/value pairs
+    private final DefaultRedisScript<Long> foldScript;
+
+    public LegacyKeyMigrator() {
+        foldScript = new DefaultRedisScript<>();
+        foldScript.setResultType(Long.class);
+        foldScript.setScriptText("""
+            local keep = tonumber(ARGV[1])
+            local written = 0
+            for i = 2, #ARGV, 2 do
+                written = written + redis.call("HSETNX", KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            """ + RedisKeys.KEEP_TTL + """
+            return written
+        """);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            long layout = layoutVersion();
+            if (layout >= LAYOUT) {
+                log.debug("Redis key layout is current (version {})", layout);
+                return;
+            }
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(RedisKeys.LAYOUT_LOCK, String.valueOf(LAYOUT), LOCK_TTL))) {
+                log.info("Redis key layout migration already running on another node");
+                return;
+            }
+
+            try {
+                if (layout < 1) {
+                    foldLegacyKeys();
+                }
+                unquoteBanRegistry();
+                redisTemplate.opsForValue().set(RedisKeys.LAYOUT_VERSION, LAYOUT);
+                log.info("🔑 Redis key layout migrated from version {} to {}", layout, LAYOUT);
+            } finally {
+                redisTemplate.delete(RedisKeys.LAYOUT_LOCK);
+            }
+        } catch (Exception e) {
+            // e.g. Redis Cluster, where SCAN must go node by node - retried on the next boot
+            log.warn("Legacy key migration skipped: {}", e.getMessage());
+        }
+    }
+
+    private long layoutVersion() {
+        Object version = redisTemplate.opsForValue().get(RedisKeys.LAYOUT_VERSION);
+        return version != null ? Long.parseLong(version.toString()) : 0;
+    }
+
+    private void foldLegacyKeys() {
+        long bans = foldBans("ban:*", "ban:") + foldBans("banned:*", "banned:");
+        long violations = foldViolations();
+        long quotas = foldQuotas();
+        long logs = renameSlidingLogs();
+
+        long dropped = 0;
+        for (String pattern : DROPPED_PATTERNS) {
+            dropped += RedisKeyScanner.deleteMatching(redisTemplate, pattern);
+        }
+
+        if (bans + violations + quotas + logs + dropped > 0) {
+            log.info("🔑 Migrated legacy rate limit keys to state hashes: {} ban(s), {} violation counter(s), "
+                    + "{} quota window(s), {} sliding log(s); {} short-lived limiter key(s) dropped",
+                    bans, violations, quotas, logs, dropped);
+        }
+    }
+
+    /**
+     * Rewrite JSON-quoted ban registry members (written before layout 2) as plain identifiers
+     */
+    private void unquoteBanRegistry() {
+        long rewritten = 0;
+        ScanOptions options = ScanOptions.scanOptions().count(REGISTRY_CHUNK).build();
+        try (Cursor<ZSetOperations.TypedTuple<Object>> cursor =
+                     redisTemplate.opsForZSet().scan(RedisKeys.BAN_INDEX, options)) {
+            while (cursor.hasNext()) {
+                ZSetOperations.TypedTuple<Object> tuple = cursor.next();
+                String member = String.valueOf(tuple.getValue());
+                if (member.length() < 2 || !member.startsWith("\"") || !member.endsWith("\"")
+                        || tuple.getScore() == null) {
+                    continue;
+                }
+                redisTemplate.opsForZSet().add(RedisKeys.BAN_INDEX,
+                        member.substring(1, member.length() - 1), tuple.getScore());
+                redisTemplate.opsForZSet().remove(RedisKeys.BAN_INDEX, member);
+                rewritten++;
+            }
+        }
+        if (rewritten > 0) {
+            log.info("🔑 Rewrote {} JSON-quoted ban registry member(s)", rewritten);
+        }
+    }
+
+    private long foldBans(String pattern, String prefix) {
+        return forEachKey(pattern, key -> {
+            String identifier = parse(key, prefix, "")[0];
+            Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            if (identifier == null || ttl == null || ttl == -2) {
+                return false;
+            }
+            // Keys without expiry were permanent bans - the longest escalation is the nearest equivalent
+            long remaining = ttl > 0 ? ttl : TimeUnit.SECONDS.toMillis(AbuseDetectionService.BAN_DURATION_SEVERE);
+
+            fold(identifier, remaining, RedisKeys.F_BAN_UNTIL, System.currentTimeMillis() + remaining);
+            banRegistry.record(identifier, (remaining + 999) / 1000);
+            redisTemplate.delete(key);
+            return true;
+        });
+    }
+
+    private long foldViolations() {
+        return forEachKey("abuse:*", key -> {
+            String identifier = parse(key, "abuse:", ":violations")[0];
+            Object count = redisTemplate.opsForValue().get(key);
+            Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            if (identifier == null || count == null || ttl == null || ttl == -2) {
+                return false;
+            }
+            long remaining = ttl > 0 ? ttl
+                    : TimeUnit.SECONDS.toMillis(AbuseDetectionService.VIOLATION_WINDOW_SECONDS);
+
+            fold(identifier, remaining,
+                    RedisKeys.F_VIOLATIONS, count,
+                    RedisKeys.F_VIOLATIONS_UNTIL, System.currentTimeMillis() + remaining);
+            redisTemplate.delete(key);
+            return true;
+        });
+    }
+
+    private long foldQuotas() {
+        return forEachKey("swc:*", key -> {
+            String[] parsed = parse(key, "swc:", null);
+            Map<Object, Object> window = redisTemplate.opsForHash().entries(key);
+            Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+            if (parsed[0] == null || window.get("w") == null || ttl == null || ttl <= 0) {
+                return false;
+            }
+
+            List<String> fields = RedisKeys.quotaFields(Long.parseLong(parsed[1]));
+            fold(parsed[0], ttl,
+                    fields.get(0), window.get("w"),
+                    fields.get(1), window.getOrDefault("c", 0),
+                    fields.get(2), window.getOrDefault("p", 0));
+            redisTemplate.delete(key);
+            return true;
+        });
+    }
+
+    private long renameSlidingLogs() {
+        return forEachKey("sliding:*", key -> {
+            String[] parsed = parse(key, "sliding:", null);
+            return parsed[0] != null && Boolean.TRUE.equals(redisTemplate.renameIfAbsent(
+                    key, RedisKeys.slidingLog(parsed[0], Long.parseLong(parsed[1]))));
+        });
+    }
+
+    /**
+     * HSETNX the field/value pairs into the identifier's state hash, keeping it at least keepMs
+     */
+    private void fold(String identifier, long keepMs, Object... fieldValues) {
+        Object[] args = new Object[fieldValues.length + 1];
+        args[0] = String.valueOf(keepMs);
+        for (int i = 0; i < fieldValues.length; i++) {
+            args[i + 1] = String.valueOf(fieldValues[i]);
+        }
+        redisTemplate.execute(foldScript, List.of(RedisKeys.state(identifier)), args);
+    }
+
+    /**
+     * Identifier (tagged or not) and tail of a legacy key; tail is the trailing
+     * ":<seconds>" digits when suffix is null. {null, null} if the key doesn't fit.
+     */
+    private static String[] parse(String key, String prefix, String suffix) {
+        String rest = key.substring(prefix.length());
+        String tail = suffix;
+        if (tail == null) {
+            int colon = rest.lastIndexOf(':');
+            if (colon < 0 || !rest.substring(colon + 1).chars().allMatch(Character::isDigit)
+                    || colon == rest.length() - 1) {
+                return new String[] {null, null};
+            }
+            tail = rest.substring(colon);
+        } else if (!rest.endsWith(tail)) {
+            return new String[] {null, null};
+        }
+
+        String identifier = rest.substring(0, rest.length() - tail.length());
+        if (identifier.startsWith("{") && identifier.endsWith("}")) {
+            identifier = identifier.substring(1, identifier.length() - 1);
+        }
+        return new String[] {identifier.isEmpty() ? null : identifier,
+                suffix == null ? tail.substring(1) : tail};
+    }
+
+    /**
+     * Stream every key matching the pattern through migrate; returns how many it migrated
+     */
+    private long forEachKey(String pattern, Predicate<String> migrate) {
+        long migrated = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                if (migrate.test(cursor.next())) {
+                    migrated++;
+                }
+            }
+        }
+        return migrated;
+    }
+}
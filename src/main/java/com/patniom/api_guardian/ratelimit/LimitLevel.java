@@ -0,0 +1,20 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One parent level checked together with the request's own identifier.
+ * Limits are sliding window counters in the level identifier's state hash.
+ */
+public record LimitLevel(LimitScope scope, String identifier, Map<QuotaWindow, Long> limits) {
+
+    /**
+     * Same level charged to a group identifier (limits multiplied)
+     */
+    public LimitLevel aggregate(String groupIdentifier, int members) {
+        Map<QuotaWindow, Long> scaled = new EnumMap<>(QuotaWindow.class);
+        limits.forEach((window, limit) -> scaled.put(window, Math.max(1, limit * Math.max(1, members))));
+        return new LimitLevel(scope, groupIdentifier, scaled);
+    }
+}
@@ -0,0 +1,27 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * Level of the limit hierarchy a request is charged against
+ */
+public enum LimitScope {
+
+    /**
+     * The request's own identifier (API key, user or IP) - burst limiter and quotas
+     */
+    IDENTIFIER,
+
+    /**
+     * The user owning the API key - shared by all of that user's keys
+     */
+    USER,
+
+    /**
+     * The client IP an API key is used from
+     */
+    IP,
+
+    /**
+     * Cluster-wide cap per route, protects the backend
+     */
+    ROUTE
+}
@@ -0,0 +1,16 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of one in-process RateLimitAlgorithm evaluation
+ */
+@Data
+@AllArgsConstructor
+public class LimiterOutcome {
+    private boolean allowed;
+    private long remaining;
+    private long resetEpochMs;
+    private long retryMs;       // Only set when rejected
+}
@@ -0,0 +1,331 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process store: limits are enforced per node, without Redis.
+ *
+ * Same semantics as RedisRateLimitStore (ban check, quota windows, burst
+ * algorithm, violation escalation), evaluated in Java. State lives in an
+ * off-heap open-addressing table keyed by a 64-bit hash of
+ * strategy + identifier, so millions of identifiers cost no heap objects
+ * and the hot path allocates nothing but the returned decision.
+ * Intended for single-node/edge deployments or routes where a per-node
+ * limit is good enough. Parent levels (RateLimitConfig.levels) are not
+ * enforced here - they are cluster-wide limits by nature.
+ */
+@Slf4j
+@Component
+public class LocalRateLimitStore implements RateLimitStore {
+
+    private static final long IDLE_EVICTION_MS = 3_600_000L; // Same as the Redis TTL
+
+    // Record slots (longs) in the off-heap table
+    private static final int BAN_UNTIL = 0;
+    private static final int VIOLATIONS = 1;
+    private static final int VIOLATION_WINDOW_START = 2;
+    // Windows a RateLimitConfig can carry (SECOND only appears on hierarchy levels)
+    private static final QuotaWindow[] WINDOWS = {
+            QuotaWindow.MINUTE, QuotaWindow.HOUR, QuotaWindow.DAY, QuotaWindow.MONTH};
+
+    private static final int QUOTAS = 3;                              // 3 per entry of WINDOWS
+    private static final int LIMITER = QUOTAS + WINDOWS.length * 3;   // Algorithm state
+    private static final int LIMITER_SLOTS = 3;
+    private static final int RECORD_SLOTS = LIMITER + LIMITER_SLOTS;
+
+    private static final ThreadLocal<long[]> RECORD = ThreadLocal.withInitial(() -> new long[RECORD_SLOTS]);
+    private static final ThreadLocal<long[]> LIMITER_STATE = ThreadLocal.withInitial(() -> new long[LIMITER_SLOTS]);
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Value("${ratelimit.local.max-entries:1048576}")
+    private long maxEntries;
+
+    private volatile OffHeapLimiterTable table;
+
+    @Override
+    public RateLimitStoreType type() {
+        return RateLimitStoreType.LOCAL;
+    }
+
+    @Override
+    public GuardDecision evaluate(String identifier,
+                                 RateLimitConfig config,
+                                 RateLimitAlgorithm algorithm) {
+        long nowMicros = System.currentTimeMillis() * 1000;
+        long now = nowMicros / 1000;
+
+        OffHeapLimiterTable table = table();
+        long[] record = RECORD.get();
+        long index = table.acquire(
+                OffHeapLimiterTable.hash(identifier, algorithm.strategy().ordinal()), now);
+
+        try {
+            table.read(index, record);
+            GuardDecision decision = evaluate(record, now, nowMicros, config, algorithm);
+            table.write(index, record);
+            return decision;
+        } finally {
+            table.release(index);
+        }
+    }
+
+    private GuardDecision evaluate(long[] record, long now, long nowMicros,
+                                   RateLimitConfig config, RateLimitAlgorithm algorithm) {
+        // 1. Ban check
+        if (record[BAN_UNTIL] > now) {
+            return GuardDecision.builder()
+                    .decision(AuditDecision.BANNED)
+                    .retryAfterSeconds(ceilDiv(record[BAN_UNTIL] - now, 1000))
+                    .build();
+        }
+
+        // 2. Quota windows (read-only check)
+        long quotaRemaining = -1;
+        long quotaReset = 0;
+        for (int i = 0; i < WINDOWS.length; i++) {
+            QuotaWindow window = WINDOWS[i];
+            Long limit = config.quotaLimit(window);
+            if (limit == null) {
+                continue;
+            }
+            LimiterOutcome outcome = SlidingWindowAlgorithm.evaluateWindow(
+                    record, quotaOffset(i), now, limit, window.getMillis(), false);
+
+            if (!outcome.isAllowed()) {
+                // Quota exhaustion is not abuse: no violation, no ban
+                return GuardDecision.builder()
+                        .decision(AuditDecision.RATE_LIMIT)
+                        .resetEpochSeconds(outcome.getResetEpochMs() / 1000)
+                        .retryAfterSeconds(ceilDiv(outcome.getRetryMs(), 1000))
+                        .retryAfterMs(outcome.getRetryMs())
+                        .limitedBy(window)
+                        .limitedScope(LimitScope.IDENTIFIER)
+                        .build();
+            }
+            if (quotaRemaining < 0 || outcome.getRemaining() < quotaRemaining) {
+                quotaRemaining = outcome.getRemaining();
+                quotaReset = outcome.getResetEpochMs();
+            }
+        }
+
+        // 3. Burst algorithm
+        long[] limiter = LIMITER_STATE.get();
+        System.arraycopy(record, LIMITER, limiter, 0, LIMITER_SLOTS);
+        LimiterOutcome outcome = algorithm.evaluate(limiter, nowMicros, config);
+
+        if (outcome.isAllowed()) {
+            System.arraycopy(limiter, 0, record, LIMITER, LIMITER_SLOTS);
+            for (int i = 0; i < WINDOWS.length; i++) {
+                QuotaWindow window = WINDOWS[i];
+                Long limit = config.quotaLimit(window);
+                if (limit != null) {
+                    SlidingWindowAlgorithm.evaluateWindow(
+                            record, quotaOffset(i), now, limit, window.getMillis(), true);
+                }
+            }
+
+            long remaining = outcome.getRemaining();
+            long reset = outcome.getResetEpochMs();
+            if (quotaRemaining >= 0 && quotaRemaining < remaining) {
+                remaining = quotaRemaining;
+                reset = quotaReset;
+            }
+
+            return GuardDecision.builder()
+                    .decision(AuditDecision.ALLOW)
+                    .remaining(remaining)
+                    .resetEpochSeconds(reset / 1000)
+                    .build();
+        }
+
+        if (!config.recordsViolations()) {
+            // Shaped (the caller waits for retryMs) or a subnet aggregate - not abuse
+            return GuardDecision.builder()
+                    .decision(AuditDecision.RATE_LIMIT)
+                    .resetEpochSeconds(outcome.getResetEpochMs() / 1000)
+                    .retryAfterSeconds(ceilDiv(outcome.getRetryMs(), 1000))
+                    .retryAfterMs(outcome.getRetryMs())
+                    .build();
+        }
+
+        // 4. Violation escalation
+        long windowMs = AbuseDetectionService.VIOLATION_WINDOW_SECONDS * 1000L;
+        if (now - record[VIOLATION_WINDOW_START] >= windowMs) {
+            record[VIOLATION_WINDOW_START] = now;
+            record[VIOLATIONS] = 0;
+        }
+        long violations = ++record[VIOLATIONS];
+
+        long banSeconds = banSeconds(violations);
+        long retryAfter = ceilDiv(outcome.getRetryMs(), 1000);
+        if (banSeconds > 0) {
+            record[BAN_UNTIL] = now + banSeconds * 1000;
+            retryAfter = banSeconds;
+        }
+
+        return GuardDecision.builder()
+                .decision(AuditDecision.RATE_LIMIT)
+                .resetEpochSeconds(outcome.getResetEpochMs() / 1000)
+                .retryAfterSeconds(retryAfter)
+                .retryAfterMs(retryAfter * 1000)
+                .violations(violations)
+                .banSeconds(banSeconds)
+                .build();
+    }
+
+    @Override
+    public void reset(String identifier) {
+        OffHeapLimiterTable table = this.table;
+        if (table == null) {
+            return;
+        }
+        for (RateLimitStrategy strategy : RateLimitStrategy.values()) {
+            long index = table.acquireExisting(OffHeapLimiterTable.hash(identifier, strategy.ordinal()));
+            if (index >= 0) {
+                try {
+                    table.removeLocked(index);
+                } finally {
+                    table.release(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ban the identifier for banSeconds from now
+     */
+    @Override
+    public void ban(String identifier, long banSeconds) {
+        banUntil(identifier, System.currentTimeMillis() + banSeconds * 1000);
+    }
+
+    /**
+     * Ban the identifier under every strategy until the given epoch ms (a
+     * later ban already in place is kept). Nothing is written before the
+     * table exists - no LOCAL evaluation could read it.
+     */
+    void banUntil(String identifier, long bannedUntilMs) {
+        OffHeapLimiterTable table = this.table;
+        if (table == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long[] record = RECORD.get();
+        for (RateLimitStrategy strategy : RateLimitStrategy.values()) {
+            long index = table.acquire(OffHeapLimiterTable.hash(identifier, strategy.ordinal()), now);
+            try {
+                table.read(index, record);
+                record[BAN_UNTIL] = Math.max(record[BAN_UNTIL], bannedUntilMs);
+                table.write(index, record);
+            } finally {
+                table.release(index);
+            }
+        }
+    }
+
+    /**
+     * Lift the ban and forget the violation count under every strategy
+     */
+    @Override
+    public void clearBan(String identifier) {
+        OffHeapLimiterTable table = this.table;
+        if (table == null) {
+            return;
+        }
+        long[] record = RECORD.get();
+        for (RateLimitStrategy strategy : RateLimitStrategy.values()) {
+            long index = table.acquireExisting(OffHeapLimiterTable.hash(identifier, strategy.ordinal()));
+            if (index >= 0) {
+                try {
+                    table.read(index, record);
+                    record[BAN_UNTIL] = 0;
+                    record[VIOLATIONS] = 0;
+                    record[VIOLATION_WINDOW_START] = 0;
+                    table.write(index, record);
+                } finally {
+                    table.release(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every ban and violation count (limiter and quota slots are kept)
+     */
+    public long clearAllBans() {
+        OffHeapLimiterTable table = this.table;
+        return table != null ? table.zeroSlots(BAN_UNTIL, VIOLATION_WINDOW_START + 1) : 0;
+    }
+
+    /**
+     * Drop state for identifiers that have been idle for an hour
+     */
+    @Scheduled(fixedRate = 300000) // 5 minutes
+    public void evictIdle() {
+        OffHeapLimiterTable table = this.table;
+        if (table == null) {
+            return;
+        }
+        long evicted = table.evictIdle(System.currentTimeMillis() - IDLE_EVICTION_MS);
+        log.debug("Evicted {} idle local limiter entries", evicted);
+    }
+
+    /**
+     * Allocated at startup when any tier, route or fallback can use the LOCAL
+     * store, so the first Redis failure doesn't allocate it on a request thread
+     */
+    @PostConstruct
+    void allocateIfUsed() {
+        if (rateLimitProperties.usesLocalStore()) {
+            table();
+        }
+    }
+
+    /**
+     * The table, allocated on first use if nothing configured needed it at startup
+     */
+    private OffHeapLimiterTable table() {
+        OffHeapLimiterTable current = table;
+        if (current == null) {
+            synchronized (this) {
+                current = table;
+                if (current == null) {
+                    current = new OffHeapLimiterTable(maxEntries, RECORD_SLOTS);
+                    table = current;
+                    log.info("📦 Local limiter table allocated: {} entries, {} MB off-heap",
+                            current.capacity(), current.memoryBytes() / (1024 * 1024));
+                }
+            }
+        }
+        return current;
+    }
+
+    private static int quotaOffset(int windowIndex) {
+        return QUOTAS + windowIndex * 3;
+    }
+
+    private long banSeconds(long violations) {
+        if (violations >= AbuseDetectionService.VIOLATION_THRESHOLD_SEVERE) {
+            return AbuseDetectionService.BAN_DURATION_SEVERE;
+        }
+        if (violations >= AbuseDetectionService.VIOLATION_THRESHOLD_MODERATE) {
+            return AbuseDetectionService.BAN_DURATION_MODERATE;
+        }
+        if (violations >= AbuseDetectionService.VIOLATION_THRESHOLD_MINOR) {
+            return AbuseDetectionService.BAN_DURATION_MINOR;
+        }
+        return 0;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
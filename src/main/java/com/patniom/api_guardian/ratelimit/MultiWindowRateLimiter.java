@@ -0,0 +1,100 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * Lua fragments enforcing several quota windows (minute/hour/day/month) for
+ * an identifier in ONE atomic Redis call.
+ *
+ * Every window is a sliding window counter kept in the identifier's state
+ * hash (fields q<windowSeconds>w/c/p - the same fields
+ * RateLimiterService.getCurrentRequestCount reads).
+ * All windows are checked first and only charged if every one admits,
+ * so a rejection never consumes quota.
+ *
+ * The Lua fragments are embedded by RedisRateLimitStore in the
+ * per-request guard script.
+ */
+public final class MultiWindowRateLimiter {
+
+    /**
+     * Read-only check of every quota window. Expects: now (ms), quotaCount, qa (first quota arg).
+     * Quota args are (key index, limit, windowMs) triples: the window lives in the state
+     * hash KEYS[key index], so parent levels of the hierarchy are checked in the same pass.
+     * Field names follow RedisKeys.quotaField.
+     */
+    static final String QUOTA_CHECK = """
+            local quotaState = {}
+            local quotaRemaining = -1
+            local quotaReset = 0
+            local quotaRejected = 0
+            local quotaRetryMs = 0
+
+            for i = 1, quotaCount do
+                local key = tonumber(ARGV[qa + (i - 1) * 3])
+                local limit = tonumber(ARGV[qa + (i - 1) * 3 + 1])
+                local window = tonumber(ARGV[qa + (i - 1) * 3 + 2])
+                local field = "q" .. math.floor(window / 1000)
+                local index = math.floor(now / window)
+
+                local state = redis.call("HMGET", KEYS[key], field .. "w", field .. "c", field .. "p")
+                local w = tonumber(state[1])
+                local current = tonumber(state[2]) or 0
+                local previous = tonumber(state[3]) or 0
+
+                if w == nil or w < index - 1 then
+                    previous = 0
+                    current = 0
+                elseif w == index - 1 then
+                    previous = current
+                    current = 0
+                end
+
+                local elapsed = (now - index * window) / window
+                local left = math.floor(limit - (previous * (1 - elapsed) + current) - 1)
+                local windowEnd = (index + 1) * window
+                quotaState[i] = {key, field, index, current, previous, window}
+
+                if left < 0 then
+                    if quotaRejected == 0 then
+                        quotaRejected = i
+                        quotaRemaining = 0
+                        quotaReset = windowEnd
+                        if current + 1 > limit then
+                            -- Wait for the next window, until this one's weight has decayed enough
+                            local needed = math.max(0, 1 - (limit - 1) / current)
+                            quotaRetryMs = windowEnd - now + math.ceil(needed * window)
+                        elseif previous > 0 then
+                            local needed = 1 - (limit - 1 - current) / previous
+                            quotaRetryMs = math.max(1, math.ceil((needed - elapsed) * window))
+                        else
+                            quotaRetryMs = windowEnd - now
+                        end
+                    end
+                elseif quotaRejected == 0 and (quotaRemaining < 0 or left < quotaRemaining) then
+                    quotaRemaining = left
+                    quotaReset = windowEnd
+                end
+            end
+            """;
+
+    /**
+     * Charges every quota window checked by QUOTA_CHECK. Counts matter until
+     * the end of the next window: KEYS[1] raises keep, other levels' hashes
+     * get their TTL raised here.
+     */
+    static final String QUOTA_COMMIT = """
+            for i = 1, quotaCount do
+                local q = quotaState[i]
+                local key = KEYS[q[1]]
+                redis.call("HSET", key, q[2] .. "w", q[3], q[2] .. "c", q[4] + 1, q[2] .. "p", q[5])
+                local hold = (q[3] + 2) * q[6] - now
+                if q[1] == 1 then
+                    keep = math.max(keep, hold)
+                elseif redis.call("PTTL", key) < hold then
+                    redis.call("PEXPIRE", key, hold)
+                end
+            end
+            """;
+
+    private MultiWindowRateLimiter() {
+    }
+}
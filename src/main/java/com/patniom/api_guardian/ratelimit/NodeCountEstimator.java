@@ -0,0 +1,74 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Estimates how many app nodes share the distributed limits, so the LOCAL
+ * fallback can enforce roughly limit / nodes per node while Redis is down.
+ *
+ * Every node writes a heartbeat into a ZSET (score = time) and counts the
+ * members seen in the last few intervals. The last count survives a Redis
+ * outage, which is exactly when it's needed. A fixed
+ * ratelimit.breaker.node-count overrides the estimate.
+ */
+@Slf4j
+@Component
+public class NodeCountEstimator {
+
+    private static final long HEARTBEAT_MS = 10_000;
+    private static final long STALE_AFTER_MS = 3 * HEARTBEAT_MS;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    // > 0 = fixed node count, no heartbeats
+    @Value("${ratelimit.breaker.node-count:0}")
+    private int configuredNodeCount;
+
+    private final String nodeId = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile int estimatedNodes = 1;
+
+    public int nodeCount() {
+        return configuredNodeCount > 0 ? configuredNodeCount : estimatedNodes;
+    }
+
+    @Scheduled(fixedRate = HEARTBEAT_MS)
+    public void heartbeat() {
+        if (configuredNodeCount > 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.opsForZSet().add(RedisKeys.NODES, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(RedisKeys.NODES, 0, now - STALE_AFTER_MS);
+            Long live = redisTemplate.opsForZSet().zCard(RedisKeys.NODES);
+
+            int nodes = live != null ? (int) Math.max(1, live) : 1;
+            if (nodes != estimatedNodes) {
+                log.info("Rate limiter node count: {} -> {}", estimatedNodes, nodes);
+                estimatedNodes = nodes;
+            }
+        } catch (Exception e) {
+            // Keep the last estimate - it's what the fallback needs during an outage
+            log.debug("Node heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
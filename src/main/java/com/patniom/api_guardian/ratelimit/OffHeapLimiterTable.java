@@ -0,0 +1,330 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Off-heap open-addressing hash table of fixed-width long records,
+ * keyed by a 64-bit hash of the identifier.
+ *
+ * Record layout: [key hash, lock word, last access ms, slot 0 .. slot n-1].
+ * Lookups are lock-free; each record is guarded by a CAS spin lock in its
+ * lock word. Inserts of the same hash are serialized through lock stripes,
+ * so an identifier never gets two records. Probing is bounded: when a probe
+ * window is full, the least recently used record in it is recycled.
+ *
+ * Nothing lives on the Java heap except the segment buffers themselves,
+ * so millions of identifiers add no GC pressure.
+ */
+final class OffHeapLimiterTable {
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    static final long EMPTY = 0;
+    static final long TOMBSTONE = 1;
+
+    private static final int KEY = 0;
+    private static final int LOCK = 1;
+    private static final int ACCESS = 2;
+    private static final int HEADER_LONGS = 3;
+
+    private static final int MAX_PROBE = 64;
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    private final int slots;
+    private final int recordBytes;
+    private final long capacity;
+    private final long mask;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final ByteBuffer[] segments;
+    private final Object[] insertStripes = new Object[64];
+
+    OffHeapLimiterTable(long maxEntries, int slots) {
+        this.slots = slots;
+        this.recordBytes = (HEADER_LONGS + slots) * Long.BYTES;
+        this.capacity = Long.highestOneBit(Math.max(MAX_PROBE, maxEntries - 1)) << 1;
+        this.mask = capacity - 1;
+
+        long perSegment = Long.highestOneBit(MAX_SEGMENT_BYTES / recordBytes);
+        perSegment = Math.min(perSegment, capacity);
+        this.segmentShift = Long.numberOfTrailingZeros(perSegment);
+        this.segmentMask = perSegment - 1;
+
+        this.segments = new ByteBuffer[(int) (capacity / perSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect((int) (perSegment * recordBytes))
+                    .order(ByteOrder.nativeOrder());
+        }
+        for (int i = 0; i < insertStripes.length; i++) {
+            insertStripes[i] = new Object();
+        }
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    long memoryBytes() {
+        return capacity * recordBytes;
+    }
+
+    // ========== Record access ==========
+
+    /**
+     * Find or create the record for a hash and lock it.
+     * The caller MUST call release(index) afterwards.
+     */
+    long acquire(long hash, long now) {
+        hash = normalize(hash);
+        for (;;) {
+            long index = find(hash);
+            if (index < 0) {
+                index = insert(hash);
+            }
+            lock(index);
+            if (get(index, KEY) == hash) {
+                put(index, ACCESS, now);
+                return index;
+            }
+            // Evicted or recycled between lookup and lock - retry
+            unlock(index);
+        }
+    }
+
+    /**
+     * Lock an existing record, or return -1 if the hash is unknown
+     */
+    long acquireExisting(long hash) {
+        hash = normalize(hash);
+        for (;;) {
+            long index = find(hash);
+            if (index < 0) {
+                return -1;
+            }
+            lock(index);
+            if (get(index, KEY) == hash) {
+                return index;
+            }
+            unlock(index);
+        }
+    }
+
+    void release(long index) {
+        unlock(index);
+    }
+
+    void read(long index, long[] dst) {
+        for (int i = 0; i < slots; i++) {
+            dst[i] = get(index, HEADER_LONGS + i);
+        }
+    }
+
+    void write(long index, long[] src) {
+        for (int i = 0; i < slots; i++) {
+            put(index, HEADER_LONGS + i, src[i]);
+        }
+    }
+
+    /**
+     * Remove a record the caller holds the lock for
+     */
+    void removeLocked(long index) {
+        clearSlots(index);
+        LONGS.setRelease(buffer(index), offset(index, KEY), TOMBSTONE);
+    }
+
+    /**
+     * Remove records not accessed since the cutoff. Returns the number removed.
+     */
+    long evictIdle(long cutoffMs) {
+        long evicted = 0;
+        for (long index = 0; index < capacity; index++) {
+            long key = getVolatile(index, KEY);
+            if (key == EMPTY || key == TOMBSTONE || get(index, ACCESS) >= cutoffMs) {
+                continue;
+            }
+            if (tryLock(index)) {
+                try {
+                    if (getVolatile(index, KEY) == key && get(index, ACCESS) < cutoffMs) {
+                        removeLocked(index);
+                        evicted++;
+                    }
+                } finally {
+                    unlock(index);
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Zero slots [from, to) of every live record (full scan - admin only).
+     * Returns the number of records touched.
+     */
+    long zeroSlots(int from, int to) {
+        long touched = 0;
+        for (long index = 0; index < capacity; index++) {
+            long key = getVolatile(index, KEY);
+            if (key == EMPTY || key == TOMBSTONE) {
+                continue;
+            }
+            lock(index);
+            try {
+                if (getVolatile(index, KEY) == key) {
+                    for (int i = from; i < to; i++) {
+                        put(index, HEADER_LONGS + i, 0);
+                    }
+                    touched++;
+                }
+            } finally {
+                unlock(index);
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Number of live records (full scan - for metrics/admin only)
+     */
+    long size() {
+        long size = 0;
+        for (long index = 0; index < capacity; index++) {
+            long key = getVolatile(index, KEY);
+            if (key != EMPTY && key != TOMBSTONE) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    // ========== Probing ==========
+
+    private long find(long hash) {
+        long start = hash & mask;
+        for (int probe = 0; probe < MAX_PROBE; probe++) {
+            long index = (start + probe) & mask;
+            long key = getVolatile(index, KEY);
+            if (key == hash) {
+                return index;
+            }
+            if (key == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private long insert(long hash) {
+        synchronized (insertStripes[(int) (hash & (insertStripes.length - 1))]) {
+            for (;;) {
+                long existing = find(hash);
+                if (existing >= 0) {
+                    return existing;
+                }
+
+                long start = hash & mask;
+                long oldest = -1;
+                long oldestAccess = Long.MAX_VALUE;
+
+                for (int probe = 0; probe < MAX_PROBE; probe++) {
+                    long index = (start + probe) & mask;
+                    long key = getVolatile(index, KEY);
+
+                    // Free slots are already zeroed (initially or by removeLocked)
+                    if ((key == EMPTY || key == TOMBSTONE)
+                            && LONGS.compareAndSet(buffer(index), offset(index, KEY), key, hash)) {
+                        return index;
+                    }
+
+                    long access = get(index, ACCESS);
+                    if (key != EMPTY && key != TOMBSTONE && access < oldestAccess) {
+                        oldest = index;
+                        oldestAccess = access;
+                    }
+                }
+
+                // Probe window full: recycle its least recently used record
+                if (oldest >= 0 && tryLock(oldest)) {
+                    try {
+                        clearSlots(oldest);
+                        LONGS.setRelease(buffer(oldest), offset(oldest, KEY), hash);
+                        return oldest;
+                    } finally {
+                        unlock(oldest);
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // ========== Locking ==========
+
+    private void lock(long index) {
+        while (!tryLock(index)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean tryLock(long index) {
+        return LONGS.compareAndSet(buffer(index), offset(index, LOCK), 0L, 1L);
+    }
+
+    private void unlock(long index) {
+        LONGS.setRelease(buffer(index), offset(index, LOCK), 0L);
+    }
+
+    // ========== Raw memory ==========
+
+    private void clearSlots(long index) {
+        put(index, ACCESS, 0);
+        for (int i = 0; i < slots; i++) {
+            put(index, HEADER_LONGS + i, 0);
+        }
+    }
+
+    private long get(long index, int field) {
+        return (long) LONGS.get(buffer(index), offset(index, field));
+    }
+
+    private long getVolatile(long index, int field) {
+        return (long) LONGS.getVolatile(buffer(index), offset(index, field));
+    }
+
+    private void put(long index, int field, long value) {
+        LONGS.set(buffer(index), offset(index, field), value);
+    }
+
+    private ByteBuffer buffer(long index) {
+        return segments[(int) (index >>> segmentShift)];
+    }
+
+    private int offset(long index, int field) {
+        return (int) ((index & segmentMask) * recordBytes) + field * Long.BYTES;
+    }
+
+    private static long normalize(long hash) {
+        return hash == EMPTY || hash == TOMBSTONE ? hash + 2 : hash;
+    }
+
+    /**
+     * 64-bit hash of a string (FNV-1a + murmur3 finalizer), no allocation
+     */
+    static long hash(String value, long seed) {
+        long h = 0xcbf29ce484222325L ^ (seed * 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
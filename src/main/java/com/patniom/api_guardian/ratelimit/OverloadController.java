@@ -0,0 +1,161 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which priority classes to shed while the whole gateway is saturated.
+ *
+ * Every tick the overload signals are turned into one pressure value:
+ * the max of requests in flight / max-in-flight, process CPU / cpu-target,
+ * average latency / latency-target-ms and Redis batch queue depth /
+ * redis-queue-target. Pressure >= 1 raises the shed level by step;
+ * pressure below recover-ratio lowers it by step / 2 (slower recovery
+ * avoids oscillating).
+ *
+ * The shed level is a position on the priority ladder (anonymous IP, FREE,
+ * BASIC, PREMIUM, ENTERPRISE): classes below it are shed entirely, the
+ * class it points into is shed with the fractional part as probability.
+ * So a spike first costs anonymous traffic, and ENTERPRISE is touched only
+ * when shedding every other class still isn't enough. Between ticks, a
+ * full in-flight budget sheds everything but the top class at once.
+ */
+@Slf4j
+@Component
+public class OverloadController {
+
+    public static final int PRIORITY_ANONYMOUS = 0;
+    public static final int PRIORITY_TOP = 4;   // ENTERPRISE
+
+    @Autowired
+    private RedisBatchDispatcher redisBatchDispatcher;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.overload.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.overload.max-in-flight:180}")
+    private int maxInFlight;
+
+    @Value("${ratelimit.overload.cpu-target:0.85}")
+    private double cpuTarget;
+
+    @Value("${ratelimit.overload.latency-target-ms:1000}")
+    private long latencyTargetMs;
+
+    @Value("${ratelimit.overload.redis-queue-target:2000}")
+    private int redisQueueTarget;
+
+    @Value("${ratelimit.overload.step:0.25}")
+    private double step;
+
+    @Value("${ratelimit.overload.recover-ratio:0.8}")
+    private double recoverRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder latencySumNanos = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+    private volatile double shedLevel;
+
+    /**
+     * Admit or shed a request of the given priority; admitted requests must call {@link #onComplete}
+     */
+    public boolean tryAdmit(int priority) {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+
+        double level = shedLevel;
+        if (level > 0) {
+            int boundary = (int) level;
+            if (priority < boundary
+                    || (priority == boundary && ThreadLocalRandom.current().nextDouble() < level - boundary)) {
+                return false;
+            }
+        }
+
+        if (inFlight.incrementAndGet() > maxInFlight && priority < PRIORITY_TOP) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void onComplete(long latencyNanos) {
+        inFlight.decrementAndGet();
+        latencySumNanos.add(latencyNanos);
+        latencyCount.increment();
+    }
+
+    /**
+     * Admitted request left the thread without completing (async): no latency sample
+     */
+    public void onSuspended() {
+        inFlight.decrementAndGet();
+    }
+
+    public double getShedLevel() {
+        return shedLevel;
+    }
+
+    @Scheduled(fixedRateString = "${ratelimit.overload.tick-ms:250}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+
+        long count = latencyCount.sumThenReset();
+        long sum = latencySumNanos.sumThenReset();
+        double latencyMs = count > 0 ? sum / (double) count / 1_000_000 : 0;
+
+        double pressure = Math.max(
+                Math.max(inFlight.get() / (double) maxInFlight, processCpu() / cpuTarget),
+                Math.max(latencyMs / latencyTargetMs, redisBatchDispatcher.queueDepth() / (double) redisQueueTarget));
+
+        double previous = shedLevel;
+        double next = previous;
+        if (pressure >= 1) {
+            next = Math.min(PRIORITY_TOP + 1, previous + step);
+        } else if (pressure < recoverRatio) {
+            next = Math.max(0, previous - step / 2);
+        }
+        if (next == previous) {
+            return;
+        }
+
+        shedLevel = next;
+        metricsService.setOverloadShedLevel(next);
+        if (previous == 0) {
+            log.warn("🔥 Gateway overloaded (pressure {}) - shedding lowest priority traffic",
+                    String.format("%.2f", pressure));
+        } else if (next == 0) {
+            log.info("✅ Gateway load back to normal - shedding stopped");
+        }
+    }
+
+    /**
+     * Process CPU load 0..1 (0 when the JVM doesn't report it)
+     */
+    private double processCpu() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            return Math.max(0, sunOs.getProcessCpuLoad());
+        }
+        return 0;
+    }
+}
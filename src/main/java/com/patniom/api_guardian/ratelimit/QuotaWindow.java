@@ -0,0 +1,22 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * Quota windows enforced by MultiWindowRateLimiter (SECOND is only used
+ * by cluster-wide route caps)
+ */
+public enum QuotaWindow {
+    SECOND(1L),
+    MINUTE(60L),
+    HOUR(3_600L),
+    DAY(86_400L),
+    MONTH(30L * 86_400L); // Rolling 30 days
+
+    private final long seconds;
+
+    QuotaWindow(long seconds) {
+        this.seconds = seconds;
+    }
+
+    public long getSeconds() { return seconds; }
+    public long getMillis() { return seconds * 1000; }
+}
@@ -0,0 +1,53 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.util.List;
+
+/**
+ * SPI for burst-limit algorithms (token bucket, GCRA, sliding window, ...).
+ *
+ * An algorithm describes itself twice: as a Lua body that Redis-backed
+ * stores embed in their guard script, and as a pure function over a small
+ * fixed-size long[] state for in-process stores. Both must agree.
+ */
+public interface RateLimitAlgorithm {
+
+    /**
+     * Strategy this algorithm implements (used for per-tier/route selection)
+     */
+    RateLimitStrategy strategy();
+
+    // ========== Redis (Lua) ==========
+
+    /**
+     * Lua body. Keeps its state in its own fields of the identifier's state
+     * hash (KEYS[1]) and reads its args from ARGV[la], ARGV[la + 1], ...;
+     * may use now (ms) and nowUs (µs).
+     * Must set: allowed, remaining, reset (epoch ms), retryMs.
+     * Must only write state when the request is allowed, and then raise
+     * keep (ms) to how long that state has to survive.
+     */
+    String luaBody();
+
+    /**
+     * Fields of the state hash (RedisKeys.state) holding this algorithm's state
+     */
+    List<String> redisFields();
+
+    /**
+     * Lua arguments for a config (passed starting at ARGV[la])
+     */
+    List<Object> luaArgs(RateLimitConfig config);
+
+    // ========== In-process ==========
+
+    /**
+     * Number of long slots of per-identifier state (zero means "new identifier")
+     */
+    int stateSize();
+
+    /**
+     * Evaluate one request against in-process state. Updates state in place
+     * only when the request is allowed.
+     */
+    LimiterOutcome evaluate(long[] state, long nowMicros, RateLimitConfig config);
+}
@@ -6,6 +6,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -13,11 +17,130 @@ import lombok.NoArgsConstructor;
 public class RateLimitConfig {
 
     private ApiKey.RateLimitTier tier;
+    private String route;           // Matched ratelimit.routes pattern (null = none)
+    private Integer maxConcurrent;  // Cluster-wide in-flight cap on the route (null = none)
     private int capacity;           // Max tokens in bucket
     private long refillIntervalMs;  // Time to refill bucket
 
-    // For sliding window strategy
+    @Builder.Default
+    private RateLimitStrategy strategy = RateLimitStrategy.TOKEN_BUCKET;
+
+    @Builder.Default
+    private RateLimitStoreType store = RateLimitStoreType.REDIS;
+
+    @Builder.Default
+    private RateLimitFallback fallback = RateLimitFallback.LOCAL; // While Redis is unavailable
+
+    // > 0 = park rejected requests up to this long instead of a 429 (RequestShaper);
+    // rejections then record no violation - the client is waiting, not hammering
+    private long shapeMaxWaitMs;
+
+    // false = rejections are only rate limited: no violation, no ban (subnet aggregates)
+    @Builder.Default
+    private boolean escalate = true;
+
+    // Quota windows (enforced together by MultiWindowRateLimiter)
     private Long requestsPerMinute;
     private Long requestsPerHour;
     private Long requestsPerDay;
-}
\ No newline at end of file
+    private Long requestsPerMonth;
+
+    // Parent levels (user, IP, route) charged in the same atomic call; REDIS store only
+    @Builder.Default
+    private List<LimitLevel> levels = List.of();
+
+    /**
+     * Configured quota windows in order (minute -> month), skipping unset ones
+     */
+    public Map<QuotaWindow, Long> quotaLimits() {
+        Map<QuotaWindow, Long> limits = new EnumMap<>(QuotaWindow.class);
+        if (requestsPerMinute != null) limits.put(QuotaWindow.MINUTE, requestsPerMinute);
+        if (requestsPerHour != null) limits.put(QuotaWindow.HOUR, requestsPerHour);
+        if (requestsPerDay != null) limits.put(QuotaWindow.DAY, requestsPerDay);
+        if (requestsPerMonth != null) limits.put(QuotaWindow.MONTH, requestsPerMonth);
+        return limits;
+    }
+
+    public boolean isShaped() {
+        return shapeMaxWaitMs > 0;
+    }
+
+    /**
+     * Whether a rejection counts as a violation (and may escalate to a ban)
+     */
+    public boolean recordsViolations() {
+        return escalate && !isShaped();
+    }
+
+    /**
+     * Limit for one quota window (null = not enforced)
+     */
+    public Long quotaLimit(QuotaWindow window) {
+        return switch (window) {
+            case SECOND -> null;
+            case MINUTE -> requestsPerMinute;
+            case HOUR -> requestsPerHour;
+            case DAY -> requestsPerDay;
+            case MONTH -> requestsPerMonth;
+        };
+    }
+
+    /**
+     * One node's share of this config (capacity and quotas divided by node count, min 1)
+     */
+    public RateLimitConfig perNodeShare(int nodes) {
+        return scaled(1, Math.max(1, nodes), RateLimitStoreType.LOCAL);
+    }
+
+    /**
+     * Limit shared by a group of identifiers (capacity and quotas multiplied)
+     */
+    public RateLimitConfig aggregate(int members) {
+        // Many unrelated clients share the group - banning it would ban them all
+        RateLimitConfig group = scaled(Math.max(1, members), 1, store);
+        group.setEscalate(false);
+        return group;
+    }
+
+    /**
+     * Same limits, but rejections are never counted as violations
+     */
+    public RateLimitConfig withoutEscalation() {
+        RateLimitConfig quiet = scaled(1, 1, store);
+        quiet.setEscalate(false);
+        return quiet;
+    }
+
+    /**
+     * This config without parent levels (for stores that can't reach their state)
+     */
+    public RateLimitConfig withoutLevels() {
+        RateLimitConfig own = scaled(1, 1, store);
+        own.setLevels(List.of());
+        return own;
+    }
+
+    private RateLimitConfig scaled(long multiplier, long divisor, RateLimitStoreType targetStore) {
+        return RateLimitConfig.builder()
+                .tier(tier)
+                .route(route)
+                .maxConcurrent(maxConcurrent)
+                .capacity((int) Math.min(Integer.MAX_VALUE, Math.max(1, capacity * multiplier / divisor)))
+                .refillIntervalMs(refillIntervalMs)
+                .strategy(strategy)
+                .store(targetStore)
+                .fallback(fallback)
+                .shapeMaxWaitMs(shapeMaxWaitMs)
+                .escalate(escalate)
+                .requestsPerMinute(scale(requestsPerMinute, multiplier, divisor))
+                .requestsPerHour(scale(requestsPerHour, multiplier, divisor))
+                .requestsPerDay(scale(requestsPerDay, multiplier, divisor))
+                .requestsPerMonth(scale(requestsPerMonth, multiplier, divisor))
+                .levels(levels)
+                .build();
+    }
+
+    private static Long scale(Long limit, long multiplier, long divisor) {
+        return limit == null ? null : Math.max(1, limit * multiplier / divisor);
+    }
+}
@@ -0,0 +1,22 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * What the guard does while the central store is unavailable (circuit open)
+ */
+public enum RateLimitFallback {
+
+    /**
+     * Enforce a per-node share of the limit (limit / estimated node count) in memory
+     */
+    LOCAL,
+
+    /**
+     * Admit every request - availability over protection
+     */
+    FAIL_OPEN,
+
+    /**
+     * Reject every request with 429 until the store recovers
+     */
+    FAIL_CLOSED
+}
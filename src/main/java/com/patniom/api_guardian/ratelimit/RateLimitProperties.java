@@ -0,0 +1,115 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.security.apikey.ApiKey;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Binds the ratelimit.* properties from application.properties
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ratelimit")
+public class RateLimitProperties {
+
+    // ratelimit.tier.<free|basic|premium|enterprise>.*
+    private Map<String, TierSettings> tier = new HashMap<>();
+
+    // Strategy/store for requests without an API key (USER:/IP: identifiers)
+    private RateLimitStrategy anonymousStrategy = RateLimitStrategy.TOKEN_BUCKET;
+    private RateLimitStoreType anonymousStore = RateLimitStoreType.REDIS;
+
+    // Behaviour while the Redis circuit breaker is open (route overrides win)
+    private RateLimitFallback fallback = RateLimitFallback.LOCAL;
+
+    // Charge API key requests to the owning user too (limits: tier.<name>.user-requests-per-*)
+    private boolean userLevel = false;
+
+    // ratelimit.routes[n].* - first matching pattern wins
+    private List<RouteSettings> routes = new ArrayList<>();
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    public TierSettings forTier(ApiKey.RateLimitTier rateLimitTier) {
+        return tier.getOrDefault(rateLimitTier.name().toLowerCase(), new TierSettings());
+    }
+
+    /**
+     * Whether any parent level (user, IP, route-wide) is configured
+     */
+    public boolean hasLevels() {
+        return userLevel
+                || tier.values().stream().anyMatch(settings -> settings.getIpRequestsPerMinute() != null)
+                || routes.stream().anyMatch(route -> route.getGlobalRequestsPerSecond() != null
+                        || route.getGlobalRequestsPerMinute() != null);
+    }
+
+    /**
+     * Whether any request can end up on the LOCAL store (as its store or as the Redis fallback)
+     */
+    public boolean usesLocalStore() {
+        return fallback == RateLimitFallback.LOCAL
+                || anonymousStore == RateLimitStoreType.LOCAL
+                || tier.values().stream().anyMatch(settings -> settings.getStore() == RateLimitStoreType.LOCAL)
+                || routes.stream().anyMatch(route -> route.getStore() == RateLimitStoreType.LOCAL
+                        || route.getFallback() == RateLimitFallback.LOCAL);
+    }
+
+    public Optional<RouteSettings> forRoute(String uri) {
+        return routes.stream()
+                .filter(route -> route.getPattern() != null && PATH_MATCHER.match(route.getPattern(), uri))
+                .findFirst();
+    }
+
+    @Data
+    public static class TierSettings {
+        private Long requestsPerMinute;
+        private Long requestsPerHour;
+        private Long requestsPerDay;
+        private Long requestsPerMonth;
+        private RateLimitStrategy strategy = RateLimitStrategy.TOKEN_BUCKET;
+        private RateLimitStoreType store = RateLimitStoreType.REDIS;
+
+        // User level, shared by all keys of one user (unset = the tier's own limit)
+        private Long userRequestsPerMinute;
+        private Long userRequestsPerHour;
+        private Long userRequestsPerDay;
+        private Long userRequestsPerMonth;
+
+        // IP level: API key requests from one client IP, across keys (unset = no IP level)
+        private Long ipRequestsPerMinute;
+
+        // Queue-and-smooth: park rate limited requests up to this long instead of a 429 (unset = off)
+        private Long shapeMaxWaitMs;
+    }
+
+    /**
+     * Per-route overrides; unset fields keep the tier's values
+     */
+    @Data
+    public static class RouteSettings {
+        private String pattern;             // Ant pattern, e.g. /api/reports/**
+        private RateLimitStrategy strategy;
+        private RateLimitStoreType store;
+        private RateLimitFallback fallback;
+
+        // Cluster-wide cap on requests in flight on the route (DistributedSemaphore; unset = none)
+        private Integer maxConcurrent;
+
+        // Queue-and-smooth on the route, wins over the tier's (0 = off)
+        private Long shapeMaxWaitMs;
+
+        // Cluster-wide cap on the route across all clients (unset = none)
+        private Long globalRequestsPerSecond;
+        private Long globalRequestsPerMinute;
+    }
+}
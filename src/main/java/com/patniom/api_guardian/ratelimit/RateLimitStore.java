@@ -0,0 +1,36 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * SPI for limiter state storage.
+ *
+ * A store makes the complete guard decision for one request: ban check,
+ * quota windows, the burst algorithm and violation escalation. Side
+ * effects outside the store (metrics, Kafka events) are handled by
+ * GuardDecisionService.
+ */
+public interface RateLimitStore {
+
+    RateLimitStoreType type();
+
+    /**
+     * Evaluate and, if allowed, charge one request
+     */
+    GuardDecision evaluate(String identifier,
+                           RateLimitConfig config,
+                           RateLimitAlgorithm algorithm);
+
+    /**
+     * Drop all limiter state for an identifier (admin reset)
+     */
+    void reset(String identifier);
+
+    /**
+     * Write a manual ban where this store's ban check reads it
+     */
+    void ban(String identifier, long banSeconds);
+
+    /**
+     * Drop the identifier's ban and violation count
+     */
+    void clearBan(String identifier);
+}
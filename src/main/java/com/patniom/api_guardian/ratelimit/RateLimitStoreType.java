@@ -0,0 +1,23 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * Where limiter, ban and violation state lives
+ */
+public enum RateLimitStoreType {
+
+    /**
+     * Central Redis - global limits across all nodes
+     */
+    REDIS,
+
+    /**
+     * In-process memory - per-node limits, no network hop
+     */
+    LOCAL,
+
+    /**
+     * Client-side consistent-hash ring over several Redis nodes - global limits,
+     * capacity grows with the number of nodes
+     */
+    SHARDED
+}
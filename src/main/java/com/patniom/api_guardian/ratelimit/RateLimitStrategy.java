@@ -0,0 +1,25 @@
+package com.patniom.api_guardian.ratelimit;
+
+/**
+ * Rate limiting algorithm used for an identifier's burst limit
+ */
+public enum RateLimitStrategy {
+
+    /**
+     * Classic bucket: refills to capacity once per interval.
+     * Two keys per identifier, allows a burst at every interval edge.
+     */
+    TOKEN_BUCKET,
+
+    /**
+     * Generic Cell Rate Algorithm: one theoretical-arrival-time key per
+     * identifier, smooth admission, server-side clock (Redis TIME).
+     */
+    GCRA,
+
+    /**
+     * Sliding window counter: weighted current + previous window,
+     * O(1) memory, no refill-edge bursts.
+     */
+    SLIDING_WINDOW
+}
@@ -1,35 +1,46 @@
 package com.patniom.api_guardian.ratelimit;
 
 import com.patniom.api_guardian.audit.AsyncAuditLogService;
+import com.patniom.api_guardian.audit.AuditDecision;
 import com.patniom.api_guardian.kafka.KafkaProducerService;
 import com.patniom.api_guardian.kafka.events.ApiKeyUsageEvent;
 import com.patniom.api_guardian.kafka.events.ApiRequestEvent;
 import com.patniom.api_guardian.metrics.MetricsService;
 import com.patniom.api_guardian.security.apikey.ApiKey;
+import com.patniom.api_guardian.security.apikey.ApiKeyAuth;
 import com.patniom.api_guardian.util.ClientIpUtil;
 import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @Slf4j
 @Component
 public class RateLimitingFilter extends OncePerRequestFilter {
 
     @Autowired
-    private RateLimiterService rateLimiterService;
-
-    @Autowired
-    private AbuseDetectionService abuseDetectionService;
+    private GuardDecisionService guardDecisionService;
 
     @Autowired
     private AsyncAuditLogService auditLogService; // ✅ CHANGED to async
@@ -40,6 +51,20 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     @Autowired
     private MetricsService metricsService; // ✅ NEW
 
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private DistributedSemaphore distributedSemaphore;
+
+    @Autowired
+    private RequestShaper requestShaper;
+
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -53,64 +78,143 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         String identifier = resolveIdentifier(request);
         RateLimitConfig config = resolveRateLimitConfig(request);
 
-        String decision;
-        int statusCode;
-
-        // 🚫 STEP 1: Check if banned
-        if (abuseDetectionService.isBanned(identifier)) {
-            decision = "BANNED";
-            statusCode = 403;
+        // 🛡️ STEP 1: Ban check + rate limit + violation escalation (one Redis round trip)
+        GuardDecision guard = guardDecisionService.evaluate(identifier, config);
 
-            auditLogService.log(decision, request, identifier);
-            sendRateLimitResponse(response, statusCode,
-                    "You are temporarily banned due to abuse", null);
+        // 🚫 STEP 2: Banned
+        if (guard.getDecision() == AuditDecision.BANNED) {
+            banned(request, response, identifier, config, timerSample, startTime, requestId);
+            return;
+        }
 
-            // ✅ Record metrics
-            metricsService.recordRequest(decision, config.getTier().name(),
-                    request.getRequestURI());
-            metricsService.stopTimer(timerSample);
+        // ⏱ STEP 3: Rate limited - parked until its slot when the tier/route shapes traffic
+        if (!guard.isAllowed()) {
+            if (!park(request, response, identifier, config, guard, timerSample, startTime, requestId)) {
+                rateLimited(request, response, identifier, config, guard, timerSample, startTime, requestId);
+            }
+            return;
+        }
 
-            sendApiRequestEventToKafka(request, identifier, decision, statusCode,
-                    config, startTime, requestId);
+        // 🚦 STEP 4 + 🎫 STEP 5: Adaptive concurrency limit and cluster-wide route cap
+        Admission admission = admit(request, response, identifier, config, timerSample, startTime, requestId);
+        if (admission == null) {
             return;
         }
 
-        // ⏱ STEP 2: Check rate limit
-        boolean allowed = rateLimiterService.allowRequest(identifier, config);
+        // ✅ STEP 6: Request allowed
+        String decision = "ALLOW";
+        int statusCode = 200;
 
-        if (!allowed) {
-            decision = "RATE_LIMIT";
-            statusCode = 429;
+        boolean completed = false;
+        try {
+            auditLogService.log(decision, request, identifier);
+            setRateLimitHeaders(response, config, guard);
 
-            abuseDetectionService.recordViolation(identifier);
-            long retryAfter = rateLimiterService.getRetryAfterSeconds(identifier, config);
+            trackApiKeyUsageViaKafka(request);
 
-            auditLogService.log(decision, request, identifier);
-            sendRateLimitResponse(response, statusCode,
-                    "Rate limit exceeded. Please try again later.", retryAfter);
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (admission.lease() != null) {
+                admission.lease().release();
+            }
+            if (!completed) {
+                admission.permit().drop();
+            }
+        }
 
-            // ✅ Record metrics
-            metricsService.recordRequest(decision, config.getTier().name(),
-                    request.getRequestURI());
-            metricsService.stopTimer(timerSample);
+        // ✅ Record metrics AFTER response; the same sample tunes the concurrency limit
+        metricsService.recordRequest(decision, config.getTier().name(),
+                request.getRequestURI());
+        admission.permit().release(metricsService.stopTimer(timerSample));
 
-            sendApiRequestEventToKafka(request, identifier, decision, statusCode,
-                    config, startTime, requestId);
-            return;
+        sendApiRequestEventToKafka(request, identifier, decision, statusCode,
+                config, startTime, requestId);
+    }
+
+    /**
+     * Permit + lease held by an admitted request, or null after answering 503
+     */
+    private Admission admit(HttpServletRequest request, HttpServletResponse response, String identifier,
+                            RateLimitConfig config, Timer.Sample timerSample, long startTime,
+                            String requestId) throws IOException {
+        // 🚦 Backend at its adaptive concurrency limit - shed
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(config.getRoute());
+        if (permit == null) {
+            shed(request, response, identifier, config, "Service is overloaded. Please try again later.",
+                    concurrencyLimiter.retryAfterSeconds(config.getRoute()), timerSample, startTime, requestId);
+            return null;
+        }
+
+        // 🎫 Cluster-wide in-flight cap on the route (one Redis call each way)
+        DistributedSemaphore.Lease lease = null;
+        if (config.getMaxConcurrent() != null) {
+            lease = distributedSemaphore.tryAcquire(
+                    config.getRoute(), config.getMaxConcurrent(), config.getFallback());
+            if (lease == null) {
+                permit.cancel();
+                shed(request, response, identifier, config,
+                        "Too many concurrent requests for this endpoint. Please try again later.",
+                        1L, timerSample, startTime, requestId);
+                return null;
+            }
         }
+        return new Admission(permit, lease);
+    }
+
+    private record Admission(AdaptiveConcurrencyLimiter.Permit permit, DistributedSemaphore.Lease lease) {
+    }
+
+    private void banned(HttpServletRequest request, HttpServletResponse response, String identifier,
+                        RateLimitConfig config, Timer.Sample timerSample, long startTime,
+                        String requestId) throws IOException {
+        String decision = "BANNED";
+        int statusCode = 403;
+
+        auditLogService.log(decision, request, identifier);
+        sendRateLimitResponse(response, statusCode,
+                "You are temporarily banned due to abuse", null);
+
+        // ✅ Record metrics
+        metricsService.recordRequest(decision, config.getTier().name(),
+                request.getRequestURI());
+        metricsService.stopTimer(timerSample);
 
-        // ✅ STEP 3: Request allowed
-        decision = "ALLOW";
-        statusCode = 200;
+        sendApiRequestEventToKafka(request, identifier, decision, statusCode,
+                config, startTime, requestId);
+    }
+
+    private void rateLimited(HttpServletRequest request, HttpServletResponse response, String identifier,
+                             RateLimitConfig config, GuardDecision guard, Timer.Sample timerSample,
+                             long startTime, String requestId) throws IOException {
+        String decision = "RATE_LIMIT";
+        int statusCode = 429;
 
         auditLogService.log(decision, request, identifier);
-        setRateLimitHeaders(response, identifier, config);
+        sendRateLimitResponse(response, statusCode, rateLimitMessage(guard),
+                guard.getRetryAfterSeconds());
+
+        // ✅ Record metrics
+        metricsService.recordRequest(decision, config.getTier().name(),
+                request.getRequestURI());
+        metricsService.stopTimer(timerSample);
 
-        trackApiKeyUsageViaKafka(request);
+        sendApiRequestEventToKafka(request, identifier, decision, statusCode,
+                config, startTime, requestId);
+    }
+
+    /**
+     * 503 for a request rejected by a concurrency limit (not the client's fault: no violation)
+     */
+    private void shed(HttpServletRequest request, HttpServletResponse response, String identifier,
+                      RateLimitConfig config, String message, long retryAfter,
+                      Timer.Sample timerSample, long startTime, String requestId) throws IOException {
+        String decision = "SHED";
+        int statusCode = 503;
 
-        filterChain.doFilter(request, response);
+        auditLogService.log(decision, request, identifier);
+        sendRateLimitResponse(response, statusCode, message, retryAfter);
 
-        // ✅ Record metrics AFTER response
         metricsService.recordRequest(decision, config.getTier().name(),
                 request.getRequestURI());
         metricsService.stopTimer(timerSample);
@@ -119,6 +223,181 @@ public class RateLimitingFilter extends OncePerRequestFilter {
                 config, startTime, requestId);
     }
 
+    // ================= QUEUE-AND-SMOOTH (see RequestShaper) =================
+
+    /**
+     * Park a rate limited request with servlet async support until the
+     * limiter's next slot, if the config shapes traffic and the slot is
+     * within shapeMaxWaitMs. False = answer 429 now.
+     */
+    private boolean park(HttpServletRequest request, HttpServletResponse response, String identifier,
+                         RateLimitConfig config, GuardDecision guard, Timer.Sample timerSample,
+                         long startTime, String requestId) {
+        if (!config.isShaped() || !request.isAsyncSupported()) {
+            return false;
+        }
+        long delay = requestShaper.delayMs(guard);
+        if (delay > config.getShapeMaxWaitMs() || !requestShaper.tryPark()) {
+            return false;
+        }
+
+        // The backend runs on an ASYNC dispatch, which skips the auth filters: keep their result
+        securityContextRepository.saveContext(SecurityContextHolder.getContext(), request, response);
+
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(0); // No container timeout - every parked request is answered by its deadline
+        ShapedRequest shaped = new ShapedRequest(async, identifier, config, timerSample,
+                startTime, requestId, startTime + config.getShapeMaxWaitMs());
+        async.addListener(shaped, request, response);
+
+        metricsService.recordShapingOutcome("parked");
+        wakeUp(shaped, delay);
+        return true;
+    }
+
+    private void wakeUp(ShapedRequest shaped, long delayMs) {
+        // Timer thread -> container executor; the guard call and any I/O happen there
+        requestShaper.schedule(delayMs, () -> shaped.async.start(() -> resume(shaped)));
+    }
+
+    /**
+     * Re-run the guard for a parked request: dispatch it, park it again, or answer it
+     */
+    private void resume(ShapedRequest shaped) {
+        HttpServletRequest request = (HttpServletRequest) shaped.async.getRequest();
+        HttpServletResponse response = (HttpServletResponse) shaped.async.getResponse();
+
+        try {
+            GuardDecision guard = guardDecisionService.evaluate(shaped.identifier, shaped.config);
+
+            if (guard.getDecision() == AuditDecision.BANNED) {
+                shaped.unpark();
+                banned(request, response, shaped.identifier, shaped.config,
+                        shaped.timerSample, shaped.startTime, shaped.requestId);
+                shaped.async.complete();
+                return;
+            }
+
+            if (!guard.isAllowed()) {
+                long delay = requestShaper.delayMs(guard);
+                if (System.currentTimeMillis() + delay <= shaped.deadline) {
+                    wakeUp(shaped, delay); // Another request took the slot first
+                    return;
+                }
+                shaped.unpark();
+                metricsService.recordShapingOutcome("expired");
+                rateLimited(request, response, shaped.identifier, shaped.config, guard,
+                        shaped.timerSample, shaped.startTime, shaped.requestId);
+                shaped.async.complete();
+                return;
+            }
+
+            shaped.unpark();
+            shaped.admittedNanos = System.nanoTime(); // Latency samples must not include the wait
+            Admission admission = admit(request, response, shaped.identifier, shaped.config,
+                    shaped.timerSample, shaped.startTime, shaped.requestId);
+            if (admission == null) {
+                shaped.async.complete();
+                return;
+            }
+
+            shaped.admission = admission;
+            metricsService.recordShapingOutcome("admitted");
+            auditLogService.log("ALLOW", request, shaped.identifier);
+            setRateLimitHeaders(response, shaped.config, guard);
+            trackApiKeyUsageViaKafka(request);
+
+            shaped.async.dispatch(); // Back through the chain to the controller
+        } catch (Exception e) {
+            log.error("Failed to resume shaped request {}: {}", shaped.requestId, e.getMessage());
+            shaped.unpark();
+            if (!response.isCommitted()) {
+                response.setStatus(503);
+            }
+            shaped.async.complete();
+        }
+    }
+
+    /**
+     * A parked request; once admitted, its permit and lease are given back
+     * when the async dispatch completes
+     */
+    private final class ShapedRequest implements AsyncListener {
+
+        private final AsyncContext async;
+        private final String identifier;
+        private final RateLimitConfig config;
+        private final Timer.Sample timerSample;
+        private final long startTime;
+        private final String requestId;
+        private final long deadline;
+
+        private final AtomicBoolean parked = new AtomicBoolean(true);
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile Admission admission;
+        private volatile long admittedNanos;
+
+        private ShapedRequest(AsyncContext async, String identifier, RateLimitConfig config,
+                              Timer.Sample timerSample, long startTime, String requestId, long deadline) {
+            this.async = async;
+            this.identifier = identifier;
+            this.config = config;
+            this.timerSample = timerSample;
+            this.startTime = startTime;
+            this.requestId = requestId;
+            this.deadline = deadline;
+        }
+
+        void unpark() {
+            if (parked.compareAndSet(true, false)) {
+                requestShaper.unpark();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            unpark();
+            Admission admitted = admission;
+            if (admitted == null || !finished.compareAndSet(false, true)) {
+                return; // Answered by the filter itself, metrics already recorded
+            }
+            if (admitted.lease() != null) {
+                admitted.lease().release();
+            }
+
+            HttpServletRequest request = (HttpServletRequest) event.getSuppliedRequest();
+            metricsService.recordRequest("ALLOW", config.getTier().name(), request.getRequestURI());
+            metricsService.stopTimer(timerSample);
+            admitted.permit().release(System.nanoTime() - admittedNanos);
+
+            sendApiRequestEventToKafka(request, identifier, "ALLOW", 200,
+                    config, startTime, requestId);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            unpark();
+            Admission admitted = admission;
+            if (admitted != null && finished.compareAndSet(false, true)) {
+                if (admitted.lease() != null) {
+                    admitted.lease().release();
+                }
+                admitted.permit().drop();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Timeout is disabled (0): RequestShaper resumes every parked request
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // The controller went async itself: stay registered for the final completion
+            event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
+        }
+    }
+
     private void sendApiRequestEventToKafka(HttpServletRequest request,
                                             String identifier,
                                             String decision,
@@ -149,14 +428,14 @@ public class RateLimitingFilter extends OncePerRequestFilter {
 
     private void trackApiKeyUsageViaKafka(HttpServletRequest request) {
         try {
-            ApiKey apiKey = (ApiKey) request.getAttribute("API_KEY_OBJ");
+            ApiKeyAuth apiKey = (ApiKeyAuth) request.getAttribute("API_KEY_OBJ");
             if (apiKey != null) {
                 ApiKeyUsageEvent event = ApiKeyUsageEvent.builder()
-                        .apiKeyId(apiKey.getId())
-                        .userId(apiKey.getUserId())
+                        .apiKeyId(apiKey.id())
+                        .userId(apiKey.userId())
                         .endpoint(request.getRequestURI())
                         .success(true)
-                        .tier(apiKey.getTier().name())
+                        .tier(apiKey.tier().name())
                         .timestamp(LocalDateTime.now())
                         .build();
 
@@ -178,14 +457,55 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     }
 
     private RateLimitConfig resolveRateLimitConfig(HttpServletRequest request) {
+        RateLimitConfig config = resolveTierConfig(request);
+        List<LimitLevel> levels = new ArrayList<>(resolveKeyLevels(request, config));
+
+        // Route overrides (ratelimit.routes[n].*) win over tier settings
+        rateLimitProperties.forRoute(request.getRequestURI()).ifPresent(route -> {
+            config.setRoute(route.getPattern());
+            config.setMaxConcurrent(route.getMaxConcurrent());
+            if (route.getStrategy() != null) config.setStrategy(route.getStrategy());
+            if (route.getStore() != null) config.setStore(route.getStore());
+            if (route.getFallback() != null) config.setFallback(route.getFallback());
+            if (route.getShapeMaxWaitMs() != null) config.setShapeMaxWaitMs(route.getShapeMaxWaitMs());
+
+            Map<QuotaWindow, Long> global = new EnumMap<>(QuotaWindow.class);
+            putIfSet(global, QuotaWindow.SECOND, route.getGlobalRequestsPerSecond());
+            putIfSet(global, QuotaWindow.MINUTE, route.getGlobalRequestsPerMinute());
+            if (!global.isEmpty()) {
+                levels.add(new LimitLevel(LimitScope.ROUTE, "ROUTE:" + route.getPattern(), global));
+            }
+        });
+
+        config.setLevels(levels);
+        return config;
+    }
+
+    private RateLimitConfig resolveTierConfig(HttpServletRequest request) {
         ApiKey.RateLimitTier tier = (ApiKey.RateLimitTier)
                 request.getAttribute("API_KEY_TIER");
 
         if (tier != null) {
+            RateLimitProperties.TierSettings settings = rateLimitProperties.forTier(tier);
+            ApiKeyAuth apiKey = (ApiKeyAuth) request.getAttribute("API_KEY_OBJ");
+
+            // Per-minute limit is the burst limiter; longer windows are quotas.
+            // Per-key overrides on the ApiKey win over tier settings.
             return RateLimitConfig.builder()
                     .tier(tier)
-                    .capacity(tier.getRequestsPerMinute().intValue())
+                    .capacity(orDefault(keyLimit(apiKey, ApiKeyAuth::requestsPerMinute),
+                            orDefault(settings.getRequestsPerMinute(), tier.getRequestsPerMinute())).intValue())
                     .refillIntervalMs(60_000L)
+                    .strategy(settings.getStrategy())
+                    .store(settings.getStore())
+                    .fallback(rateLimitProperties.getFallback())
+                    .requestsPerHour(orDefault(keyLimit(apiKey, ApiKeyAuth::requestsPerHour),
+                            orDefault(settings.getRequestsPerHour(), tier.getRequestsPerHour())))
+                    .requestsPerDay(orDefault(keyLimit(apiKey, ApiKeyAuth::requestsPerDay),
+                            orDefault(settings.getRequestsPerDay(), tier.getRequestsPerDay())))
+                    .requestsPerMonth(orDefault(keyLimit(apiKey, ApiKeyAuth::requestsPerMonth),
+                            orDefault(settings.getRequestsPerMonth(), tier.getRequestsPerMonth())))
+                    .shapeMaxWaitMs(orDefault(settings.getShapeMaxWaitMs(), 0L))
                     .build();
         }
 
@@ -193,18 +513,81 @@ public class RateLimitingFilter extends OncePerRequestFilter {
                 .tier(ApiKey.RateLimitTier.FREE)
                 .capacity(100)
                 .refillIntervalMs(60_000L)
+                .strategy(rateLimitProperties.getAnonymousStrategy())
+                .store(rateLimitProperties.getAnonymousStore())
+                .fallback(rateLimitProperties.getFallback())
                 .build();
     }
 
-    private void setRateLimitHeaders(HttpServletResponse response,
-                                     String identifier,
-                                     RateLimitConfig config) {
-        long remaining = rateLimiterService.getRemainingTokens(identifier, config);
-        long resetTime = rateLimiterService.getResetTime(identifier, config);
+    /**
+     * Parent levels of an API key request: the owning user (shared by all of
+     * their keys, one key's limits unless configured) and the client IP
+     * (bounds a leaked key used from many IPs)
+     */
+    private List<LimitLevel> resolveKeyLevels(HttpServletRequest request, RateLimitConfig config) {
+        ApiKey.RateLimitTier tier = (ApiKey.RateLimitTier) request.getAttribute("API_KEY_TIER");
+        if (tier == null) {
+            return List.of();
+        }
 
+        RateLimitProperties.TierSettings settings = rateLimitProperties.forTier(tier);
+        List<LimitLevel> levels = new ArrayList<>();
+
+        Object userId = request.getAttribute("API_KEY_USER_ID");
+        if (rateLimitProperties.isUserLevel() && userId != null) {
+            Map<QuotaWindow, Long> user = new EnumMap<>(QuotaWindow.class);
+            putIfSet(user, QuotaWindow.MINUTE,
+                    orDefault(settings.getUserRequestsPerMinute(), (long) config.getCapacity()));
+            putIfSet(user, QuotaWindow.HOUR,
+                    orDefault(settings.getUserRequestsPerHour(), config.getRequestsPerHour()));
+            putIfSet(user, QuotaWindow.DAY,
+                    orDefault(settings.getUserRequestsPerDay(), config.getRequestsPerDay()));
+            putIfSet(user, QuotaWindow.MONTH,
+                    orDefault(settings.getUserRequestsPerMonth(), config.getRequestsPerMonth()));
+            levels.add(new LimitLevel(LimitScope.USER, "USER:" + userId, user));
+        }
+
+        if (settings.getIpRequestsPerMinute() != null) {
+            levels.add(new LimitLevel(LimitScope.IP, "IP:" + ClientIpUtil.getClientIp(request),
+                    Map.of(QuotaWindow.MINUTE, settings.getIpRequestsPerMinute())));
+        }
+        return levels;
+    }
+
+    private String rateLimitMessage(GuardDecision guard) {
+        if (guard.getLimitedBy() == null) {
+            return "Rate limit exceeded. Please try again later.";
+        }
+        LimitScope scope = guard.getLimitedScope() != null ? guard.getLimitedScope() : LimitScope.IDENTIFIER;
+        return switch (scope) {
+            case IDENTIFIER -> guard.getLimitedBy() + " quota exceeded. Please try again later.";
+            case USER -> guard.getLimitedBy() + " quota for this account exceeded. Please try again later.";
+            case IP -> guard.getLimitedBy() + " limit for this client IP exceeded. Please try again later.";
+            case ROUTE -> "This endpoint is receiving too many requests. Please try again later.";
+        };
+    }
+
+    private Long keyLimit(ApiKeyAuth apiKey, Function<ApiKeyAuth, Long> limit) {
+        return apiKey != null ? limit.apply(apiKey) : null;
+    }
+
+    private static void putIfSet(Map<QuotaWindow, Long> limits, QuotaWindow window, Long limit) {
+        if (limit != null) {
+            limits.put(window, limit);
+        }
+    }
+
+    private Long orDefault(Long value, Long fallback) {
+        return value != null ? value : fallback;
+    }
+
+    private void setRateLimitHeaders(HttpServletResponse response,
+                                     RateLimitConfig config,
+                                     GuardDecision guard) {
+        // Values come straight from the guard script - no extra Redis reads
         response.setHeader("X-RateLimit-Limit", String.valueOf(config.getCapacity()));
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
-        response.setHeader("X-RateLimit-Reset", String.valueOf(resetTime));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(guard.getRemaining()));
+        response.setHeader("X-RateLimit-Reset", String.valueOf(guard.getResetEpochSeconds()));
         response.setHeader("X-RateLimit-Tier", config.getTier().name());
     }
 
@@ -226,7 +609,8 @@ public class RateLimitingFilter extends OncePerRequestFilter {
                 "retryAfter": %s
             }
             """,
-                status == 429 ? "Too Many Requests" : "Forbidden",
+                status == 429 ? "Too Many Requests"
+                        : status == 503 ? "Service Unavailable" : "Forbidden",
                 message,
                 retryAfter != null ? retryAfter : "null"
         );
@@ -0,0 +1,374 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces limiter scripts and ban lookups from concurrent requests into
+ * pipelined Redis flushes.
+ *
+ * Request threads enqueue a call and wait on its future. One flusher thread
+ * collects calls for up to ratelimit.batch.max-delay-us (or max-size
+ * entries), writes them to a dedicated Lettuce connection with auto-flush
+ * off and flushes once. Replies complete each caller's future as they
+ * arrive. Under load this replaces hundreds of threads fighting over the
+ * connection pool with a few large writes on one connection.
+ *
+ * Results are deserialized the same way RedisTemplate.execute does, so
+ * callers can switch between the two freely. When batching is disabled,
+ * the connection factory isn't a standalone Lettuce one, or the queue is
+ * full, calls go straight through RedisTemplate.
+ */
+@Slf4j
+@Component
+public class RedisBatchDispatcher {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.batch.max-size:128}")
+    private int maxBatchSize;
+
+    @Value("${ratelimit.batch.max-delay-us:200}")
+    private long maxDelayMicros;
+
+    @Value("${ratelimit.batch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ratelimit.batch.timeout-ms:250}")
+    private long timeoutMs;
+
+    private BlockingQueue<PendingCall> queue;
+    private StatefulRedisConnection<byte[], byte[]> connection;
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("Redis batch dispatcher disabled - limiter calls go straight to RedisTemplate");
+            return;
+        }
+        if (!(connectionFactory instanceof LettuceConnectionFactory lettuce)
+                || !(lettuce.getNativeClient() instanceof RedisClient client)) {
+            log.warn("Redis batch dispatcher needs a standalone Lettuce client - batching disabled");
+            return;
+        }
+
+        connection = client.connect(ByteArrayCodec.INSTANCE);
+        connection.setAutoFlushCommands(false);
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "redis-batch-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        log.info("🚀 Redis batch dispatcher started (max {} calls / {}µs per flush)",
+                maxBatchSize, maxDelayMicros);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(timeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    // ========== Public API (same contracts as RedisTemplate) ==========
+
+    /**
+     * Run a Lua script as part of the next pipelined flush
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return await(submit(script, keys, args));
+    }
+
+    /**
+     * Key existence check (ban lookups) as part of the next pipelined flush
+     */
+    public boolean hasKey(String key) {
+        return Boolean.TRUE.equals(await(submitHasKey(key)));
+    }
+
+    /**
+     * PTTL in ms (-2 = no key, -1 = no expiry) as part of the next pipelined flush
+     */
+    public long ttlMillis(String key) {
+        Long ttl = await(submitTtlMillis(key));
+        return ttl != null ? ttl : -2;
+    }
+
+    /**
+     * Calls waiting for the next flush (0 when batching is off) - an overload signal
+     */
+    public int queueDepth() {
+        return running ? queue.size() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(RedisScript<T> script, List<String> keys, Object... args) {
+        ScriptOutputType output = outputType(script);
+        return enqueue(commands -> commands.evalsha(script.getSha1(), output, rawKeys(keys), rawArgs(args)),
+                // Not cached on the server yet (or flushed) - EVAL sends the body and caches it
+                commands -> commands.eval(script.getScriptAsString(), output, rawKeys(keys), rawArgs(args)),
+                raw -> (T) deserialize(raw),
+                () -> redisTemplate.execute(script, keys, args));
+    }
+
+    public CompletableFuture<Boolean> submitHasKey(String key) {
+        return enqueue(commands -> commands.exists(keySerializer().serialize(key)),
+                null,
+                raw -> raw instanceof Number n && n.longValue() > 0,
+                () -> redisTemplate.hasKey(key));
+    }
+
+    public CompletableFuture<Long> submitTtlMillis(String key) {
+        return enqueue(commands -> commands.pttl(keySerializer().serialize(key)),
+                null,
+                raw -> raw instanceof Number n ? n.longValue() : -2L,
+                () -> redisTemplate.getExpire(key, TimeUnit.MILLISECONDS));
+    }
+
+    // ========== Queueing ==========
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> enqueue(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<?>> command,
+                                             Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<?>> onNoScript,
+                                             Function<Object, T> converter,
+                                             Supplier<T> direct) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        PendingCall call = new PendingCall(command, onNoScript, (Function<Object, Object>) converter,
+                (Supplier<Object>) direct, (CompletableFuture<Object>) future);
+
+        if (!running || !queue.offer(call)) {
+            runDirect(call);
+        }
+        return future;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisSystemException("Interrupted waiting for Redis batch", e);
+        } catch (TimeoutException e) {
+            throw new RedisSystemException("Redis batch timed out after " + timeoutMs + "ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RedisSystemException("Redis batch call failed", e.getCause());
+        }
+    }
+
+    // ========== Flushing ==========
+
+    private void flushLoop() {
+        List<PendingCall> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                PendingCall first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Collect more calls until the batch is full or the window closes
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    PendingCall next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Drain whatever is left so no caller waits for its timeout
+        PendingCall call;
+        while ((call = queue.poll()) != null) {
+            runDirect(call);
+        }
+    }
+
+    private void flush(List<PendingCall> batch) {
+        RedisAsyncCommands<byte[], byte[]> commands = connection.async();
+
+        for (PendingCall call : batch) {
+            try {
+                call.command().apply(commands).whenComplete((raw, error) -> complete(call, raw, error));
+            } catch (Exception e) {
+                call.future().completeExceptionally(e);
+            }
+        }
+        connection.flushCommands();
+
+        metricsService.recordRedisBatch(batch.size());
+    }
+
+    private void complete(PendingCall call, Object raw, Throwable error) {
+        if (error instanceof CompletionException wrapped && wrapped.getCause() != null) {
+            error = wrapped.getCause();
+        }
+
+        if (error instanceof RedisNoScriptException && call.onNoScript() != null) {
+            resendWithScript(call, error);
+        } else if (error != null) {
+            call.future().completeExceptionally(new RedisSystemException(error.getMessage(), error));
+        } else {
+            try {
+                call.future().complete(call.converter().apply(raw));
+            } catch (Exception e) {
+                call.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Queue the call again as EVAL for the next flush. This runs on the
+     * Lettuce event loop, which must never block - so no direct fallback.
+     */
+    private void resendWithScript(PendingCall call, Throwable noScript) {
+        PendingCall eval = new PendingCall(call.onNoScript(), null, call.converter(), call.direct(), call.future());
+        if (!running || !queue.offer(eval)) {
+            call.future().completeExceptionally(new RedisSystemException(noScript.getMessage(), noScript));
+        }
+    }
+
+    private void runDirect(PendingCall call) {
+        try {
+            call.future().complete(call.direct().get());
+        } catch (Exception e) {
+            call.future().completeExceptionally(e);
+        }
+    }
+
+    // ========== Serialization (mirrors RedisTemplate's script executor) ==========
+
+    private ScriptOutputType outputType(RedisScript<?> script) {
+        Class<?> type = script.getResultType();
+        if (type == null) {
+            return ScriptOutputType.STATUS;
+        }
+        if (List.class.isAssignableFrom(type)) {
+            return ScriptOutputType.MULTI;
+        }
+        if (type == Boolean.class) {
+            return ScriptOutputType.BOOLEAN;
+        }
+        if (type == Long.class) {
+            return ScriptOutputType.INTEGER;
+        }
+        return ScriptOutputType.VALUE;
+    }
+
+    private Object deserialize(Object raw) {
+        if (raw instanceof byte[] bytes) {
+            return valueSerializer().deserialize(bytes);
+        }
+        if (raw instanceof List<?> list) {
+            List<Object> values = new ArrayList<>(list.size());
+            list.forEach(value -> values.add(deserialize(value)));
+            return values;
+        }
+        return raw;
+    }
+
+    private byte[][] rawKeys(List<String> keys) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = keySerializer().serialize(keys.get(i));
+        }
+        return rawKeys;
+    }
+
+    private byte[][] rawArgs(Object[] args) {
+        byte[][] rawArgs = new byte[args.length][];
+        for (int i = 0; i < rawArgs.length; i++) {
+            rawArgs[i] = valueSerializer().serialize(args[i]);
+        }
+        return rawArgs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<String> keySerializer() {
+        return (RedisSerializer<String>) redisTemplate.getKeySerializer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> valueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    private record PendingCall(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<?>> command,
+                               Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<?>> onNoScript,
+                               Function<Object, Object> converter,
+                               Supplier<Object> direct,
+                               CompletableFuture<Object> future) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around the Redis guard calls.
+ *
+ * Outcomes of the last window-size calls are kept in a ring. A call counts
+ * as bad when it throws or takes longer than slow-call-ms. Once min-calls
+ * have been seen and the bad share reaches failure-rate percent, the
+ * circuit opens: Redis is skipped and callers get their fallback at once
+ * for open-ms. After that a few half-open trial calls decide whether to
+ * close again or re-open.
+ *
+ * While CLOSED the breaker takes no lock: the state is a volatile read and
+ * the ring is updated with atomics. Only transitions and half-open trials
+ * synchronize. Each call reports back to the window or trial round it was
+ * admitted under, so a straggler finishing after a transition is ignored.
+ *
+ * Slow calls are bounded by ratelimit.batch.timeout-ms (the dispatcher
+ * gives up on a call after that), so a stalled Redis costs at most one
+ * timeout per request until the breaker trips.
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.breaker.window-size:100}")
+    private int windowSize;
+
+    @Value("${ratelimit.breaker.min-calls:20}")
+    private int minCalls;
+
+    @Value("${ratelimit.breaker.failure-rate:50}")
+    private int failureRatePercent;
+
+    @Value("${ratelimit.breaker.slow-call-ms:100}")
+    private long slowCallMs;
+
+    @Value("${ratelimit.breaker.open-ms:5000}")
+    private long openMs;
+
+    @Value("${ratelimit.breaker.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+
+    // Outcomes while CLOSED; replaced (not cleared) on every transition
+    private volatile Window window;
+
+    // Current half-open round - guarded by this
+    private Trials trials;
+
+    @PostConstruct
+    void init() {
+        window = new Window(windowSize);
+    }
+
+    /**
+     * Run a Redis call through the breaker; failures and an open circuit yield the fallback
+     */
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        if (!enabled) {
+            return call.get();
+        }
+        Ticket ticket = permitCall();
+        if (ticket == null) {
+            return fallback.get();
+        }
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            onResult(ticket, false);
+            log.debug("Redis call failed, using fallback: {}", e.getMessage());
+            return fallback.get();
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        onResult(ticket, elapsedMs < slowCallMs);
+        return result;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Seconds until the next half-open probe (Retry-After while failing closed)
+     */
+    public long retryAfterSeconds() {
+        long remaining = openedAt + openMs - System.currentTimeMillis();
+        return Math.max(1, (remaining + 999) / 1000);
+    }
+
+    /**
+     * Window (CLOSED) or trial round (HALF_OPEN) the call reports to, null =
+     * use the fallback. Lock-free while CLOSED (and while OPEN before open-ms is up).
+     */
+    private Ticket permitCall() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return window;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt < openMs) {
+            return null;
+        }
+        return permitTrial();
+    }
+
+    private synchronized Ticket permitTrial() {
+        switch (state) {
+            case CLOSED:
+                return window;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMs) {
+                    return null;
+                }
+                trials = new Trials();
+                transition(State.HALF_OPEN);
+                // fall through - this call is the first trial
+            default:
+                if (trials.started >= halfOpenCalls) {
+                    return null;
+                }
+                trials.started++;
+                return trials;
+        }
+    }
+
+    private void onResult(Ticket ticket, boolean good) {
+        if (ticket instanceof Window admittedUnder) {
+            // A replaced window is no longer read - recording into it is harmless
+            if (admittedUnder.record(!good) && admittedUnder.tripped(minCalls, failureRatePercent)) {
+                tripIfCurrent(admittedUnder);
+            }
+            return;
+        }
+        onTrialResult((Trials) ticket, good);
+    }
+
+    private synchronized void onTrialResult(Trials round, boolean good) {
+        if (state != State.HALF_OPEN || trials != round) {
+            return; // Straggler from an earlier trial round
+        }
+        if (!good) {
+            open();
+        } else if (++round.succeeded >= halfOpenCalls) {
+            window = new Window(windowSize);
+            transition(State.CLOSED);
+        }
+    }
+
+    private synchronized void tripIfCurrent(Window tripped) {
+        if (state != State.CLOSED || window != tripped) {
+            return; // Another call already opened the circuit
+        }
+        long recorded = tripped.recorded();
+        log.warn("Redis failure rate {}% over last {} calls", tripped.bad.get() * 100 / recorded, recorded);
+        open();
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        window = new Window(windowSize);
+        transition(State.OPEN);
+    }
+
+    private void transition(State next) {
+        if (state == next) {
+            return;
+        }
+        State previous = state;
+        state = next;
+        metricsService.setRedisBreakerState(next.ordinal());
+
+        switch (next) {
+            case OPEN -> log.error("🔌 Redis circuit OPEN ({} -> OPEN) - using fallback limits for {}ms",
+                    previous, openMs);
+            case HALF_OPEN -> log.warn("🔄 Redis circuit HALF_OPEN - probing with {} calls", halfOpenCalls);
+            case CLOSED -> log.info("✅ Redis circuit CLOSED - back to distributed limits");
+        }
+    }
+
+    /**
+     * What a permitted call reports its outcome to
+     */
+    private sealed interface Ticket permits Window, Trials {
+    }
+
+    /**
+     * One half-open round of trial calls - guarded by the breaker
+     */
+    private static final class Trials implements Ticket {
+        private int started;
+        private int succeeded;
+    }
+
+    /**
+     * Ring of the last calls' outcomes, updated with atomics only. Concurrent
+     * callers may land on the same slot after a wrap; the bad count follows
+     * whatever value each slot actually held.
+     */
+    private static final class Window implements Ticket {
+        private final AtomicIntegerArray outcomes;   // 1 = bad call
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicInteger bad = new AtomicInteger();
+
+        Window(int size) {
+            outcomes = new AtomicIntegerArray(Math.max(1, size));
+        }
+
+        /**
+         * Record one call; true if it was bad (only then can the circuit trip)
+         */
+        boolean record(boolean isBad) {
+            int slot = (int) (calls.getAndIncrement() % outcomes.length());
+            int value = isBad ? 1 : 0;
+            // Skip the write when the slot already holds the same outcome (the common case)
+            if (outcomes.get(slot) != value) {
+                int previous = outcomes.getAndSet(slot, value);
+                bad.addAndGet(value - previous);
+            }
+            return isBad;
+        }
+
+        long recorded() {
+            return Math.min(calls.get(), outcomes.length());
+        }
+
+        boolean tripped(int minCalls, int failureRatePercent) {
+            long recorded = recorded();
+            return recorded >= minCalls && bad.get() * 100L >= (long) failureRatePercent * recorded;
+        }
+    }
+}
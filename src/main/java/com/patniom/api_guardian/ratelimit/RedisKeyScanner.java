@@ -0,0 +1,147 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental key scans (SCAN instead of KEYS), standalone or cluster.
+ * Matching keys are removed whole (UNLINK) or field by field (HDEL).
+ *
+ * KEYS blocks the server for the whole keyspace and only sees one node of
+ * a cluster; SCAN walks every master in small steps.
+ */
+public final class RedisKeyScanner {
+
+    private static final int SCAN_COUNT = 1000;
+    private static final int DELETE_CHUNK = 500;
+
+    private RedisKeyScanner() {
+    }
+
+    /**
+     * UNLINK every key matching the pattern, in chunks. Returns the number deleted.
+     */
+    public static long deleteMatching(RedisTemplate<String, Object> template, String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+
+        Long deleted = template.execute((RedisCallback<Long>) connection -> {
+            long total = 0;
+            if (connection instanceof RedisClusterConnection cluster) {
+                for (RedisClusterNode node : cluster.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        try (Cursor<byte[]> cursor = cluster.scan(node, options)) {
+                            total += unlinkAll(connection, cursor);
+                        }
+                    }
+                }
+            } else {
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                    total += unlinkAll(connection, cursor);
+                }
+            }
+            return total;
+        });
+
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * HDEL the given fields from every hash matching the pattern (pipelined per
+     * chunk). Returns the number of hashes that lost at least one field.
+     */
+    public static long deleteFieldsMatching(RedisTemplate<String, Object> template, String pattern,
+                                            String... fields) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        byte[][] rawFields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            rawFields[i] = template.getStringSerializer().serialize(fields[i]);
+        }
+
+        Long touched = template.execute((RedisCallback<Long>) connection -> {
+            long total = 0;
+            if (connection instanceof RedisClusterConnection cluster) {
+                for (RedisClusterNode node : cluster.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        try (Cursor<byte[]> cursor = cluster.scan(node, options)) {
+                            total += hdelAll(connection, cursor, rawFields);
+                        }
+                    }
+                }
+            } else {
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                    total += hdelAll(connection, cursor, rawFields);
+                }
+            }
+            return total;
+        });
+
+        return touched != null ? touched : 0;
+    }
+
+    private static long unlinkAll(RedisConnection connection, Cursor<byte[]> cursor) {
+        long total = 0;
+        List<byte[]> chunk = new ArrayList<>(DELETE_CHUNK);
+
+        while (cursor.hasNext()) {
+            chunk.add(cursor.next());
+            if (chunk.size() == DELETE_CHUNK) {
+                total += unlink(connection, chunk);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            total += unlink(connection, chunk);
+        }
+        return total;
+    }
+
+    private static long hdelAll(RedisConnection connection, Cursor<byte[]> cursor, byte[][] fields) {
+        long total = 0;
+        List<byte[]> chunk = new ArrayList<>(DELETE_CHUNK);
+
+        while (cursor.hasNext()) {
+            chunk.add(cursor.next());
+            if (chunk.size() == DELETE_CHUNK) {
+                total += hdel(connection, chunk, fields);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            total += hdel(connection, chunk, fields);
+        }
+        return total;
+    }
+
+    private static long hdel(RedisConnection connection, List<byte[]> chunk, byte[][] fields) {
+        List<Object> results;
+        connection.openPipeline();
+        try {
+            for (byte[] key : chunk) {
+                connection.hashCommands().hDel(key, fields);
+            }
+        } finally {
+            results = connection.closePipeline();
+            chunk.clear();
+        }
+
+        long touched = 0;
+        for (Object removed : results) {
+            if (removed instanceof Number n && n.longValue() > 0) {
+                touched++;
+            }
+        }
+        return touched;
+    }
+
+    private static long unlink(RedisConnection connection, List<byte[]> chunk) {
+        Long removed = connection.keyCommands().unlink(chunk.toArray(new byte[0][]));
+        chunk.clear();
+        return removed != null ? removed : 0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.patniom.api_guardian.ratelimit;
+
+import java.util.List;
+
+/**
+ * Single place for Redis key names.
+ *
+ * All state of one identifier (ban, violations, quota windows, burst
+ * limiter) lives in ONE small hash, s:{id}. Small hashes are stored as a
+ * listpack, so a few integer fields cost far less than one key each, and
+ * every script touches a single key. The identifier is a Cluster hash tag
+ * ({id}), so per-identifier keys stay single-slot (and on one shard of the
+ * client-side ring).
+ *
+ * Fields hold plain integers written by Lua (never JSON). Fields with their
+ * own lifetime carry an absolute expiry (ban until, violation window end);
+ * limiter fields are self-validating (stale windows reset on read). Every
+ * write raises the hash TTL to cover the longest-lived field - see KEEP_TTL.
+ */
+public final class RedisKeys {
+
+    public static final String STATE_PREFIX = "s:";
+    public static final String STATE_PATTERN = "s:{*";
+
+    // ========== Fields of the s:{id} hash ==========
+
+    public static final String F_BAN_UNTIL = "b";         // Ban expiry (epoch ms)
+    public static final String F_VIOLATIONS = "v";        // Violations in the current window
+    public static final String F_VIOLATIONS_UNTIL = "vx"; // Violation window end (epoch ms)
+    public static final String F_STRIKES = "n";           // ViolationService counter
+    public static final String F_STRIKES_UNTIL = "nx";    // ... and its window end (epoch ms)
+    public static final String F_TOKENS = "t";            // Token bucket: tokens left
+    public static final String F_LAST_REFILL = "r";       // Token bucket: last refill (epoch ms)
+    public static final String F_TAT = "g";               // GCRA: theoretical arrival time (µs)
+    public static final String F_WINDOW = "w";            // Sliding window: window index
+    public static final String F_CURRENT = "c";           // Sliding window: count in window w
+    public static final String F_PREVIOUS = "p";          // Sliding window: count in window w - 1
+
+    /**
+     * Raises the state hash TTL to at least `keep` ms. Expects: keep (ms, relative to now).
+     * PTTL is -1 for a hash created in this script, so new state always gets a TTL.
+     */
+    static final String KEEP_TTL = """
+            if keep > 0 and redis.call("PTTL", KEYS[1]) < keep then
+                redis.call("PEXPIRE", KEYS[1], keep)
+            end
+            """;
+
+    // Subnet bans: HASH of CIDR -> expiry ms (0 = permanent), plus a change counter
+    public static final String CIDR_BANS = "cidrban:prefixes";
+    public static final String CIDR_BANS_VERSION = "cidrban:version";
+
+    // Ban registry: ZSET of identifier -> ban expiry (ms)
+    public static final String BAN_INDEX = "bans:index";
+
+    // Key layout version reached by LegacyKeyMigrator, and its run lock
+    public static final String LAYOUT_VERSION = "ratelimit:layout";
+    public static final String LAYOUT_LOCK = "ratelimit:layout:lock";
+
+    // ZSET of live app nodes (member = node id, score = last heartbeat ms)
+    public static final String NODES = "ratelimit:nodes";
+
+    private RedisKeys() {
+    }
+
+    /**
+     * Hash tag for an identifier - also the routing key of the shard ring
+     */
+    public static String tag(String identifier) {
+        return "{" + identifier + "}";
+    }
+
+    /**
+     * The identifier's state hash
+     */
+    public static String state(String identifier) {
+        return STATE_PREFIX + tag(identifier);
+    }
+
+    /**
+     * Identifier of a state hash key, or null for any other key
+     */
+    public static String identifierOf(String stateKey) {
+        if (!stateKey.startsWith(STATE_PREFIX + "{") || !stateKey.endsWith("}")) {
+            return null;
+        }
+        return stateKey.substring(STATE_PREFIX.length() + 1, stateKey.length() - 1);
+    }
+
+    /**
+     * Field prefix of a sliding quota window (q60w / q60c / q60p for one minute).
+     * The Lua side builds the same names from the window length in ms.
+     */
+    public static String quotaField(long windowSeconds) {
+        return "q" + windowSeconds;
+    }
+
+    public static List<String> quotaFields(long windowSeconds) {
+        String prefix = quotaField(windowSeconds);
+        return List.of(prefix + F_WINDOW, prefix + F_CURRENT, prefix + F_PREVIOUS);
+    }
+
+    /**
+     * Distributed semaphore: ZSET of lease id -> lease expiry (ms)
+     */
+    public static String semaphore(String name) {
+        return "sem:" + tag(name);
+    }
+
+    /**
+     * Exact sliding log (opt-in, low limits only): one ZSET member per request,
+     * so it can't live in the state hash
+     */
+    public static String slidingLog(String identifier, long windowSeconds) {
+        return "sl:" + tag(identifier) + ":" + windowSeconds;
+    }
+}
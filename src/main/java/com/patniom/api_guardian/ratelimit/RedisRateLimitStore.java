@@ -0,0 +1,298 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Central Redis store: the whole guard decision in ONE round trip.
+ *
+ * Each algorithm gets its own script: a shared prelude (clock + ban check),
+ * the quota window check, the algorithm's Lua body, and a shared postlude
+ * (quota charge + violation escalation). Quota windows are only charged
+ * when both the quotas and the burst limiter admit the request.
+ * Time always comes from Redis TIME so every node shares one clock.
+ * Spring sends scripts with EVALSHA (falling back to EVAL once).
+ * Everything lives in the identifier's state hash (RedisKeys.state), so the
+ * script raises its TTL once, after all writes.
+ *
+ * Parent levels of the hierarchy (RateLimitConfig.levels: owning user,
+ * client IP, route-wide cap) are extra KEYS whose quota windows are checked
+ * in the same pass, so stacking limits costs no extra round trip and a
+ * request is only charged when every level admits it. Bans and the burst
+ * limiter stay on the request's own identifier. The keys carry different
+ * hash tags, so levels can't run on a Redis Cluster (CROSSSLOT): they are
+ * off by default, and startup fails if any are configured on a Cluster
+ * connection rather than every request falling back.
+ */
+@Slf4j
+@Component
+public class RedisRateLimitStore implements RateLimitStore {
+
+    static final long DECISION_ALLOW = 0;
+    static final long DECISION_RATE_LIMIT = 1;
+    static final long DECISION_BANNED = 2;
+
+    // KEYS[1] = state hash, KEYS[2..] = parent level state hashes
+    // ARGV[1..7] = abuse settings (violation window 0 = record no violation), ARGV[8] = quota count
+    // ARGV[9..] = quota (key index, limit, windowMs) triples then limiter args
+    private static final String PRELUDE = """
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local time = redis.call("TIME")
+            local nowUs = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local now = math.floor(nowUs / 1000)
+
+            local banUntil = tonumber(redis.call("HGET", KEYS[1], "b"))
+            if banUntil ~= nil and banUntil > now then
+                return {2, 0, 0, math.ceil((banUntil - now) / 1000), 0, 0, 0}
+            end
+
+            local quotaCount = tonumber(ARGV[8])
+            local qa = 9
+            local la = qa + quotaCount * 3
+
+            -- How long (ms) the state hash must live after this script's writes
+            local keep = 0
+
+            -- Limiter body sets these
+            local allowed = false
+            local remaining = 0
+            local reset = now
+            local retryMs = 0
+            """;
+
+    private static final String POSTLUDE = """
+            if quotaRejected > 0 then
+                -- Quota exhaustion (own or a parent level's) is not abuse: no violation, no ban
+                return {1, 0, quotaReset, math.ceil(quotaRetryMs / 1000), 0, 0, quotaRejected, quotaRetryMs}
+            end
+
+            if allowed then
+            """ + MultiWindowRateLimiter.QUOTA_COMMIT + RedisKeys.KEEP_TTL + """
+                if quotaRemaining >= 0 and quotaRemaining < remaining then
+                    remaining = quotaRemaining
+                    reset = quotaReset
+                end
+                return {0, remaining, reset, 0, 0, 0, 0}
+            end
+
+            if tonumber(ARGV[1]) == 0 then
+                -- Shaped (the caller waits retryMs) or a subnet aggregate: limit only, not abuse
+                return {1, 0, reset, math.ceil(retryMs / 1000), 0, 0, 0, retryMs}
+            end
+
+            """ + AbuseDetectionService.RECORD_VIOLATION + """
+
+            local banSeconds = 0
+            if violations >= tonumber(ARGV[4]) then
+                banSeconds = tonumber(ARGV[7])
+            elseif violations >= tonumber(ARGV[3]) then
+                banSeconds = tonumber(ARGV[6])
+            elseif violations >= tonumber(ARGV[2]) then
+                banSeconds = tonumber(ARGV[5])
+            end
+
+            local retryAfter = math.ceil(retryMs / 1000)
+            if banSeconds > 0 then
+                redis.call("HSET", KEYS[1], "b", now + banSeconds * 1000)
+                keep = math.max(keep, banSeconds * 1000)
+                retryAfter = banSeconds
+            end
+            """ + RedisKeys.KEEP_TTL + """
+
+            return {1, 0, reset, retryAfter, violations, banSeconds, 0, retryAfter * 1000}
+            """;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisBatchDispatcher redisBatchDispatcher;
+
+    @Autowired
+    private List<RateLimitAlgorithm> algorithms;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @SuppressWarnings("rawtypes")
+    private final Map<RateLimitStrategy, DefaultRedisScript<List>> guardScripts =
+            new EnumMap<>(RateLimitStrategy.class);
+
+    private final DefaultRedisScript<Long> banScript = new DefaultRedisScript<>();
+
+    @PostConstruct
+    void buildScripts() {
+        algorithms.forEach(algorithm ->
+                guardScripts.put(algorithm.strategy(), buildScript(algorithm.luaBody())));
+        banScript.setResultType(Long.class);
+        banScript.setScriptText(AbuseDetectionService.APPLY_BAN);
+        checkLevelsSupported();
+    }
+
+    private void checkLevelsSupported() {
+        if (redisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory factory
+                && factory.isClusterAware() && rateLimitProperties.hasLevels()) {
+            throw new IllegalStateException("Limit levels (ratelimit.user-level, "
+                    + "ratelimit.tier.*.ip-requests-per-minute, ratelimit.routes[n].global-requests-per-*) "
+                    + "span several hash slots and can't run on a Redis Cluster; disable them");
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static DefaultRedisScript<List> buildScript(String limiterBody) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setResultType(List.class);
+        script.setScriptText(PRELUDE
+                + MultiWindowRateLimiter.QUOTA_CHECK
+                + "if quotaRejected == 0 then\n" + limiterBody + "end\n"
+                + POSTLUDE);
+        return script;
+    }
+
+    @Override
+    public RateLimitStoreType type() {
+        return RateLimitStoreType.REDIS;
+    }
+
+    @Override
+    public GuardDecision evaluate(String identifier,
+                                 RateLimitConfig config,
+                                 RateLimitAlgorithm algorithm) {
+        return evaluate(identifier, config, algorithm, redisBatchDispatcher::execute);
+    }
+
+    /**
+     * Run the guard script through the given executor (primary Redis or a shard)
+     */
+    GuardDecision evaluate(String identifier,
+                           RateLimitConfig config,
+                           RateLimitAlgorithm algorithm,
+                           GuardScriptRunner runner) {
+        List<String> keys = new ArrayList<>(List.of(RedisKeys.state(identifier)));
+
+        List<Object> args = new ArrayList<>(List.of(
+                config.recordsViolations() ? AbuseDetectionService.VIOLATION_WINDOW_SECONDS : 0,
+                AbuseDetectionService.VIOLATION_THRESHOLD_MINOR,
+                AbuseDetectionService.VIOLATION_THRESHOLD_MODERATE,
+                AbuseDetectionService.VIOLATION_THRESHOLD_SEVERE,
+                AbuseDetectionService.BAN_DURATION_MINOR,
+                AbuseDetectionService.BAN_DURATION_MODERATE,
+                AbuseDetectionService.BAN_DURATION_SEVERE
+        ));
+
+        // Quota windows in script order, so a rejected index maps back to its level
+        List<QuotaWindow> windows = new ArrayList<>();
+        List<LimitScope> scopes = new ArrayList<>();
+        List<Object> quotaArgs = new ArrayList<>();
+        addQuotas(quotaArgs, windows, scopes, LimitScope.IDENTIFIER, 1, config.quotaLimits());
+        for (LimitLevel level : config.getLevels()) {
+            if (level.limits().isEmpty()) {
+                continue;
+            }
+            keys.add(RedisKeys.state(level.identifier()));
+            addQuotas(quotaArgs, windows, scopes, level.scope(), keys.size(), level.limits());
+        }
+        args.add(windows.size());
+        args.addAll(quotaArgs);
+
+        args.addAll(algorithm.luaArgs(config));
+
+        List<?> result = runner.run(guardScripts.get(algorithm.strategy()), keys, args.toArray());
+
+        if (result == null || result.size() < 7) {
+            // Throw so the breaker counts a bad call and the route's fallback applies
+            throw new IllegalStateException("Guard script returned no result for: " + identifier);
+        }
+
+        return toDecision(result, windows, scopes);
+    }
+
+    private static void addQuotas(List<Object> args, List<QuotaWindow> windows, List<LimitScope> scopes,
+                                  LimitScope scope, int keyIndex, Map<QuotaWindow, Long> limits) {
+        limits.forEach((window, limit) -> {
+            args.add(keyIndex);
+            args.add(limit);
+            args.add(window.getMillis());
+            windows.add(window);
+            scopes.add(scope);
+        });
+    }
+
+    @Override
+    public void reset(String identifier) {
+        reset(identifier, redisTemplate);
+    }
+
+    /**
+     * Drops the burst limiter fields only - bans, violations and quotas stay
+     */
+    void reset(String identifier, RedisTemplate<String, Object> template) {
+        List<Object> fields = new ArrayList<>();
+        algorithms.forEach(algorithm -> fields.addAll(algorithm.redisFields()));
+        template.opsForHash().delete(RedisKeys.state(identifier), fields.toArray());
+    }
+
+    @Override
+    public void ban(String identifier, long banSeconds) {
+        ban(identifier, banSeconds, redisTemplate);
+    }
+
+    void ban(String identifier, long banSeconds, RedisTemplate<String, Object> template) {
+        template.execute(banScript, List.of(RedisKeys.state(identifier)), banSeconds);
+    }
+
+    @Override
+    public void clearBan(String identifier) {
+        clearBan(identifier, redisTemplate);
+    }
+
+    void clearBan(String identifier, RedisTemplate<String, Object> template) {
+        template.opsForHash().delete(RedisKeys.state(identifier), (Object[]) AbuseDetectionService.BAN_FIELDS);
+    }
+
+    private GuardDecision toDecision(List<?> result, List<QuotaWindow> windows, List<LimitScope> scopes) {
+        long code = toLong(result.get(0));
+        int quotaIndex = result.size() > 6 ? (int) toLong(result.get(6)) : 0;
+
+        AuditDecision decision = code == DECISION_ALLOW ? AuditDecision.ALLOW
+                : code == DECISION_BANNED ? AuditDecision.BANNED
+                : AuditDecision.RATE_LIMIT;
+
+        return GuardDecision.builder()
+                .decision(decision)
+                .remaining(toLong(result.get(1)))
+                .resetEpochSeconds(toLong(result.get(2)) / 1000)
+                .retryAfterSeconds(toLong(result.get(3)))
+                .retryAfterMs(result.size() > 7 ? toLong(result.get(7)) : 0)
+                .violations(toLong(result.get(4)))
+                .banSeconds(toLong(result.get(5)))
+                .limitedBy(quotaIndex > 0 ? windows.get(quotaIndex - 1) : null)
+                .limitedScope(quotaIndex > 0 ? scopes.get(quotaIndex - 1) : null)
+                .build();
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+    }
+
+    /**
+     * Executes a guard script (RedisBatchDispatcher::execute or RedisTemplate::execute)
+     */
+    @FunctionalInterface
+    interface GuardScriptRunner {
+        @SuppressWarnings("rawtypes")
+        List<?> run(DefaultRedisScript<List> script, List<String> keys, Object[] args);
+    }
+}
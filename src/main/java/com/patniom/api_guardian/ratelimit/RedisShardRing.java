@@ -0,0 +1,103 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.config.RedisConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Optional client-side consistent-hash ring over standalone Redis nodes
+ * (ratelimit.sharding.nodes=host1:6379,host2:6379).
+ *
+ * Identifiers are placed by their hash tag, so every key of an identifier
+ * lives on one node and guard scripts never span nodes. Each node gets
+ * VIRTUAL_NODES points on the ring; adding a node only moves ~1/N of the
+ * identifiers. Used by the SHARDED store type; empty when not configured.
+ */
+@Slf4j
+@Component
+public class RedisShardRing {
+
+    private static final int VIRTUAL_NODES = 160;
+
+    @Value("${ratelimit.sharding.nodes:}")
+    private List<String> nodes;
+
+    @Value("${spring.data.redis.timeout:2000ms}")
+    private Duration commandTimeout;
+
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+    private final List<RedisTemplate<String, Object>> shards = new ArrayList<>();
+    private final TreeMap<Long, RedisTemplate<String, Object>> ring = new TreeMap<>();
+
+    @PostConstruct
+    void connect() {
+        for (String node : nodes) {
+            if (node.isBlank()) {
+                continue;
+            }
+            String address = node.trim();
+            int colon = address.lastIndexOf(':');
+            String host = colon > 0 ? address.substring(0, colon) : address;
+            int port = colon > 0 ? Integer.parseInt(address.substring(colon + 1)) : 6379;
+
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                    new RedisStandaloneConfiguration(host, port),
+                    LettuceClientConfiguration.builder().commandTimeout(commandTimeout).build());
+            factory.afterPropertiesSet();
+            factory.start();
+
+            factories.add(factory);
+            addNode(address, RedisConfig.createTemplate(factory));
+        }
+
+        if (!shards.isEmpty()) {
+            log.info("🔀 Redis shard ring: {} node(s), {} points", shards.size(), ring.size());
+        }
+    }
+
+    /**
+     * Place the node's virtual points on the ring (keyed by its address, so
+     * placement is the same on every gateway node)
+     */
+    void addNode(String address, RedisTemplate<String, Object> template) {
+        shards.add(template);
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            ring.put(OffHeapLimiterTable.hash(address + "#" + i, 0), template);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        factories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    /**
+     * Node owning every key of this identifier
+     */
+    public RedisTemplate<String, Object> shardFor(String identifier) {
+        long hash = OffHeapLimiterTable.hash(RedisKeys.tag(identifier), 0);
+        Map.Entry<Long, RedisTemplate<String, Object>> entry = ring.ceilingEntry(hash);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public List<RedisTemplate<String, Object>> shards() {
+        return shards;
+    }
+}
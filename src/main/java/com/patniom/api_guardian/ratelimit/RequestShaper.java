@@ -0,0 +1,109 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer side of the queue-and-smooth mode (RateLimitConfig.shapeMaxWaitMs).
+ *
+ * A shaped request that the limiter rejects is parked with servlet async
+ * support - it holds no Tomcat thread while it waits - and a hashed-wheel
+ * timer wakes it when the limiter's schedule (retryAfterMs of the guard
+ * decision) says a slot frees up. RateLimitingFilter then re-runs the guard
+ * and either dispatches the request, parks it again, or answers 429 once
+ * max-wait would be exceeded. GCRA gives the smoothest output: its slots
+ * are one emission interval apart, so parked requests wake spread out
+ * instead of all at the next bucket refill.
+ *
+ * One wheel timer serves all parked requests (O(1) schedule/cancel); the
+ * number of parked requests is capped by max-parked, beyond which rejected
+ * requests get their 429 at once.
+ */
+@Slf4j
+@Component
+public class RequestShaper {
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.shaping.tick-ms:10}")
+    private long tickMs;
+
+    @Value("${ratelimit.shaping.max-parked:10000}")
+    private int maxParked;
+
+    private final AtomicInteger parked = new AtomicInteger();
+
+    private HashedWheelTimer timer;
+
+    @PostConstruct
+    void start() {
+        timer = new HashedWheelTimer(runnable -> {
+            Thread thread = new Thread(runnable, "request-shaper-timer");
+            thread.setDaemon(true);
+            return thread;
+        }, tickMs, TimeUnit.MILLISECONDS, 512);
+        timer.start();
+        metricsService.registerParkedRequests(parked);
+    }
+
+    @PreDestroy
+    void stop() {
+        // Wake everything still parked so each request gets an answer before shutdown
+        Set<Timeout> pending = timer.stop();
+        for (Timeout timeout : pending) {
+            try {
+                timeout.task().run(timeout);
+            } catch (Exception e) {
+                log.debug("Parked request could not be resumed on shutdown: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * How long a rejected request would have to wait for the limiter (ms)
+     */
+    public long delayMs(GuardDecision guard) {
+        long delay = guard.getRetryAfterMs() > 0
+                ? guard.getRetryAfterMs()
+                : guard.getRetryAfterSeconds() * 1000;
+        return Math.max(1, delay);
+    }
+
+    /**
+     * Take a parking slot; false when max-parked requests are already waiting
+     */
+    public boolean tryPark() {
+        if (parked.incrementAndGet() > maxParked) {
+            parked.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a parking slot once the request is resumed for good (dispatched or answered)
+     */
+    public void unpark() {
+        parked.decrementAndGet();
+    }
+
+    /**
+     * Run resume on the timer thread after delayMs - resume must hand off
+     * to another thread (AsyncContext.start) before doing any I/O
+     */
+    public void schedule(long delayMs, Runnable resume) {
+        timer.newTimeout(timeout -> resume.run(), delayMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,65 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis store spread over the client-side shard ring.
+ *
+ * Same guard script and semantics as RedisRateLimitStore, but each
+ * identifier is evaluated on the ring node that owns its hash tag, so
+ * limiter throughput grows with the number of nodes. Falls back to the
+ * primary Redis when ratelimit.sharding.nodes is empty.
+ *
+ * Parent levels (user, IP, route) live on other shards than the identifier,
+ * so with the ring enabled only the identifier's own limits are enforced.
+ * Manual bans are written to the owning shard, where the guard script reads them.
+ */
+@Component
+public class ShardedRateLimitStore implements RateLimitStore {
+
+    @Autowired
+    private RedisRateLimitStore redisRateLimitStore;
+
+    @Autowired
+    private RedisShardRing shardRing;
+
+    @Override
+    public RateLimitStoreType type() {
+        return RateLimitStoreType.SHARDED;
+    }
+
+    @Override
+    public GuardDecision evaluate(String identifier,
+                                 RateLimitConfig config,
+                                 RateLimitAlgorithm algorithm) {
+        if (!shardRing.isEnabled()) {
+            return redisRateLimitStore.evaluate(identifier, config, algorithm);
+        }
+
+        RedisTemplate<String, Object> shard = shardRing.shardFor(identifier);
+        return redisRateLimitStore.evaluate(identifier, config.withoutLevels(), algorithm, shard::execute);
+    }
+
+    @Override
+    public void reset(String identifier) {
+        if (shardRing.isEnabled()) {
+            redisRateLimitStore.reset(identifier, shardRing.shardFor(identifier));
+        }
+    }
+
+    @Override
+    public void ban(String identifier, long banSeconds) {
+        if (shardRing.isEnabled()) {
+            redisRateLimitStore.ban(identifier, banSeconds, shardRing.shardFor(identifier));
+        }
+    }
+
+    @Override
+    public void clearBan(String identifier) {
+        if (shardRing.isEnabled()) {
+            redisRateLimitStore.clearBan(identifier, shardRing.shardFor(identifier));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sliding window counter: weighted previous + current fixed window.
+ * O(1) memory per identifier; limit = capacity per refill interval.
+ * State: window index (w), current count (c), previous count (p)
+ */
+@Component
+public class SlidingWindowAlgorithm implements RateLimitAlgorithm {
+
+    private static final String LUA_BODY = """
+            local limit = tonumber(ARGV[la])
+            local window = tonumber(ARGV[la + 1])
+            local index = math.floor(now / window)
+
+            local state = redis.call("HMGET", KEYS[1], "w", "c", "p")
+            local w = tonumber(state[1])
+            local current = tonumber(state[2]) or 0
+            local previous = tonumber(state[3]) or 0
+
+            if w == nil or w < index - 1 then
+                previous = 0
+                current = 0
+            elseif w == index - 1 then
+                previous = current
+                current = 0
+            end
+
+            local elapsed = (now - index * window) / window
+            local estimated = previous * (1 - elapsed) + current
+            reset = (index + 1) * window
+
+            if estimated + 1 <= limit then
+                redis.call("HSET", KEYS[1], "w", index, "c", current + 1, "p", previous)
+                keep = math.max(keep, (index + 2) * window - now)
+                allowed = true
+                remaining = math.floor(limit - estimated - 1)
+            elseif current + 1 > limit then
+                retryMs = reset - now + math.ceil(math.max(0, 1 - (limit - 1) / current) * window)
+            else
+                retryMs = math.max(1, math.ceil((1 - (limit - 1 - current) / previous - elapsed) * window))
+            end
+            """;
+
+    @Override
+    public RateLimitStrategy strategy() {
+        return RateLimitStrategy.SLIDING_WINDOW;
+    }
+
+    @Override
+    public String luaBody() {
+        return LUA_BODY;
+    }
+
+    @Override
+    public List<String> redisFields() {
+        return List.of(RedisKeys.F_WINDOW, RedisKeys.F_CURRENT, RedisKeys.F_PREVIOUS);
+    }
+
+    @Override
+    public List<Object> luaArgs(RateLimitConfig config) {
+        return List.of(config.getCapacity(), config.getRefillIntervalMs());
+    }
+
+    @Override
+    public int stateSize() {
+        return 3;
+    }
+
+    @Override
+    public LimiterOutcome evaluate(long[] state, long nowMicros, RateLimitConfig config) {
+        return evaluateWindow(state, 0, nowMicros / 1000,
+                config.getCapacity(), config.getRefillIntervalMs(), true);
+    }
+
+    /**
+     * One sliding window over state[offset .. offset + 2].
+     * With commit = false this is a read-only check (used for quota windows).
+     */
+    static LimiterOutcome evaluateWindow(long[] state, int offset, long now,
+                                         long limit, long window, boolean commit) {
+        long index = now / window;
+        long w = state[offset];
+        long current = state[offset + 1];
+        long previous = state[offset + 2];
+
+        if (w < index - 1) {
+            previous = 0;
+            current = 0;
+        } else if (w == index - 1) {
+            previous = current;
+            current = 0;
+        }
+
+        double elapsed = (double) (now - index * window) / window;
+        double estimated = previous * (1 - elapsed) + current;
+        long reset = (index + 1) * window;
+
+        if (estimated + 1 <= limit) {
+            if (commit) {
+                state[offset] = index;
+                state[offset + 1] = current + 1;
+                state[offset + 2] = previous;
+            }
+            return new LimiterOutcome(true, (long) Math.floor(limit - estimated - 1), reset, 0);
+        }
+
+        long retryMs;
+        if (current + 1 > limit) {
+            retryMs = reset - now + (long) Math.ceil(Math.max(0, 1 - (double) (limit - 1) / current) * window);
+        } else {
+            retryMs = Math.max(1, (long) Math.ceil((1 - (double) (limit - 1 - current) / previous - elapsed) * window));
+        }
+        return new LimiterOutcome(false, 0, reset, retryMs);
+    }
+}
@@ -0,0 +1,26 @@
+package com.patniom.api_guardian.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Sampled memory cost of the per-identifier state hashes (s:{id})
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StateMemoryReport {
+
+    private long sampled;                  // State hashes measured
+    private long averageBytes;             // MEMORY USAGE per identifier (key + hash + overhead)
+    private long p99Bytes;
+    private long maxBytes;
+    private double averageFields;
+    private Map<String, Long> encodings;   // OBJECT ENCODING -> hashes (listpack is the compact one)
+    private long keysInDatabase;           // DBSIZE summed over the sampled nodes (all key types)
+}
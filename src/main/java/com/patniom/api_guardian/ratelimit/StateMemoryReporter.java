@@ -0,0 +1,117 @@
+package com.patniom.api_guardian.ratelimit;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.api.async.RedisServerAsyncCommands;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ValueEncoding;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what one identifier costs in Redis: SCANs up to `sample` state
+ * hashes (split over the primary and every shard of the ring) and asks
+ * Redis for MEMORY USAGE, field count and encoding of each. Admin only -
+ * one round trip per sampled key.
+ */
+@Component
+public class StateMemoryReporter {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisShardRing shardRing;
+
+    public StateMemoryReport report(int sample) {
+        List<RedisTemplate<String, Object>> targets = new ArrayList<>();
+        targets.add(redisTemplate);
+        targets.addAll(shardRing.shards());
+
+        List<Long> sizes = new ArrayList<>();
+        Map<String, Long> encodings = new TreeMap<>();
+        long fields = 0;
+        long keys = 0;
+        int perTarget = Math.max(1, sample / targets.size());
+
+        for (RedisTemplate<String, Object> target : targets) {
+            Sample measured = target.execute((RedisCallback<Sample>) connection -> {
+                Sample result = new Sample();
+                ScanOptions options = ScanOptions.scanOptions()
+                        .match(RedisKeys.STATE_PATTERN).count(1000).build();
+
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                    while (cursor.hasNext() && result.sizes.size() < perTarget) {
+                        byte[] key = cursor.next();
+                        Long bytes = memoryUsage(connection, key);
+                        if (bytes == null) {
+                            continue; // Expired between SCAN and MEMORY USAGE
+                        }
+                        ValueEncoding encoding = connection.keyCommands().encodingOf(key);
+                        Long length = connection.hashCommands().hLen(key);
+
+                        result.sizes.add(bytes);
+                        result.fields += length != null ? length : 0;
+                        result.encodings.merge(encoding != null ? encoding.raw() : "unknown", 1L, Long::sum);
+                    }
+                }
+                Long dbSize = connection.serverCommands().dbSize();
+                result.keys = dbSize != null ? dbSize : 0;
+                return result;
+            });
+
+            if (measured != null) {
+                sizes.addAll(measured.sizes);
+                measured.encodings.forEach((encoding, count) -> encodings.merge(encoding, count, Long::sum));
+                fields += measured.fields;
+                keys += measured.keys;
+            }
+        }
+
+        if (sizes.isEmpty()) {
+            return StateMemoryReport.builder().encodings(encodings).keysInDatabase(keys).build();
+        }
+
+        Collections.sort(sizes);
+        long total = sizes.stream().mapToLong(Long::longValue).sum();
+
+        return StateMemoryReport.builder()
+                .sampled(sizes.size())
+                .averageBytes(total / sizes.size())
+                .p99Bytes(sizes.get(Math.min(sizes.size() - 1, (int) (sizes.size() * 0.99))))
+                .maxBytes(sizes.get(sizes.size() - 1))
+                .averageFields((double) fields / sizes.size())
+                .encodings(encodings)
+                .keysInDatabase(keys)
+                .build();
+    }
+
+    /**
+     * MEMORY USAGE through the native Lettuce connection (Spring Data has no command for it)
+     */
+    @SuppressWarnings("unchecked")
+    private static Long memoryUsage(RedisConnection connection, byte[] key) {
+        if (!(connection.getNativeConnection() instanceof RedisServerAsyncCommands<?, ?> commands)) {
+            throw new IllegalStateException("Memory report needs a Lettuce connection");
+        }
+        return LettuceFutures.awaitOrCancel(
+                ((RedisServerAsyncCommands<byte[], byte[]>) commands).memoryUsage(key), 2, TimeUnit.SECONDS);
+    }
+
+    private static class Sample {
+        final List<Long> sizes = new ArrayList<>();
+        final Map<String, Long> encodings = new TreeMap<>();
+        long fields;
+        long keys;
+    }
+}
@@ -0,0 +1,86 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Token bucket: refills to capacity once per refill interval.
+ * State: tokens (t), lastRefill (r, ms)
+ */
+@Component
+public class TokenBucketAlgorithm implements RateLimitAlgorithm {
+
+    private static final String LUA_BODY = """
+            local capacity = tonumber(ARGV[la])
+            local refillInterval = tonumber(ARGV[la + 1])
+            local bucket = redis.call("HMGET", KEYS[1], "t", "r")
+            local tokens = tonumber(bucket[1])
+            local lastRefill = tonumber(bucket[2])
+
+            if tokens == nil or lastRefill == nil or now - lastRefill >= refillInterval then
+                tokens = capacity
+                lastRefill = now
+            end
+
+            reset = lastRefill + refillInterval
+
+            if tokens > 0 then
+                tokens = tokens - 1
+                -- Both fields in one write; the state is only needed until the next refill
+                redis.call("HSET", KEYS[1], "t", tokens, "r", lastRefill)
+                keep = math.max(keep, reset - now)
+                allowed = true
+                remaining = tokens
+            else
+                retryMs = reset - now
+            end
+            """;
+
+    @Override
+    public RateLimitStrategy strategy() {
+        return RateLimitStrategy.TOKEN_BUCKET;
+    }
+
+    @Override
+    public String luaBody() {
+        return LUA_BODY;
+    }
+
+    @Override
+    public List<String> redisFields() {
+        return List.of(RedisKeys.F_TOKENS, RedisKeys.F_LAST_REFILL);
+    }
+
+    @Override
+    public List<Object> luaArgs(RateLimitConfig config) {
+        return List.of(config.getCapacity(), config.getRefillIntervalMs());
+    }
+
+    @Override
+    public int stateSize() {
+        return 2;
+    }
+
+    @Override
+    public LimiterOutcome evaluate(long[] state, long nowMicros, RateLimitConfig config) {
+        long now = nowMicros / 1000;
+        long tokens = state[0];
+        long lastRefill = state[1];
+
+        if (lastRefill == 0 || now - lastRefill >= config.getRefillIntervalMs()) {
+            tokens = config.getCapacity();
+            lastRefill = now;
+        }
+
+        long reset = lastRefill + config.getRefillIntervalMs();
+
+        if (tokens > 0) {
+            state[0] = tokens - 1;
+            state[1] = lastRefill;
+            return new LimiterOutcome(true, tokens - 1, reset, 0);
+        }
+
+        return new LimiterOutcome(false, 0, reset, reset - now);
+    }
+}
@@ -0,0 +1,403 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distributed token leasing for hot identifiers.
+ *
+ * Instead of one Redis call per request, a node takes a batch of tokens
+ * from the central token bucket (same t/r fields of the state hash) and spends them
+ * locally. The batch size follows the identifier's observed rate on this
+ * node, capped at a fraction of capacity.
+ *
+ * Tokens are removed from the central bucket before they are spent, so a
+ * refill window never admits more than capacity. A lease dies when the
+ * central window refills; unused tokens are handed back when the identifier
+ * goes idle (or on shutdown), otherwise they simply expire with the window.
+ * Outstanding leased tokens are exported as a gauge - that is the most a
+ * node can over-admit if its estimate of the Redis clock is off.
+ *
+ * GuardDecisionService leases for eligible identifiers on the REDIS store,
+ * inside the Redis circuit breaker; lease calls go through
+ * RedisBatchDispatcher like the guard script. Rejections still go through the
+ * guard script but never record a violation: the central bucket may only look
+ * empty because other nodes hold leases. Leased admits skip the Redis ban
+ * check and rely on BanNearCache.
+ *
+ * X-RateLimit-Remaining on a leased admit is this node's unspent lease plus
+ * the central balance seen at its last renewal - spending by other nodes since
+ * then isn't reflected.
+ */
+@Slf4j
+@Component
+public class TokenLeaseManager {
+
+    private static final long EXHAUSTED_RECHECK_MS = 1000; // Other nodes may return tokens
+    private static final long RETIRE_AFTER_MS = 60_000;
+
+    @Autowired
+    private RedisBatchDispatcher redisBatchDispatcher;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${ratelimit.lease.enabled:true}")
+    private boolean enabled;
+
+    // Only identifiers at or above this capacity lease (smaller ones go straight to Redis)
+    @Value("${ratelimit.lease.min-capacity:1000}")
+    private long minCapacity;
+
+    // A lease should last about this long at the observed rate
+    @Value("${ratelimit.lease.target-ms:2000}")
+    private long leaseTargetMs;
+
+    // Upper bound on one lease, as a fraction of bucket capacity
+    @Value("${ratelimit.lease.max-fraction:0.1}")
+    private double maxFraction;
+
+    // Unused tokens are returned once the identifier has been idle this long
+    @Value("${ratelimit.lease.idle-return-ms:5000}")
+    private long idleReturnMs;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> leaseScript;
+    private final DefaultRedisScript<Long> returnScript;
+
+    public TokenLeaseManager() {
+        // Take up to ARGV[3] tokens from the bucket (refilling it first if due)
+        // Returns {granted, lastRefill (ms), now (ms), tokens left in the bucket}
+        leaseScript = new DefaultRedisScript<>();
+        leaseScript.setResultType(List.class);
+        leaseScript.setScriptText("""
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local capacity = tonumber(ARGV[1])
+            local refillInterval = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local bucket = redis.call("HMGET", KEYS[1], "t", "r")
+            local tokens = tonumber(bucket[1])
+            local lastRefill = tonumber(bucket[2])
+
+            if tokens == nil or lastRefill == nil or now - lastRefill >= refillInterval then
+                tokens = capacity
+                lastRefill = now
+            end
+
+            local granted = math.min(tokens, requested)
+            redis.call("HSET", KEYS[1], "t", tokens - granted, "r", lastRefill)
+
+            local keep = lastRefill + refillInterval - now
+            """ + RedisKeys.KEEP_TTL + """
+            return {granted, lastRefill, now, tokens - granted}
+        """);
+
+        // Give unused tokens back, but only to the window they were leased from
+        returnScript = new DefaultRedisScript<>();
+        returnScript.setResultType(Long.class);
+        returnScript.setScriptText("""
+            local returned = tonumber(ARGV[1])
+            local leaseWindow = tonumber(ARGV[2])
+            local capacity = tonumber(ARGV[3])
+
+            local bucket = redis.call("HMGET", KEYS[1], "t", "r")
+            if tonumber(bucket[2]) ~= leaseWindow then
+                return 0
+            end
+
+            -- Same window, so the hash TTL already outlives it
+            local tokens = tonumber(bucket[1]) or 0
+            local restored = math.min(capacity, tokens + returned)
+            redis.call("HSET", KEYS[1], "t", restored)
+            return restored - tokens
+        """);
+    }
+
+    /**
+     * Whether an identifier with this config is worth leasing for: a large
+     * token bucket with nothing else to charge (quota windows and parent
+     * levels still need the full guard script on every request)
+     */
+    public boolean isEligible(RateLimitConfig config) {
+        return enabled
+                && config.getCapacity() >= minCapacity
+                && config.getStrategy() == RateLimitStrategy.TOKEN_BUCKET
+                && config.getLevels().isEmpty()
+                && config.quotaLimits().isEmpty();
+    }
+
+    /**
+     * Take one token from the local lease, without I/O.
+     * Null = no usable lease; try tryLease next.
+     */
+    public GuardDecision trySpend(String identifier, RateLimitConfig config) {
+        for (;;) {
+            Lease lease = leases.computeIfAbsent(identifier, k -> new Lease());
+            synchronized (lease) {
+                if (lease.retired) {
+                    continue; // Swept concurrently - pick up the replacement
+                }
+
+                long now = System.currentTimeMillis();
+                lease.observe(now);
+
+                if (lease.tokens > 0 && now < lease.expiresAt) {
+                    lease.tokens--;
+                    metricsService.recordLeaseLocalAdmit();
+                    metricsService.addLeaseOutstanding(-1);
+                    return allowed(lease.tokens + lease.central, lease.expiresAt);
+                }
+                if (lease.tokens > 0) {
+                    expire(lease);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Lease a new batch from Redis and spend one token of it. Null = nothing
+     * granted, the central bucket was recently empty, or another thread is
+     * renewing this lease - the caller then goes through the guard script.
+     * The Redis call runs outside the lease's monitor, so concurrent
+     * requests on the identifier never wait for it.
+     */
+    public GuardDecision tryLease(String identifier, RateLimitConfig config) {
+        Lease lease = leases.computeIfAbsent(identifier, k -> new Lease());
+        long requested;
+        synchronized (lease) {
+            if (lease.retired || lease.renewing || System.currentTimeMillis() < lease.exhaustedUntil) {
+                return null;
+            }
+            lease.renewing = true;
+            requested = leaseSize(lease.rate, config);
+        }
+
+        List<?> result;
+        try {
+            result = redisBatchDispatcher.execute(
+                    leaseScript,
+                    keys(identifier),
+                    config.getCapacity(),
+                    config.getRefillIntervalMs(),
+                    requested
+            );
+            metricsService.recordLeaseRedisCall();
+        } finally {
+            synchronized (lease) {
+                lease.renewing = false;
+            }
+        }
+
+        if (result == null || result.size() < 4) {
+            // Throw so the breaker counts a bad call, like an empty guard script result
+            throw new IllegalStateException("Lease script returned no result for: " + identifier);
+        }
+
+        long granted = toLong(result.get(0));
+        long lastRefill = toLong(result.get(1));
+        long redisNow = toLong(result.get(2));
+        long central = toLong(result.get(3));
+
+        synchronized (lease) {
+            long now = System.currentTimeMillis();
+
+            // Leftovers of an older window (spent concurrently to zero, or expired)
+            if (lease.tokens > 0) {
+                expire(lease);
+            }
+
+            // Lease is valid until the central window refills, on the local clock
+            lease.window = lastRefill;
+            lease.expiresAt = lastRefill + config.getRefillIntervalMs() - (redisNow - now);
+            lease.capacity = config.getCapacity();
+            lease.central = central;
+
+            if (granted <= 0) {
+                lease.exhaustedUntil = Math.min(lease.expiresAt, now + EXHAUSTED_RECHECK_MS);
+                return null;
+            }
+
+            // One token is spent by this request
+            lease.tokens = granted - 1;
+            lease.exhaustedUntil = 0;
+            metricsService.addLeaseOutstanding(lease.tokens);
+            if (lease.retired) {
+                expire(lease); // Swept while the call was out - nobody would return them
+            }
+
+            log.debug("Leased {} tokens for {} (rate {}/s)", granted, identifier, Math.round(lease.rate));
+            return allowed(lease.tokens + lease.central, lease.expiresAt);
+        }
+    }
+
+    /**
+     * Drop the local lease (admin reset - central state is deleted separately)
+     */
+    public void discard(String identifier) {
+        Lease lease = leases.remove(identifier);
+        if (lease != null) {
+            synchronized (lease) {
+                lease.retired = true;
+                expire(lease);
+            }
+        }
+    }
+
+    /**
+     * Hand back tokens of idle leases and forget identifiers that went quiet
+     */
+    @Scheduled(fixedRateString = "${ratelimit.lease.idle-return-ms:5000}")
+    public void returnIdleLeases() {
+        long now = System.currentTimeMillis();
+
+        leases.forEach((identifier, lease) -> {
+            Returned returned = null;
+            synchronized (lease) {
+                if (now - lease.lastAccess < idleReturnMs) {
+                    return;
+                }
+                if (lease.tokens > 0) {
+                    if (now < lease.expiresAt) {
+                        returned = takeBack(lease);
+                    } else {
+                        expire(lease);
+                    }
+                }
+                if (now - lease.lastAccess >= RETIRE_AFTER_MS) {
+                    lease.retired = true;
+                    leases.remove(identifier, lease);
+                }
+            }
+            if (returned != null) {
+                giveBack(identifier, returned);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void returnAllLeases() {
+        long now = System.currentTimeMillis();
+        leases.forEach((identifier, lease) -> {
+            Returned returned = null;
+            synchronized (lease) {
+                if (lease.tokens > 0 && now < lease.expiresAt) {
+                    returned = takeBack(lease);
+                }
+            }
+            if (returned != null) {
+                giveBack(identifier, returned);
+            }
+        });
+    }
+
+    private static GuardDecision allowed(long remaining, long expiresAt) {
+        return GuardDecision.builder()
+                .decision(AuditDecision.ALLOW)
+                .remaining(remaining)
+                .resetEpochSeconds(expiresAt / 1000)
+                .build();
+    }
+
+    /**
+     * Enough tokens for leaseTargetMs at the observed rate (per second), within [1, capacity * maxFraction]
+     */
+    long leaseSize(double rate, RateLimitConfig config) {
+        long max = Math.max(1, (long) (config.getCapacity() * maxFraction));
+        long wanted = (long) Math.ceil(rate * leaseTargetMs / 1000.0);
+        return Math.max(1, Math.min(max, wanted));
+    }
+
+    /**
+     * Empty the lease under its monitor; the tokens are sent back outside it
+     */
+    private Returned takeBack(Lease lease) {
+        Returned returned = new Returned(lease.tokens, lease.window, lease.capacity);
+        metricsService.addLeaseOutstanding(-lease.tokens);
+        lease.tokens = 0;
+        return returned;
+    }
+
+    private void giveBack(String identifier, Returned returned) {
+        try {
+            Long restored = redisBatchDispatcher.execute(
+                    returnScript, keys(identifier), returned.tokens(), returned.window(), returned.capacity());
+            long accepted = restored != null ? restored : 0;
+            metricsService.recordLeaseTokensReturned(accepted);
+            metricsService.recordLeaseTokensExpired(returned.tokens() - accepted);
+        } catch (Exception e) {
+            log.warn("Failed to return leased tokens for {}: {}", identifier, e.getMessage());
+            metricsService.recordLeaseTokensExpired(returned.tokens());
+        }
+    }
+
+    private void expire(Lease lease) {
+        metricsService.recordLeaseTokensExpired(lease.tokens);
+        metricsService.addLeaseOutstanding(-lease.tokens);
+        lease.tokens = 0;
+    }
+
+    private List<String> keys(String identifier) {
+        return List.of(RedisKeys.state(identifier));
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+    }
+
+    private record Returned(long tokens, long window, long capacity) {
+    }
+
+    /**
+     * Tokens held by this node for one identifier, guarded by the object's monitor
+     */
+    private static class Lease {
+        long tokens;
+        long window;          // lastRefill of the central window the tokens came from
+        long expiresAt;       // Local time the central window refills
+        long capacity;
+        long central;         // Central bucket balance right after the last renewal
+        long exhaustedUntil;  // Central bucket was empty - don't ask again before this
+        long lastAccess;
+        boolean retired;
+        boolean renewing;     // A lease call is out - others go through the guard script meanwhile
+
+        // Observed request rate (EWMA over ~1s samples)
+        double rate;
+        long sampleStart;
+        long sampleCount;
+
+        void observe(long now) {
+            lastAccess = now;
+            if (sampleStart == 0) {
+                sampleStart = now;
+            }
+            sampleCount++;
+
+            long elapsed = now - sampleStart;
+            if (elapsed >= 1000) {
+                double current = sampleCount * 1000.0 / elapsed;
+                rate = rate == 0 ? current : rate * 0.7 + current * 0.3;
+                sampleStart = now;
+                sampleCount = 0;
+            }
+        }
+    }
+}
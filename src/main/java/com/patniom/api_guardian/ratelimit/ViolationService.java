@@ -2,9 +2,11 @@ package com.patniom.api_guardian.ratelimit;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.List;
 
 @Service
 public class ViolationService {
@@ -12,24 +14,46 @@ public class ViolationService {
     private static final int BAN_THRESHOLD = 5;
     private static final Duration WINDOW = Duration.ofMinutes(1);
 
-    private final String PREFIX = "violations:";
-
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
-    public int recordViolation(String identifier) {
-        String key = PREFIX + identifier;
-
-        Long count = redisTemplate.opsForValue().increment(key);
+    private final DefaultRedisScript<Long> strikeScript;
+
+    public ViolationService() {
+        // Counter + window end in the state hash; ARGV[1] = window (ms)
+        strikeScript = new DefaultRedisScript<>();
+        strikeScript.setResultType(Long.class);
+        strikeScript.setScriptText("""
+            if redis.replicate_commands then redis.replicate_commands() end
+
+            local time = redis.call("TIME")
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local counter = redis.call("HMGET", KEYS[1], "n", "nx")
+            local count = tonumber(counter[1]) or 0
+            local windowEnd = tonumber(counter[2]) or 0
+            if windowEnd <= now then
+                count = 0
+                windowEnd = now + tonumber(ARGV[1])
+            end
+            count = count + 1
+            redis.call("HSET", KEYS[1], "n", count, "nx", windowEnd)
+
+            local keep = windowEnd - now
+            """ + RedisKeys.KEEP_TTL + """
+            return count
+        """);
+    }
 
-        if (count == 1) {
-            redisTemplate.expire(key, WINDOW);
-        }
+    public int recordViolation(String identifier) {
+        Long count = redisTemplate.execute(
+                strikeScript, List.of(RedisKeys.state(identifier)), WINDOW.toMillis());
 
-        return count.intValue();
+        return count != null ? count.intValue() : 0;
     }
 
     public void reset(String identifier) {
-        redisTemplate.delete(PREFIX + identifier);
+        redisTemplate.opsForHash().delete(RedisKeys.state(identifier),
+                RedisKeys.F_STRIKES, RedisKeys.F_STRIKES_UNTIL);
     }
 }
@@ -0,0 +1,59 @@
+package com.patniom.api_guardian.security.apikey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable view of an active API key with just what authentication and
+ * rate limiting need - what ApiKeyCache holds and ApiKeyFilter exposes as
+ * the API_KEY_OBJ request attribute.
+ */
+public record ApiKeyAuth(
+        String id,
+        String keyValue,                  // SHA-256 of the raw key
+        String userId,
+        ApiKey.RateLimitTier tier,
+        Long requestsPerMinute,           // Per-key overrides (null = tier default)
+        Long requestsPerHour,
+        Long requestsPerDay,
+        Long requestsPerMonth,
+        LocalDateTime expiresAt,
+        Set<String> allowedIpAddresses,   // null = any IP
+        List<String> allowedEndpoints) {  // Prefixes, "*" stripped; null = any endpoint
+
+    public static ApiKeyAuth from(ApiKey apiKey) {
+        boolean whitelist = apiKey.isIpWhitelistEnabled()
+                && apiKey.getAllowedIpAddresses() != null
+                && !apiKey.getAllowedIpAddresses().isEmpty();
+
+        List<String> endpoints = apiKey.getAllowedEndpoints() == null || apiKey.getAllowedEndpoints().isEmpty()
+                ? null
+                : apiKey.getAllowedEndpoints().stream().map(pattern -> pattern.replace("*", "")).toList();
+
+        return new ApiKeyAuth(
+                apiKey.getId(),
+                apiKey.getKeyValue(),
+                apiKey.getUserId(),
+                apiKey.getTier() != null ? apiKey.getTier() : ApiKey.RateLimitTier.FREE,
+                apiKey.getRequestsPerMinute(),
+                apiKey.getRequestsPerHour(),
+                apiKey.getRequestsPerDay(),
+                apiKey.getRequestsPerMonth(),
+                apiKey.getExpiresAt(),
+                whitelist ? Set.copyOf(apiKey.getAllowedIpAddresses()) : null,
+                endpoints);
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(LocalDateTime.now());
+    }
+
+    public boolean isIpAllowed(String ipAddress) {
+        return allowedIpAddresses == null || allowedIpAddresses.contains(ipAddress);
+    }
+
+    public boolean isEndpointAllowed(String endpoint) {
+        return allowedEndpoints == null || allowedEndpoints.stream().anyMatch(endpoint::startsWith);
+    }
+}
@@ -0,0 +1,223 @@
+package com.patniom.api_guardian.security.apikey;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process cache of API key lookups by key hash, so authenticating a
+ * known key costs no Mongo call.
+ *
+ * Existing keys are cached as an ApiKeyAuth view (null while the key is not
+ * ACTIVE) for ttl-ms; hashes with no key at all are cached for
+ * negative-ttl-ms, so a client retrying a bad key doesn't reach Mongo
+ * either. Concurrent misses on one hash share a single load; a caller that
+ * waited load-wait-ms on it without a result loads the key itself.
+ *
+ * Key changes made through ApiKeyService are published on
+ * apikey.cache.channel and evicted on every node, including the publisher;
+ * ApiKeyChangeWatcher evicts on changes made directly in Mongo. A load that
+ * races with an eviction is not cached.
+ */
+@Slf4j
+@Component
+public class ApiKeyCache implements MessageListener {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${apikey.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${apikey.cache.channel:apikeys:invalidate}")
+    private String channel;
+
+    @Value("${apikey.cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${apikey.cache.negative-ttl-ms:10000}")
+    private long negativeTtlMs;
+
+    // Longest a coalesced caller waits on another caller's load
+    @Value("${apikey.cache.load-wait-ms:2000}")
+    private long loadWaitMs;
+
+    // Per map; a full map is simply dropped
+    @Value("${apikey.cache.max-entries:100000}")
+    private int maxEntries;
+
+    private final Map<String, CachedKey> keys = new ConcurrentHashMap<>();     // hash -> key
+    private final Map<String, String> hashById = new ConcurrentHashMap<>();    // id -> hash
+    private final Map<String, Long> unknown = new ConcurrentHashMap<>();       // hash -> cached at (ms)
+    private final Map<String, CompletableFuture<CachedKey>> loading = new ConcurrentHashMap<>();
+
+    // Bumped by every eviction - loads that overlap one are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+            log.info("API key cache subscribed to {}", channel);
+        }
+    }
+
+    /**
+     * Auth view of the key with this hash, or null if there is no such key or
+     * it is not ACTIVE. loader runs only on a miss and returns the stored key
+     * (null = none).
+     */
+    public ApiKeyAuth get(String keyHash, Function<String, ApiKey> loader) {
+        if (!enabled) {
+            return toCached(loader.apply(keyHash), 0).auth();
+        }
+
+        long now = System.currentTimeMillis();
+        CachedKey cached = keys.get(keyHash);
+        if (cached != null && now - cached.loadedAt() <= ttlMs) {
+            metricsService.recordApiKeyCache("hit");
+            return cached.auth();
+        }
+        Long cachedAt = unknown.get(keyHash);
+        if (cachedAt != null && now - cachedAt <= negativeTtlMs) {
+            metricsService.recordApiKeyCache("unknown");
+            return null;
+        }
+
+        // Single flight: a burst on a cold key waits on the first caller's load
+        CompletableFuture<CachedKey> load = new CompletableFuture<>();
+        CompletableFuture<CachedKey> inFlight = loading.putIfAbsent(keyHash, load);
+        if (inFlight != null) {
+            metricsService.recordApiKeyCache("coalesced");
+            try {
+                return inFlight.get(loadWaitMs, TimeUnit.MILLISECONDS).auth();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+            } catch (TimeoutException e) {
+                // The first load is stuck (slow Mongo) - don't queue the whole burst behind it
+                metricsService.recordApiKeyCache("coalesced-timeout");
+                log.warn("API key load still running after {}ms, loading again", loadWaitMs);
+                return load(keyHash, loader, now).auth();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for API key load", e);
+            }
+        }
+
+        metricsService.recordApiKeyCache("miss");
+        try {
+            CachedKey loaded = load(keyHash, loader, now);
+            load.complete(loaded);
+            return loaded.auth();
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(keyHash, load);
+        }
+    }
+
+    private CachedKey load(String keyHash, Function<String, ApiKey> loader, long now) {
+        long seen = generation.get();
+        CachedKey loaded = toCached(loader.apply(keyHash), now);
+        if (generation.get() == seen) {
+            store(keyHash, loaded, now);
+        }
+        return loaded;
+    }
+
+    /**
+     * Evict the key on every node (call after changing it)
+     */
+    public void invalidate(String apiKeyId) {
+        if (!enabled) {
+            return;
+        }
+        evict(apiKeyId); // Don't wait for the round trip on this node
+        try {
+            redisTemplate.convertAndSend(channel, apiKeyId);
+        } catch (Exception e) {
+            log.error("Failed to publish API key invalidation {}: {}", apiKeyId, e.getMessage());
+        }
+    }
+
+    /**
+     * Evict the key on this node only
+     */
+    public void evict(String apiKeyId) {
+        generation.incrementAndGet();
+        String hash = hashById.remove(apiKeyId);
+        if (hash != null) {
+            keys.remove(hash);
+        }
+    }
+
+    /**
+     * Forget a cached "no such key" answer for this hash on this node (key just created)
+     */
+    public void evictUnknown(String keyHash) {
+        generation.incrementAndGet();
+        unknown.remove(keyHash);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object apiKeyId = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (apiKeyId != null) {
+            evict(apiKeyId.toString());
+        }
+    }
+
+    private void store(String keyHash, CachedKey cached, long now) {
+        if (cached.id() == null) {
+            if (unknown.size() >= maxEntries) {
+                unknown.clear();
+            }
+            unknown.put(keyHash, now);
+            return;
+        }
+
+        if (keys.size() >= maxEntries) {
+            keys.clear();
+            hashById.clear();
+        }
+        keys.put(keyHash, cached);
+        hashById.put(cached.id(), keyHash);
+        unknown.remove(keyHash);
+    }
+
+    private static CachedKey toCached(ApiKey apiKey, long now) {
+        if (apiKey == null) {
+            return new CachedKey(null, null, now);
+        }
+        boolean usable = apiKey.getStatus() == ApiKey.ApiKeyStatus.ACTIVE && !apiKey.isDeleted();
+        return new CachedKey(apiKey.getId(), usable ? ApiKeyAuth.from(apiKey) : null, now);
+    }
+
+    private record CachedKey(String id, ApiKeyAuth auth, long loadedAt) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.patniom.api_guardian.security.apikey;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Evicts ApiKeyCache entries for keys changed in Mongo by anything other
+ * than ApiKeyService (admin scripts, other services), by following a change
+ * stream on the api_keys collection. Every node watches on its own, so
+ * evictions are local.
+ *
+ * Updates that only touch usage bookkeeping (lastUsedAt, request counters)
+ * are ignored - they don't change authentication and would otherwise evict
+ * busy keys constantly. Change streams need a replica set; on a standalone
+ * server the watcher stops and cached keys rely on pub/sub invalidation and
+ * the cache TTL.
+ */
+@Slf4j
+@Component
+public class ApiKeyChangeWatcher {
+
+    private static final Set<String> USAGE_FIELDS =
+            Set.of("lastUsedAt", "totalRequests", "successfulRequests", "failedRequests");
+
+    private static final int NOT_A_REPLICA_SET = 40573;
+    private static final int HISTORY_LOST = 286;
+    private static final long RETRY_DELAY_MS = 5000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApiKeyCache apiKeyCache;
+
+    @Value("${apikey.cache.change-stream.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean running;
+    private volatile MongoCursor<ChangeStreamDocument<Document>> cursor;
+    private BsonDocument resumeToken;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::watch, "api-key-change-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        MongoCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void watch() {
+        String collection = mongoTemplate.getCollectionName(ApiKey.class);
+        while (running) {
+            try {
+                var stream = mongoTemplate.getCollection(collection).watch();
+                if (resumeToken != null) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+                cursor = stream.iterator();
+                log.info("🔑 Watching {} for API key changes", collection);
+
+                while (running && cursor.hasNext()) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    resumeToken = change.getResumeToken();
+                    apply(change);
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == NOT_A_REPLICA_SET) {
+                    log.info("API key change stream unavailable (Mongo is not a replica set); "
+                            + "cache relies on pub/sub invalidation and TTL");
+                    return;
+                }
+                if (e.getErrorCode() == HISTORY_LOST) {
+                    resumeToken = null; // Missed changes age out of the cache within ttl-ms
+                }
+                retryLater(e);
+            } catch (Exception e) {
+                retryLater(e);
+            }
+        }
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT -> {
+                Document created = change.getFullDocument();
+                if (created != null && created.getString("keyValue") != null) {
+                    apiKeyCache.evictUnknown(created.getString("keyValue"));
+                }
+            }
+            case UPDATE -> {
+                if (!usageOnly(change.getUpdateDescription())) {
+                    evict(change.getDocumentKey());
+                }
+            }
+            case REPLACE, DELETE -> evict(change.getDocumentKey());
+            default -> {
+                // drop / rename / invalidate: nothing cached refers to them
+            }
+        }
+    }
+
+    private static boolean usageOnly(UpdateDescription update) {
+        if (update == null || update.getUpdatedFields() == null) {
+            return false;
+        }
+        boolean removed = update.getRemovedFields() != null && !update.getRemovedFields().isEmpty();
+        return !removed && USAGE_FIELDS.containsAll(update.getUpdatedFields().keySet());
+    }
+
+    private void evict(BsonDocument documentKey) {
+        if (documentKey == null) {
+            return;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id != null) {
+            apiKeyCache.evict(id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                    : id.isString() ? id.asString().getValue() : id.toString());
+        }
+    }
+
+    private void retryLater(Exception e) {
+        if (!running) {
+            return;
+        }
+        log.warn("API key change stream interrupted, retrying in {}ms: {}", RETRY_DELAY_MS, e.getMessage());
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
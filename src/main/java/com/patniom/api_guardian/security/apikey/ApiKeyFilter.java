@@ -35,7 +35,7 @@ public class ApiKeyFilter extends OncePerRequestFilter {
         }
 
         // Validate API key
-        Optional<ApiKey> apiKeyOpt = apiKeyService.validateApiKey(apiKeyHeader);
+        Optional<ApiKeyAuth> apiKeyOpt = apiKeyService.validateApiKey(apiKeyHeader);
 
         if (apiKeyOpt.isEmpty()) {
             log.warn("Invalid API key attempted from IP: {}",
@@ -53,13 +53,13 @@ public class ApiKeyFilter extends OncePerRequestFilter {
             return;
         }
 
-        ApiKey apiKey = apiKeyOpt.get();
+        ApiKeyAuth apiKey = apiKeyOpt.get();
 
         // IP Whitelist Check
         String clientIp = ClientIpUtil.getClientIp(request);
         if (!apiKey.isIpAllowed(clientIp)) {
             log.warn("IP not whitelisted. API Key: {}, IP: {}",
-                    apiKey.getId(), clientIp);
+                    apiKey.id(), clientIp);
 
             request.setAttribute("AUDIT_DECISION", "IP_NOT_WHITELISTED");
             response.setStatus(403);
@@ -77,7 +77,7 @@ public class ApiKeyFilter extends OncePerRequestFilter {
         String requestURI = request.getRequestURI();
         if (!apiKey.isEndpointAllowed(requestURI)) {
             log.warn("Endpoint not allowed. API Key: {}, Endpoint: {}",
-                    apiKey.getId(), requestURI);
+                    apiKey.id(), requestURI);
 
             request.setAttribute("AUDIT_DECISION", "ENDPOINT_NOT_ALLOWED");
             response.setStatus(403);
@@ -92,18 +92,18 @@ public class ApiKeyFilter extends OncePerRequestFilter {
         }
 
         // Store API key details in request attributes for downstream filters
-        request.setAttribute("API_KEY", apiKey.getKeyValue());
-        request.setAttribute("API_KEY_ID", apiKey.getId());
-        request.setAttribute("API_KEY_USER_ID", apiKey.getUserId());
-        request.setAttribute("API_KEY_TIER", apiKey.getTier());
+        request.setAttribute("API_KEY", apiKey.keyValue());
+        request.setAttribute("API_KEY_ID", apiKey.id());
+        request.setAttribute("API_KEY_USER_ID", apiKey.userId());
+        request.setAttribute("API_KEY_TIER", apiKey.tier());
         request.setAttribute("API_KEY_OBJ", apiKey);
 
         // Add custom headers for backend services
-        request.setAttribute("X-User-Id", apiKey.getUserId());
-        request.setAttribute("X-Rate-Limit-Tier", apiKey.getTier().name());
+        request.setAttribute("X-User-Id", apiKey.userId());
+        request.setAttribute("X-Rate-Limit-Tier", apiKey.tier().name());
 
         log.debug("API key validated successfully. User: {}, Tier: {}",
-                apiKey.getUserId(), apiKey.getTier());
+                apiKey.userId(), apiKey.tier());
 
         filterChain.doFilter(request, response);
     }
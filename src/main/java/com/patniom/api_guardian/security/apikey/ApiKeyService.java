@@ -1,9 +1,15 @@
 package com.patniom.api_guardian.security.apikey;
 
+import com.patniom.api_guardian.ratelimit.QuotaWindow;
+import com.patniom.api_guardian.ratelimit.RateLimiterService;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
@@ -23,6 +29,18 @@ public class ApiKeyService {
     @Autowired
     private ApiKeyRepository apiKeyRepository;
 
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+    @Autowired
+    private ApiKeyCache apiKeyCache;
+
+    @Autowired
+    private LastUsedTracker lastUsedTracker;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     /**
      * Generate a new API key for a user
      */
@@ -61,104 +79,106 @@ public class ApiKeyService {
 
 
     /**
-     * Validate API key and return details
+     * Validate API key and return details (served from ApiKeyCache; Mongo is
+     * only read on a cache miss)
      */
-    public Optional<ApiKey> validateApiKey(String rawKey) {
+    public Optional<ApiKeyAuth> validateApiKey(String rawKey) {
         String hashedKey = hashApiKey(rawKey);
-        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findByKeyValue(hashedKey);
-
-        if (apiKeyOpt.isEmpty()) {
-            log.warn("API key not found: {}", rawKey.substring(0, 10) + "...");
-            return Optional.empty();
-        }
+        ApiKeyAuth apiKey = apiKeyCache.get(hashedKey, hash -> loadApiKey(hash, rawKey));
 
-        ApiKey apiKey = apiKeyOpt.get();
-
-        // Check if key is active
-        if (!apiKey.isActive()) {
-            log.warn("API key is not active: {}, status: {}",
-                    apiKey.getId(), apiKey.getStatus());
+        if (apiKey == null) {
             return Optional.empty();
         }
 
         // Check expiration
         if (apiKey.isExpired()) {
             log.warn("API key expired: {}, expired at: {}",
-                    apiKey.getId(), apiKey.getExpiresAt());
-            apiKey.setStatus(ApiKey.ApiKeyStatus.EXPIRED);
-            apiKeyRepository.save(apiKey);
+                    apiKey.id(), apiKey.expiresAt());
+            lastUsedTracker.recordExpired(apiKey.id()); // The cached view keeps rejecting it meanwhile
             return Optional.empty();
         }
 
-        // Update last used timestamp
-        apiKey.setLastUsedAt(LocalDateTime.now());
-        apiKeyRepository.save(apiKey);
+        // Update last used timestamp (written behind, one update per key per flush)
+        lastUsedTracker.recordUse(apiKey.id());
 
         return Optional.of(apiKey);
     }
 
+    private ApiKey loadApiKey(String hashedKey, String rawKey) {
+        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findByKeyValue(hashedKey);
+
+        if (apiKeyOpt.isEmpty()) {
+            log.warn("API key not found: {}", rawKey.substring(0, Math.min(10, rawKey.length())) + "...");
+            return null;
+        }
+
+        ApiKey apiKey = apiKeyOpt.get();
+        if (apiKey.getStatus() != ApiKey.ApiKeyStatus.ACTIVE || apiKey.isDeleted()) {
+            log.warn("API key is not active: {}, status: {}",
+                    apiKey.getId(), apiKey.getStatus());
+        }
+        return apiKey;
+    }
+
+
     /**
-     * Check if request is within quota limits
+     * Check if an API key is within its quota for a window (hour/day/month).
+     * Reads the sliding window counters charged by the rate limiting filter;
+     * the per-minute limit is enforced by the burst limiter on every request.
      */
     public boolean isWithinQuota(ApiKey apiKey, String timeWindow) {
-        LocalDateTime now = LocalDateTime.now();
-
-        switch (timeWindow.toLowerCase()) {
-            case "minute":
-                if (apiKey.getMinuteResetAt() == null ||
-                        apiKey.getMinuteResetAt().isBefore(now)) {
-                    apiKey.setMinuteResetAt(now.plusMinutes(1));
-                    return true;
-                }
-                return apiKey.getTotalRequests() < apiKey.getRequestsPerMinute();
-
-            case "hour":
-                if (apiKey.getHourResetAt() == null ||
-                        apiKey.getHourResetAt().isBefore(now)) {
-                    apiKey.setHourResetAt(now.plusHours(1));
-                    return true;
-                }
-                return apiKey.getTotalRequests() < apiKey.getRequestsPerHour();
-
-            case "day":
-                if (apiKey.getDayResetAt() == null ||
-                        apiKey.getDayResetAt().isBefore(now)) {
-                    apiKey.setDayResetAt(now.plusDays(1));
-                    return true;
-                }
-                return apiKey.getTotalRequests() < apiKey.getRequestsPerDay();
-
-            default:
-                return true;
+        QuotaWindow window;
+        try {
+            window = QuotaWindow.valueOf(timeWindow.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return true;
         }
+
+        Long limit = quotaLimit(apiKey, window);
+        if (limit == null || window == QuotaWindow.MINUTE) {
+            return true;
+        }
+
+        long used = rateLimiterService.getCurrentRequestCount(
+                "KEY:" + apiKey.getId(), window.getSeconds());
+        return used < limit;
+    }
+
+    private Long quotaLimit(ApiKey apiKey, QuotaWindow window) {
+        ApiKey.RateLimitTier tier = apiKey.getTier() != null
+                ? apiKey.getTier()
+                : ApiKey.RateLimitTier.FREE;
+
+        return switch (window) {
+            case SECOND -> null;
+            case MINUTE -> apiKey.getRequestsPerMinute() != null
+                    ? apiKey.getRequestsPerMinute() : tier.getRequestsPerMinute();
+            case HOUR -> apiKey.getRequestsPerHour() != null
+                    ? apiKey.getRequestsPerHour() : tier.getRequestsPerHour();
+            case DAY -> apiKey.getRequestsPerDay() != null
+                    ? apiKey.getRequestsPerDay() : tier.getRequestsPerDay();
+            case MONTH -> apiKey.getRequestsPerMonth() != null
+                    ? apiKey.getRequestsPerMonth() : tier.getRequestsPerMonth();
+        };
     }
 
     /**
      * Increment usage counter
      */
     public void incrementUsage(ApiKey apiKey, boolean success) {
-        apiKey.setTotalRequests(apiKey.getTotalRequests() + 1);
-
-        if (success) {
-            apiKey.setSuccessfulRequests(apiKey.getSuccessfulRequests() + 1);
-        } else {
-            apiKey.setFailedRequests(apiKey.getFailedRequests() + 1);
-        }
-
-        apiKeyRepository.save(apiKey);
+        updateKey(apiKey.getId(), new Update()
+                .inc("totalRequests", 1)
+                .inc(success ? "successfulRequests" : "failedRequests", 1));
     }
 
     /**
      * Revoke an API key
      */
     public void revokeApiKey(String apiKeyId) {
-        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findById(apiKeyId);
-
-        if (apiKeyOpt.isPresent()) {
-            ApiKey apiKey = apiKeyOpt.get();
-            apiKey.setStatus(ApiKey.ApiKeyStatus.REVOKED);
-            apiKey.setRevokedAt(LocalDateTime.now());
-            apiKeyRepository.save(apiKey);
+        if (updateKey(apiKeyId, new Update()
+                .set("status", ApiKey.ApiKeyStatus.REVOKED)
+                .set("revokedAt", LocalDateTime.now()))) {
+            apiKeyCache.invalidate(apiKeyId);
 
             log.info("Revoked API key: {}", apiKeyId);
         }
@@ -168,12 +188,8 @@ public class ApiKeyService {
      * Suspend an API key temporarily
      */
     public void suspendApiKey(String apiKeyId) {
-        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findById(apiKeyId);
-
-        if (apiKeyOpt.isPresent()) {
-            ApiKey apiKey = apiKeyOpt.get();
-            apiKey.setStatus(ApiKey.ApiKeyStatus.SUSPENDED);
-            apiKeyRepository.save(apiKey);
+        if (updateKey(apiKeyId, new Update().set("status", ApiKey.ApiKeyStatus.SUSPENDED))) {
+            apiKeyCache.invalidate(apiKeyId);
 
             log.info("Suspended API key: {}", apiKeyId);
         }
@@ -183,16 +199,16 @@ public class ApiKeyService {
      * Reactivate a suspended key
      */
     public void reactivateApiKey(String apiKeyId) {
-        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findById(apiKeyId);
+        long reactivated = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(apiKeyId)
+                        .and("status").is(ApiKey.ApiKeyStatus.SUSPENDED)),
+                new Update().set("status", ApiKey.ApiKeyStatus.ACTIVE),
+                ApiKey.class).getMatchedCount();
 
-        if (apiKeyOpt.isPresent()) {
-            ApiKey apiKey = apiKeyOpt.get();
-            if (apiKey.getStatus() == ApiKey.ApiKeyStatus.SUSPENDED) {
-                apiKey.setStatus(ApiKey.ApiKeyStatus.ACTIVE);
-                apiKeyRepository.save(apiKey);
+        if (reactivated > 0) {
+            apiKeyCache.invalidate(apiKeyId);
 
-                log.info("Reactivated API key: {}", apiKeyId);
-            }
+            log.info("Reactivated API key: {}", apiKeyId);
         }
     }
 
@@ -203,21 +219,25 @@ public class ApiKeyService {
         return apiKeyRepository.findActiveKeysByUserId(userId);
     }
 
+    /**
+     * Get one of the user's keys (empty if it doesn't exist or belongs to someone else)
+     */
+    public Optional<ApiKey> getUserApiKey(String userId, String apiKeyId) {
+        return apiKeyRepository.findById(apiKeyId)
+                .filter(apiKey -> userId.equals(apiKey.getUserId()) && !apiKey.isDeleted());
+    }
+
     /**
      * Upgrade tier
      */
     public void upgradeTier(String apiKeyId, ApiKey.RateLimitTier newTier) {
-        Optional<ApiKey> apiKeyOpt = apiKeyRepository.findById(apiKeyId);
-
-        if (apiKeyOpt.isPresent()) {
-            ApiKey apiKey = apiKeyOpt.get();
-            apiKey.setTier(newTier);
-            apiKey.setRequestsPerMinute(newTier.getRequestsPerMinute());
-            apiKey.setRequestsPerHour(newTier.getRequestsPerHour());
-            apiKey.setRequestsPerDay(newTier.getRequestsPerDay());
-            apiKey.setRequestsPerMonth(newTier.getRequestsPerMonth());
-
-            apiKeyRepository.save(apiKey);
+        if (updateKey(apiKeyId, new Update()
+                .set("tier", newTier)
+                .set("requestsPerMinute", newTier.getRequestsPerMinute())
+                .set("requestsPerHour", newTier.getRequestsPerHour())
+                .set("requestsPerDay", newTier.getRequestsPerDay())
+                .set("requestsPerMonth", newTier.getRequestsPerMonth()))) {
+            apiKeyCache.invalidate(apiKeyId);
             log.info("Upgraded API key {} to tier: {}", apiKeyId, newTier);
         }
     }
@@ -226,20 +246,28 @@ public class ApiKeyService {
      * Clean up expired keys (run as scheduled job)
      */
     public int cleanupExpiredKeys() {
-        List<ApiKey> expiredKeys = apiKeyRepository
-                .findExpiredKeys(LocalDateTime.now());
-
-        expiredKeys.forEach(key -> {
-            key.setStatus(ApiKey.ApiKeyStatus.EXPIRED);
-            apiKeyRepository.save(key);
-        });
-
-        log.info("Marked {} expired keys", expiredKeys.size());
-        return expiredKeys.size();
+        // One multi-update; cached views already reject keys past expiresAt
+        long marked = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("expiresAt").lt(LocalDateTime.now())
+                        .and("status").is(ApiKey.ApiKeyStatus.ACTIVE)),
+                new Update().set("status", ApiKey.ApiKeyStatus.EXPIRED),
+                ApiKey.class).getModifiedCount();
+
+        log.info("Marked {} expired keys", marked);
+        return (int) marked;
     }
 
     // ========== Helper Methods ==========
 
+    /**
+     * Field-level update of one key - never rewrites the usage counters the
+     * Kafka consumer increments concurrently. False if the key doesn't exist.
+     */
+    private boolean updateKey(String apiKeyId, Update update) {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(apiKeyId)),
+                update, ApiKey.class).getMatchedCount() > 0;
+    }
+
     private String generateSecureKey() {
         byte[] randomBytes = new byte[KEY_LENGTH];
         SECURE_RANDOM.nextBytes(randomBytes);
@@ -0,0 +1,124 @@
+package com.patniom.api_guardian.security.apikey;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind for API key bookkeeping that doesn't need to be exact:
+ * lastUsedAt and ACTIVE -> EXPIRED transitions.
+ *
+ * The request path only records into in-memory maps; every flush-ms all
+ * pending changes go to Mongo as one unordered bulk write - at most one
+ * update per key per flush, whatever the request rate. lastUsedAt uses
+ * $max, so flushes from several nodes (or out of order) never move it
+ * back; expiry only applies to keys that are still ACTIVE. A failed flush
+ * keeps its changes for the next one.
+ */
+@Slf4j
+@Component
+public class LastUsedTracker {
+
+    // Uses closer together than this don't touch the map again
+    private static final long RESOLUTION_MS = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Value("${apikey.last-used.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();   // key id -> epoch ms
+    private final Set<String> expired = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Note a use of the key (hot path: usually one map read)
+     */
+    public void recordUse(String apiKeyId) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long seen = lastUsed.get(apiKeyId);
+        if (seen == null || now - seen >= RESOLUTION_MS) {
+            lastUsed.merge(apiKeyId, now, Math::max);
+        }
+    }
+
+    /**
+     * Queue the ACTIVE -> EXPIRED transition of a key found past its expiry
+     */
+    public void recordExpired(String apiKeyId) {
+        expired.add(apiKeyId);
+    }
+
+    @Scheduled(fixedDelayString = "${apikey.last-used.flush-ms:30000}")
+    public void flush() {
+        if (lastUsed.isEmpty() && expired.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> uses = new HashMap<>();
+        lastUsed.forEach((id, at) -> {
+            // A newer use recorded meanwhile stays queued for the next flush
+            if (lastUsed.remove(id, at)) {
+                uses.put(id, at);
+            }
+        });
+        List<String> expiring = new ArrayList<>();
+        for (String id : expired) {
+            if (expired.remove(id)) {
+                expiring.add(id);
+            }
+        }
+        if (uses.isEmpty() && expiring.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class);
+        uses.forEach((id, at) -> bulk.updateOne(
+                Query.query(Criteria.where("id").is(id)),
+                new Update().max("lastUsedAt",
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(at), ZoneId.systemDefault()))));
+        expiring.forEach(id -> bulk.updateOne(
+                Query.query(Criteria.where("id").is(id).and("status").is(ApiKey.ApiKeyStatus.ACTIVE)),
+                new Update().set("status", ApiKey.ApiKeyStatus.EXPIRED)));
+
+        try {
+            bulk.execute();
+            metricsService.recordApiKeyWriteBehind(uses.size() + expiring.size());
+            log.debug("Flushed last-used for {} key(s), {} expiry transition(s)", uses.size(), expiring.size());
+        } catch (Exception e) {
+            log.error("Failed to flush API key last-used updates: {}", e.getMessage());
+            uses.forEach((id, at) -> lastUsed.merge(id, at, Math::max));
+            expired.addAll(expiring);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
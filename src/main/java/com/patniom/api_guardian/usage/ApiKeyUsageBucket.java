@@ -0,0 +1,41 @@
+package com.patniom.api_guardian.usage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Requests of one API key in one time bucket. Written only with $inc
+ * upserts; _id is "<apiKeyId>:<granularity>:<bucket start ms>", so each
+ * bucket is one document however many nodes write to it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "api_key_usage")
+public class ApiKeyUsageBucket {
+
+    @Id
+    private String id;
+
+    private String apiKeyId;
+    private UsageGranularity granularity;
+    private Instant bucketStart;
+
+    private long totalRequests;
+    private long successfulRequests;
+    private long failedRequests;
+
+    // TTL index (expireAfterSeconds = 0): retention of the granularity
+    private Instant expireAt;
+
+    public static String id(String apiKeyId, UsageGranularity granularity, long bucketStartMs) {
+        return apiKeyId + ":" + granularity + ":" + bucketStartMs;
+    }
+}
@@ -0,0 +1,181 @@
+package com.patniom.api_guardian.usage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-key usage history in the api_key_usage collection, one document per
+ * key and bucket (ApiKeyUsageBucket).
+ *
+ * Minute counts from the usage stream are rolled up at write time: each
+ * flush upserts the minute, hour and day buckets it touches with $inc, in
+ * one unordered bulk write. Retention is per granularity (TTL index on
+ * expireAt), so old ranges are only kept downsampled: minutes for
+ * minute-retention-hours, hours for hour-retention-days, days for
+ * day-retention-days. A stats query reads the buckets of one granularity
+ * in its range - O(buckets), no aggregation over raw events.
+ *
+ * Mongo time-series collections are not used: they don't allow the $inc
+ * upserts that let every node add into the same bucket.
+ */
+@Slf4j
+@Service
+public class ApiKeyUsageStore {
+
+    // Longest range served at each granularity when the caller doesn't pick one
+    private static final Duration AUTO_MINUTE_MAX = Duration.ofHours(6);
+    private static final Duration AUTO_HOUR_MAX = Duration.ofDays(14);
+
+    private static final long MAX_BUCKETS = 1500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${apikey.usage.minute-retention-hours:48}")
+    private long minuteRetentionHours;
+
+    @Value("${apikey.usage.hour-retention-days:90}")
+    private long hourRetentionDays;
+
+    @Value("${apikey.usage.day-retention-days:730}")
+    private long dayRetentionDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            var indexOps = mongoTemplate.indexOps(ApiKeyUsageBucket.class);
+            indexOps.ensureIndex(new Index()
+                    .on("apiKeyId", Sort.Direction.ASC)
+                    .on("granularity", Sort.Direction.ASC)
+                    .on("bucketStart", Sort.Direction.ASC));
+            indexOps.ensureIndex(new Index()
+                    .on("expireAt", Sort.Direction.ASC)
+                    .expire(0, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            log.warn("Could not create API key usage indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add minute counts to their minute, hour and day buckets; false if the write failed
+     */
+    public boolean record(Collection<UsageCount> counts) {
+        if (counts.isEmpty()) {
+            return true;
+        }
+
+        Map<BucketKey, long[]> buckets = new HashMap<>(); // -> {successful, failed}
+        for (UsageCount count : counts) {
+            for (UsageGranularity granularity : UsageGranularity.values()) {
+                BucketKey key = new BucketKey(count.apiKeyId(), granularity,
+                        granularity.truncate(count.minuteStartMs()));
+                long[] sums = buckets.computeIfAbsent(key, k -> new long[2]);
+                sums[0] += count.successfulRequests();
+                sums[1] += count.failedRequests();
+            }
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKeyUsageBucket.class);
+        buckets.forEach((key, sums) -> {
+            Instant start = Instant.ofEpochMilli(key.startMs());
+            Instant expireAt = start.plusMillis(key.granularity().getMillis()).plus(retention(key.granularity()));
+
+            bulk.upsert(Query.query(Criteria.where("id")
+                            .is(ApiKeyUsageBucket.id(key.apiKeyId(), key.granularity(), key.startMs()))),
+                    new Update()
+                            .inc("totalRequests", sums[0] + sums[1])
+                            .inc("successfulRequests", sums[0])
+                            .inc("failedRequests", sums[1])
+                            .setOnInsert("apiKeyId", key.apiKeyId())
+                            .setOnInsert("granularity", key.granularity())
+                            .setOnInsert("bucketStart", start)
+                            .setOnInsert("expireAt", expireAt));
+        });
+
+        try {
+            bulk.execute();
+            log.debug("Recorded {} usage bucket update(s)", buckets.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to record API key usage buckets: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Usage of the key over [from, to). granularity null = the finest one
+     * that keeps the series short (minutes up to 6h, hours up to 14d) and is
+     * still retained at from.
+     *
+     * @throws IllegalArgumentException if the range would need more than 1500 buckets
+     */
+    public UsageStats stats(String apiKeyId, Instant from, Instant to, UsageGranularity granularity) {
+        UsageGranularity resolved = granularity != null ? granularity : autoGranularity(from, to);
+        if (Duration.between(from, to).toMillis() / resolved.getMillis() > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Range too long for " + resolved + " buckets (max "
+                    + MAX_BUCKETS + "); use a coarser granularity");
+        }
+        Instant start = Instant.ofEpochMilli(resolved.truncate(from.toEpochMilli()));
+
+        Query query = Query.query(Criteria.where("apiKeyId").is(apiKeyId)
+                        .and("granularity").is(resolved)
+                        .and("bucketStart").gte(start).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+        List<ApiKeyUsageBucket> buckets = mongoTemplate.find(query, ApiKeyUsageBucket.class);
+
+        long successful = 0;
+        long failed = 0;
+        for (ApiKeyUsageBucket bucket : buckets) {
+            successful += bucket.getSuccessfulRequests();
+            failed += bucket.getFailedRequests();
+        }
+
+        List<UsageStats.Point> points = buckets.stream()
+                .map(bucket -> new UsageStats.Point(bucket.getBucketStart(), bucket.getTotalRequests(),
+                        bucket.getSuccessfulRequests(), bucket.getFailedRequests()))
+                .toList();
+        return new UsageStats(apiKeyId, resolved, start, to, successful + failed, successful, failed, points);
+    }
+
+    UsageGranularity autoGranularity(Instant from, Instant to) {
+        Duration range = Duration.between(from, to);
+        Duration age = Duration.between(from, Instant.now());
+        if (range.compareTo(AUTO_MINUTE_MAX) <= 0 && age.compareTo(retention(UsageGranularity.MINUTE)) < 0) {
+            return UsageGranularity.MINUTE;
+        }
+        if (range.compareTo(AUTO_HOUR_MAX) <= 0 && age.compareTo(retention(UsageGranularity.HOUR)) < 0) {
+            return UsageGranularity.HOUR;
+        }
+        return UsageGranularity.DAY;
+    }
+
+    private Duration retention(UsageGranularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> Duration.ofHours(minuteRetentionHours);
+            case HOUR -> Duration.ofDays(hourRetentionDays);
+            case DAY -> Duration.ofDays(dayRetentionDays);
+        };
+    }
+
+    private record BucketKey(String apiKeyId, UsageGranularity granularity, long startMs) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.patniom.api_guardian.usage;
+
+/**
+ * Requests of one API key in one minute, as aggregated from the usage stream
+ */
+public record UsageCount(String apiKeyId, long minuteStartMs, long successfulRequests, long failedRequests) {
+}
@@ -0,0 +1,29 @@
+package com.patniom.api_guardian.usage;
+
+/**
+ * Bucket sizes of the API key usage store. Every minute of usage is also
+ * added to its hour and day bucket; coarser buckets are kept longer.
+ * Buckets are aligned to UTC.
+ */
+public enum UsageGranularity {
+    MINUTE(60_000L),
+    HOUR(3_600_000L),
+    DAY(86_400_000L);
+
+    private final long millis;
+
+    UsageGranularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Start of the bucket containing epochMs
+     */
+    public long truncate(long epochMs) {
+        return epochMs - Math.floorMod(epochMs, millis);
+    }
+}
@@ -0,0 +1,21 @@
+package com.patniom.api_guardian.usage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Usage of one API key over [from, to), read from pre-aggregated buckets
+ */
+public record UsageStats(
+        String apiKeyId,
+        UsageGranularity granularity,
+        Instant from,
+        Instant to,
+        long totalRequests,
+        long successfulRequests,
+        long failedRequests,
+        List<Point> buckets) {
+
+    public record Point(Instant start, long totalRequests, long successfulRequests, long failedRequests) {
+    }
+}
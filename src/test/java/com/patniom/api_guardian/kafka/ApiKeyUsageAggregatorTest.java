@@ -0,0 +1,128 @@
+package com.patniom.api_guardian.kafka;
+
+import com.patniom.api_guardian.kafka.events.ApiKeyUsageEvent;
+import com.patniom.api_guardian.security.apikey.ApiKey;
+import com.patniom.api_guardian.usage.ApiKeyUsageStore;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApiKeyUsageAggregatorTest {
+
+    private final ApiKeyUsageAggregator aggregator = new ApiKeyUsageAggregator();
+    private final MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+    private final ApiKeyUsageStore usageStore = Mockito.mock(ApiKeyUsageStore.class);
+    private final BulkOperations bulk = Mockito.mock(BulkOperations.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(aggregator, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(aggregator, "usageStore", usageStore);
+        ReflectionTestUtils.setField(aggregator, "flushSize", 1000L);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class)).thenReturn(bulk);
+        Mockito.when(usageStore.record(Mockito.any())).thenReturn(true);
+    }
+
+    @Test
+    void batchIsAcknowledgedOnceItsCountsAreWritten() {
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+        aggregator.add(List.of(event("key-1", true), event("key-1", false)), ack);
+        Mockito.verify(ack, Mockito.never()).acknowledge();
+
+        aggregator.flush();
+
+        Mockito.verify(ack).acknowledge();
+        Document inc = lastUpdate().getUpdateObject().get("$inc", Document.class);
+        assertThat(inc.get("totalRequests")).isEqualTo(2L);
+        assertThat(inc.get("successfulRequests")).isEqualTo(1L);
+        assertThat(inc.get("failedRequests")).isEqualTo(1L);
+    }
+
+    @Test
+    void failedBulkWriteKeepsTheAcksAndCountsForTheNextFlush() {
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+        aggregator.add(List.of(event("key-1", true), event("key-1", true)), ack);
+        Mockito.when(bulk.execute())
+                .thenThrow(new IllegalStateException("mongo down"))
+                .thenReturn(null);
+
+        aggregator.flush();
+        Mockito.verify(ack, Mockito.never()).acknowledge();
+
+        Acknowledgment later = Mockito.mock(Acknowledgment.class);
+        aggregator.add(List.of(event("key-1", true)), later);
+        aggregator.flush();
+
+        Mockito.verify(ack).acknowledge();
+        Mockito.verify(later).acknowledge();
+        Document inc = lastUpdate().getUpdateObject().get("$inc", Document.class);
+        assertThat(inc.get("totalRequests")).isEqualTo(3L); // Retried counts plus the new batch
+    }
+
+    @Test
+    void failedHistoryWriteAlsoHoldsTheAcks() {
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+        aggregator.add(List.of(event("key-1", true)), ack);
+        Mockito.when(usageStore.record(Mockito.any())).thenReturn(false, true);
+
+        aggregator.flush();
+        Mockito.verify(ack, Mockito.never()).acknowledge();
+
+        aggregator.flush();
+
+        Mockito.verify(ack).acknowledge();
+        Mockito.verify(bulk, Mockito.times(1)).execute(); // Counters aren't written twice
+    }
+
+    @Test
+    void fullBatchFlushesOnTheListenerThread() {
+        ReflectionTestUtils.setField(aggregator, "flushSize", 2L);
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+
+        aggregator.add(List.of(event("key-1", true), event("key-2", true)), ack);
+
+        Mockito.verify(ack).acknowledge();
+        Mockito.verify(bulk, Mockito.times(2)).updateOne(Mockito.any(Query.class), Mockito.any(Update.class));
+    }
+
+    @Test
+    void eventsWithoutAKeyAreSkippedButStillAcknowledged() {
+        Acknowledgment ack = Mockito.mock(Acknowledgment.class);
+        aggregator.add(List.of(event(null, true)), ack);
+
+        aggregator.flush();
+
+        Mockito.verify(ack).acknowledge();
+        Mockito.verifyNoInteractions(mongoTemplate);
+    }
+
+    private Update lastUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(bulk, Mockito.atLeastOnce()).updateOne(Mockito.any(Query.class), update.capture());
+        return update.getValue();
+    }
+
+    private static ApiKeyUsageEvent event(String apiKeyId, boolean success) {
+        return ApiKeyUsageEvent.builder()
+                .apiKeyId(apiKeyId)
+                .userId("user-1")
+                .endpoint("/api/orders")
+                .success(success)
+                .tier("BASIC")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
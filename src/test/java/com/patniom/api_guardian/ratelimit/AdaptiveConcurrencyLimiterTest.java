@@ -0,0 +1,157 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(limiter, "metricsService", metricsService);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 20);
+        ReflectionTestUtils.setField(limiter, "minLimit", 5);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 40);
+        ReflectionTestUtils.setField(limiter, "tolerance", 1.5);
+        ReflectionTestUtils.setField(limiter, "smoothing", 0.2);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(limiter, "longWindow", 100);
+        // Every sample closes a window, so each release runs update()
+        ReflectionTestUtils.setField(limiter, "sampleWindowMs", 0L);
+        ReflectionTestUtils.setField(limiter, "minSamples", 1);
+    }
+
+    @Test
+    void shedsOnceTheLimitIsInFlight() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(null);
+
+        assertThat(permits.size()).isEqualTo(20);
+        assertThat(limiter.tryAcquire(null)).isNull();
+        Mockito.verify(metricsService, Mockito.atLeastOnce()).recordConcurrencyShed(AdaptiveConcurrencyLimiter.GLOBAL);
+
+        permits.get(0).cancel();
+        assertThat(limiter.tryAcquire(null)).isNotNull();
+    }
+
+    @Test
+    void routeShedReleasesTheGlobalSlot() {
+        capacity(); // Global limit created at 20
+        ReflectionTestUtils.setField(limiter, "initialLimit", 5);
+        assertThat(acquireAll("/api/slow/**").size()).isEqualTo(5);
+
+        // The route is full; each shed attempt gives its global slot back
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("/api/slow/**")).isNull();
+        }
+        assertThat(capacity()).isEqualTo(15);
+
+        // The 10 above plus the one that ended acquireAll
+        Mockito.verify(metricsService, Mockito.times(11)).recordConcurrencyShed("/api/slow/**");
+    }
+
+    @Test
+    void steadyLatencyUnderFullUseGrowsTheLimit() {
+        releaseAll(acquireAll(null), 10 * MS);
+
+        assertThat(capacity()).isGreaterThan(20);
+    }
+
+    @Test
+    void mostlyIdleLimitDoesNotGrow() {
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire(null).release(10 * MS);
+        }
+
+        assertThat(capacity()).isEqualTo(20);
+    }
+
+    @Test
+    void risingLatencyShrinksTheLimit() {
+        releaseAll(acquireAll(null), 10 * MS);
+        int baseline = capacity();
+
+        releaseAll(acquireAll(null), 100 * MS);
+
+        assertThat(capacity()).isLessThan(baseline);
+    }
+
+    @Test
+    void limitStaysWithinMinAndMax() {
+        ReflectionTestUtils.setField(limiter, "minLimit", 10);
+        for (int round = 0; round < 10; round++) {
+            releaseAll(acquireAll(null), 10 * MS);
+        }
+        assertThat(capacity()).isEqualTo(40);
+
+        releaseAll(acquireAll(null), 1000 * MS);
+        assertThat(capacity()).isEqualTo(10);
+    }
+
+    @Test
+    void sustainedLatencyBecomesTheNewBaseline() {
+        releaseAll(acquireAll(null), 10 * MS);
+        releaseAll(acquireAll(null), 1000 * MS);
+        int collapsed = capacity();
+
+        for (int round = 0; round < 20; round++) {
+            releaseAll(acquireAll(null), 1000 * MS);
+        }
+
+        assertThat(collapsed).isLessThan(10);
+        assertThat(capacity()).isEqualTo(40);
+    }
+
+    @Test
+    void droppedRequestBacksTheLimitOff() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(null);
+        permits.get(0).drop();
+        permits.subList(1, permits.size()).forEach(AdaptiveConcurrencyLimiter.Permit::cancel);
+
+        assertThat(capacity()).isEqualTo(18);
+    }
+
+    @Test
+    void disabledLimiterNeverSheds() {
+        ReflectionTestUtils.setField(limiter, "enabled", false);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire("/api/**")).isNotNull();
+        }
+        Mockito.verifyNoInteractions(metricsService);
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> acquireAll(String route) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire(route)) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+
+    private static void releaseAll(List<AdaptiveConcurrencyLimiter.Permit> permits, long latencyNanos) {
+        permits.forEach(permit -> permit.release(latencyNanos));
+    }
+
+    /**
+     * Current global limit, probed through the public API (no samples taken)
+     */
+    private int capacity() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = acquireAll(null);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::cancel);
+        return permits.size();
+    }
+}
@@ -0,0 +1,129 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BanNearCacheTest {
+
+    private static final String CHANNEL = "ratelimit:bans";
+    private static final String ID = "IP:10.0.0.1";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = Mockito.mock(RedisTemplate.class);
+
+    // Two nodes on the same channel: one publishes, the other only receives
+    private final LocalRateLimitStore publisherStore = Mockito.mock(LocalRateLimitStore.class);
+    private final LocalRateLimitStore receiverStore = Mockito.mock(LocalRateLimitStore.class);
+    private final BanNearCache publisher = cache(publisherStore);
+    private final BanNearCache receiver = cache(receiverStore);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        Mockito.doReturn(RedisSerializer.string()).when(redisTemplate).getValueSerializer();
+    }
+
+    @Test
+    void banPublishReachesEveryNodesCaches() {
+        publisher.publishBan(ID, 60);
+        long until = publisher.activeBanUntil(ID);
+        assertThat(until).isGreaterThan(System.currentTimeMillis());
+
+        deliver();
+
+        assertThat(receiver.activeBanUntil(ID)).isEqualTo(until);
+        Mockito.verify(receiverStore).banUntil(ID, until);
+        assertThat(receiver.isBanned(ID, this::notBannedLookup)).isTrue();
+        assertThat(lookups.get()).isZero();
+    }
+
+    @Test
+    void clearPublishInvalidatesEveryNodesCaches() {
+        publisher.publishBan(ID, 60);
+        deliver();
+
+        publisher.publishClear(ID);
+        deliver();
+
+        assertThat(publisher.activeBanUntil(ID)).isZero();
+        assertThat(receiver.activeBanUntil(ID)).isZero();
+        Mockito.verify(receiverStore).clearBan(ID);
+        assertThat(receiver.isBanned(ID, this::notBannedLookup)).isFalse();
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    void clearAllPublishInvalidatesEveryNodesCaches() {
+        publisher.publishBan(ID, 60);
+        deliver();
+        publisher.publishBan("IP:10.0.0.2", 60);
+        deliver();
+
+        publisher.publishClearAll();
+        deliver();
+
+        assertThat(receiver.activeBanUntil(ID)).isZero();
+        assertThat(receiver.activeBanUntil("IP:10.0.0.2")).isZero();
+        Mockito.verify(receiverStore).clearAllBans();
+    }
+
+    @Test
+    void notBannedAnswersAreNeverCached() {
+        assertThat(receiver.isBanned(ID, this::notBannedLookup)).isFalse();
+        assertThat(receiver.isBanned(ID, this::notBannedLookup)).isFalse();
+        assertThat(lookups.get()).isEqualTo(2);
+
+        // A ban escalated on another node (never published) shows up on the next read
+        assertThat(receiver.isBanned(ID, () -> 5000L)).isTrue();
+        assertThat(receiver.isBanned(ID, this::notBannedLookup)).isTrue();
+        assertThat(lookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    void lookupRacingAnInvalidationIsNotCached() {
+        boolean banned = receiver.isBanned(ID, () -> {
+            receiver.publishClear(ID); // Lands while the lookup is out
+            return 5000L;
+        });
+
+        assertThat(banned).isTrue();
+        assertThat(receiver.activeBanUntil(ID)).isZero();
+    }
+
+    private Long notBannedLookup() {
+        lookups.incrementAndGet();
+        return 0L;
+    }
+
+    /**
+     * Hand the last published event to the receiving node, as the subscription would
+     */
+    private void deliver() {
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(redisTemplate, Mockito.atLeastOnce()).convertAndSend(Mockito.eq(CHANNEL), event.capture());
+        byte[] body = event.getValue().toString().getBytes(StandardCharsets.UTF_8);
+        receiver.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body), null);
+    }
+
+    private BanNearCache cache(LocalRateLimitStore localStore) {
+        BanNearCache cache = new BanNearCache();
+        ReflectionTestUtils.setField(cache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "localRateLimitStore", localStore);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "channel", CHANNEL);
+        ReflectionTestUtils.setField(cache, "maxStaleMs", 30_000L);
+        return cache;
+    }
+}
@@ -0,0 +1,105 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CidrTrieTest {
+
+    private static final long NOW = 1_000_000;
+
+    private final CidrTrie trie = new CidrTrie();
+
+    @Test
+    void longestLivePrefixWins() {
+        trie.put(CidrTrie.parseCidr("10.0.0.0/8"), CidrTrie.PERMANENT);
+        trie.put(CidrTrie.parseCidr("10.1.0.0/16"), NOW + 5000);
+
+        assertThat(match("10.1.2.3", NOW)).isEqualTo(NOW + 5000);
+        assertThat(match("10.2.0.1", NOW)).isEqualTo(CidrTrie.PERMANENT);
+        assertThat(match("11.0.0.1", NOW)).isEqualTo(CidrTrie.NONE);
+
+        // Expired longer prefix falls back to the shorter one
+        assertThat(match("10.1.2.3", NOW + 5000)).isEqualTo(CidrTrie.PERMANENT);
+    }
+
+    @Test
+    void ipv4MappedAddressMatchesIpv4Prefix() {
+        trie.put(CidrTrie.parseCidr("1.2.3.0/24"), CidrTrie.PERMANENT);
+
+        assertThat(match("::ffff:1.2.3.4", NOW)).isEqualTo(CidrTrie.PERMANENT);
+        assertThat(match("1.2.4.1", NOW)).isEqualTo(CidrTrie.NONE);
+    }
+
+    @Test
+    void ipv6PrefixMatchesOnlyAddressesInside() {
+        trie.put(CidrTrie.parseCidr("2001:db8::/32"), CidrTrie.PERMANENT);
+
+        assertThat(match("2001:db8:1::1", NOW)).isEqualTo(CidrTrie.PERMANENT);
+        assertThat(match("[2001:db8::5]", NOW)).isEqualTo(CidrTrie.PERMANENT);
+        assertThat(match("2001:db9::1", NOW)).isEqualTo(CidrTrie.NONE);
+        assertThat(match("32.1.13.184", NOW)).isEqualTo(CidrTrie.NONE); // Same leading bits, but IPv4
+    }
+
+    @Test
+    void branchPointsAreNotCountedUntilMarked() {
+        trie.put(CidrTrie.parseCidr("10.1.0.0/16"), CidrTrie.PERMANENT);
+        trie.put(CidrTrie.parseCidr("10.2.0.0/16"), CidrTrie.PERMANENT);
+        assertThat(trie.size()).isEqualTo(2);
+        assertThat(match("10.3.0.1", NOW)).isEqualTo(CidrTrie.NONE);
+
+        // Exactly the branch point the two /16s split at
+        trie.put(CidrTrie.parseCidr("10.0.0.0/14"), NOW + 1);
+        assertThat(trie.size()).isEqualTo(3);
+        assertThat(match("10.3.0.1", NOW)).isEqualTo(NOW + 1);
+        assertThat(match("10.1.0.1", NOW)).isEqualTo(CidrTrie.PERMANENT);
+    }
+
+    @Test
+    void reputtingAPrefixUpdatesItsExpiry() {
+        trie.put(CidrTrie.parseCidr("10.0.0.0/8"), NOW + 1);
+        trie.put(CidrTrie.parseCidr("10.0.0.0/8"), NOW + 2);
+
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(match("10.0.0.1", NOW)).isEqualTo(NOW + 2);
+    }
+
+    @Test
+    void removeUnmarksOnlyTheExactPrefix() {
+        trie.put(CidrTrie.parseCidr("10.0.0.0/8"), CidrTrie.PERMANENT);
+        trie.put(CidrTrie.parseCidr("10.1.0.0/16"), CidrTrie.PERMANENT);
+
+        assertThat(trie.remove(CidrTrie.parseCidr("10.1.0.0/16"))).isTrue();
+        assertThat(trie.remove(CidrTrie.parseCidr("10.1.0.0/16"))).isFalse();
+        assertThat(trie.remove(CidrTrie.parseCidr("10.1.0.0/24"))).isFalse();
+
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(match("10.1.2.3", NOW)).isEqualTo(CidrTrie.PERMANENT);
+    }
+
+    @Test
+    void parseCidrNormalizesHostBitsAndMapsIpv4() {
+        CidrTrie.Prefix prefix = CidrTrie.parseCidr(" 1.2.3.4/24 ");
+
+        assertThat(prefix.length()).isEqualTo(120);
+        assertThat(CidrTrie.format(prefix)).isEqualTo("1.2.3.0/24");
+        assertThat(CidrTrie.format(CidrTrie.parseCidr("1.2.3.4"))).isEqualTo("1.2.3.4/32");
+        assertThat(CidrTrie.format(CidrTrie.parseCidr("2001:db8::1/32"))).isEqualTo("2001:db8:0:0:0:0:0:0/32");
+        assertThat(CidrTrie.format(CidrTrie.mask(CidrTrie.parseCidr("1.2.3.4"), 112))).isEqualTo("1.2.0.0/16");
+    }
+
+    @Test
+    void parseCidrRejectsInvalidInput() {
+        assertThatThrownBy(() -> CidrTrie.parseCidr("1.2.3.4/33")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CidrTrie.parseCidr("1.2.3.4/x")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CidrTrie.parseCidr("300.1.1.1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CidrTrie.parseCidr("example.com")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CidrTrie.parseCidr("2001:db8::/129")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private long match(String address, long now) {
+        CidrTrie.Prefix parsed = CidrTrie.parseAddress(address);
+        return trie.match(parsed.hi(), parsed.lo(), now);
+    }
+}
@@ -0,0 +1,135 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTest {
+
+    @Test
+    void singleItemIsCountedExactly() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        long item = hash("10.0.0.1");
+
+        assertThat(sketch.estimate(item)).isZero();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(sketch.increment(item)).isEqualTo(i);
+        }
+        assertThat(sketch.estimate(item)).isEqualTo(5);
+    }
+
+    @Test
+    void estimatesNeverUndercountEvenWhenCrowded() {
+        CountMinSketch sketch = new CountMinSketch(4, 16);
+        int items = 200;
+
+        for (int i = 0; i < items; i++) {
+            for (int n = 0; n <= i % 7; n++) {
+                sketch.increment(hash("ip-" + i));
+            }
+        }
+
+        for (int i = 0; i < items; i++) {
+            assertThat(sketch.estimate(hash("ip-" + i))).isGreaterThanOrEqualTo(i % 7 + 1);
+        }
+    }
+
+    @Test
+    void overcountStaysSmallWhenWideEnough() {
+        CountMinSketch sketch = new CountMinSketch(4, 4096);
+        int items = 2000;
+
+        for (int i = 0; i < items; i++) {
+            sketch.increment(hash("ip-" + i));
+        }
+
+        long overcount = 0;
+        for (int i = 0; i < items; i++) {
+            overcount += sketch.estimate(hash("ip-" + i)) - 1;
+        }
+        // e / width * total ~ 1.3 per item at worst; conservative update keeps it far below
+        assertThat(overcount).isLessThan(items / 10);
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        sketch.increment(hash("a"));
+        sketch.increment(hash("a"));
+
+        sketch.clear();
+
+        assertThat(sketch.estimate(hash("a"))).isZero();
+        assertThat(sketch.increment(hash("a"))).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentIncrementsAreNeverLost() throws InterruptedException {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        long item = hash("10.0.0.1");
+
+        hammer(8, 20_000, thread -> sketch.increment(item));
+
+        assertThat(sketch.estimate(item)).isGreaterThanOrEqualTo(8 * 20_000);
+    }
+
+    @Test
+    void concurrentIncrementsOnACrowdedSketchNeverUndercount() throws InterruptedException {
+        CountMinSketch sketch = new CountMinSketch(2, 8);
+        int items = 16;
+
+        // Every thread counts every item, so the sketch rows collide constantly
+        hammer(8, 2_000, thread -> {
+            for (int i = 0; i < items; i++) {
+                sketch.increment(hash("ip-" + i));
+            }
+        });
+
+        for (int i = 0; i < items; i++) {
+            assertThat(sketch.estimate(hash("ip-" + i))).isGreaterThanOrEqualTo(8 * 2_000);
+        }
+    }
+
+    @Test
+    void widthIsRoundedUpToAPowerOfTwo() {
+        assertThat(new CountMinSketch(4, 1000).memoryBytes()).isEqualTo(4 * 1024 * Integer.BYTES);
+        assertThat(new CountMinSketch(2, 1024).memoryBytes()).isEqualTo(2 * 1024 * Integer.BYTES);
+    }
+
+    /**
+     * Run the step rounds times on each thread, all threads starting together
+     */
+    private static void hammer(int threads, int rounds, IntConsumer step)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int r = 0; r < rounds; r++) {
+                    step.accept(thread);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static long hash(String value) {
+        return OffHeapLimiterTable.hash(value, 0);
+    }
+}
@@ -0,0 +1,103 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DistributedSemaphoreTest {
+
+    private static final String NAME = "reports";
+
+    private final DistributedSemaphore semaphore = new DistributedSemaphore();
+    private final NodeCountEstimator nodeCountEstimator = Mockito.mock(NodeCountEstimator.class);
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+    private final RedisBatchDispatcher dispatcher = Mockito.mock(RedisBatchDispatcher.class);
+
+    private final RedisCircuitBreaker openBreaker = Mockito.mock(RedisCircuitBreaker.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(semaphore, "redisBatchDispatcher", dispatcher);
+        ReflectionTestUtils.setField(semaphore, "redisCircuitBreaker", openBreaker);
+        ReflectionTestUtils.setField(semaphore, "nodeCountEstimator", nodeCountEstimator);
+        ReflectionTestUtils.setField(semaphore, "metricsService", metricsService);
+        ReflectionTestUtils.setField(semaphore, "leaseMs", 30_000L);
+        Mockito.when(nodeCountEstimator.nodeCount()).thenReturn(4);
+
+        // Circuit open: every call gets the fallback
+        Mockito.when(openBreaker.execute(Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+    }
+
+    @Test
+    void localFallbackHoldsThisNodesShareOfThePermits() {
+        List<DistributedSemaphore.Lease> leases = acquireAll(20, RateLimitFallback.LOCAL);
+
+        assertThat(leases.size()).isEqualTo(5); // 20 permits over 4 nodes
+        Mockito.verify(metricsService).recordSemaphoreRejected(NAME);
+        Mockito.verifyNoInteractions(dispatcher);
+    }
+
+    @Test
+    void releasedLocalPermitCanBeTakenAgain() {
+        List<DistributedSemaphore.Lease> leases = acquireAll(20, RateLimitFallback.LOCAL);
+
+        leases.get(0).release();
+        leases.get(0).release(); // Second release is a no-op
+
+        assertThat(semaphore.tryAcquire(NAME, 20, RateLimitFallback.LOCAL)).isNotNull();
+        assertThat(semaphore.tryAcquire(NAME, 20, RateLimitFallback.LOCAL)).isNull();
+    }
+
+    @Test
+    void localShareIsAtLeastOnePermit() {
+        assertThat(acquireAll(2, RateLimitFallback.LOCAL).size()).isEqualTo(1);
+    }
+
+    @Test
+    void localShareFollowsTheNodeCount() {
+        Mockito.when(nodeCountEstimator.nodeCount()).thenReturn(1);
+
+        assertThat(acquireAll(20, RateLimitFallback.LOCAL).size()).isEqualTo(20);
+    }
+
+    @Test
+    void missingFallbackMeansLocal() {
+        assertThat(acquireAll(20, null).size()).isEqualTo(5);
+    }
+
+    @Test
+    void semaphoresHaveSeparateLocalShares() {
+        acquireAll(20, RateLimitFallback.LOCAL);
+
+        assertThat(semaphore.tryAcquire("exports", 20, RateLimitFallback.LOCAL)).isNotNull();
+    }
+
+    @Test
+    void failOpenAdmitsAndFailClosedRejects() {
+        for (int i = 0; i < 50; i++) {
+            DistributedSemaphore.Lease lease = semaphore.tryAcquire(NAME, 1, RateLimitFallback.FAIL_OPEN);
+            assertThat(lease).isNotNull();
+            lease.release();
+        }
+        assertThat(semaphore.tryAcquire(NAME, 100, RateLimitFallback.FAIL_CLOSED)).isNull();
+        Mockito.verifyNoInteractions(dispatcher);
+    }
+
+    private List<DistributedSemaphore.Lease> acquireAll(int permits, RateLimitFallback fallback) {
+        List<DistributedSemaphore.Lease> leases = new ArrayList<>();
+        DistributedSemaphore.Lease lease;
+        while ((lease = semaphore.tryAcquire(NAME, permits, fallback)) != null) {
+            leases.add(lease);
+        }
+        return leases;
+    }
+}
@@ -0,0 +1,79 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GcraAlgorithmTest {
+
+    private static final long NOW = 1_700_000_000_000_000L; // µs
+
+    // 10 per second: one request every 100 ms
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .capacity(10)
+            .refillIntervalMs(1000)
+            .build();
+    private static final long EMISSION = 100_000;
+
+    private final GcraAlgorithm gcra = new GcraAlgorithm();
+    private final long[] state = new long[1];
+
+    @Test
+    void emissionIntervalIsIntervalOverCapacity() {
+        assertThat(GcraAlgorithm.emissionIntervalMicros(CONFIG)).isEqualTo(EMISSION);
+        assertThat(GcraAlgorithm.emissionIntervalMicros(RateLimitConfig.builder()
+                .capacity(1_000_000).refillIntervalMs(1).build())).isEqualTo(1);
+    }
+
+    @Test
+    void fullBurstIsAdmittedThenRejected() {
+        for (int i = 1; i <= 10; i++) {
+            LimiterOutcome outcome = gcra.evaluate(state, NOW, CONFIG);
+            assertThat(outcome.isAllowed()).isTrue();
+            assertThat(outcome.getRemaining()).isEqualTo(10 - i);
+            assertThat(outcome.getResetEpochMs()).isEqualTo((NOW + i * EMISSION) / 1000);
+        }
+        assertThat(state[0]).isEqualTo(NOW + 10 * EMISSION);
+
+        LimiterOutcome rejected = gcra.evaluate(state, NOW, CONFIG);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryMs()).isEqualTo(EMISSION / 1000);
+        assertThat(rejected.getResetEpochMs()).isEqualTo((NOW + 10 * EMISSION) / 1000);
+        assertThat(state[0]).isEqualTo(NOW + 10 * EMISSION); // Rejections don't move the TAT
+    }
+
+    @Test
+    void oneRequestIsAdmittedPerEmissionIntervalAfterTheBurst() {
+        for (int i = 0; i < 10; i++) {
+            gcra.evaluate(state, NOW, CONFIG);
+        }
+
+        assertThat(gcra.evaluate(state, NOW + EMISSION - 1, CONFIG).isAllowed()).isFalse();
+        LimiterOutcome next = gcra.evaluate(state, NOW + EMISSION, CONFIG);
+        assertThat(next.isAllowed()).isTrue();
+        assertThat(next.getRemaining()).isZero();
+        assertThat(gcra.evaluate(state, NOW + EMISSION, CONFIG).isAllowed()).isFalse();
+    }
+
+    @Test
+    void idleIdentifierGetsItsWholeBurstBack() {
+        for (int i = 0; i < 10; i++) {
+            gcra.evaluate(state, NOW, CONFIG);
+        }
+
+        LimiterOutcome outcome = gcra.evaluate(state, NOW + 60_000_000L, CONFIG);
+        assertThat(outcome.isAllowed()).isTrue();
+        assertThat(outcome.getRemaining()).isEqualTo(9);
+    }
+
+    @Test
+    void rejectionRetryMsIsRoundedUp() {
+        for (int i = 0; i < 10; i++) {
+            gcra.evaluate(state, NOW, CONFIG);
+        }
+
+        LimiterOutcome rejected = gcra.evaluate(state, NOW + 500, CONFIG); // 0.5 ms later
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryMs()).isEqualTo(100);
+    }
+}
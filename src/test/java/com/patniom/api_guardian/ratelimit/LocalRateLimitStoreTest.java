@@ -0,0 +1,70 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRateLimitStoreTest {
+
+    // One request per minute: every request after the first is rejected
+    private static final RateLimitConfig ONE_PER_MINUTE = RateLimitConfig.builder()
+            .capacity(1)
+            .refillIntervalMs(60_000)
+            .store(RateLimitStoreType.LOCAL)
+            .build();
+
+    private final LocalRateLimitStore store = new LocalRateLimitStore();
+    private final RateLimitAlgorithm algorithm = new TokenBucketAlgorithm();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "maxEntries", 1024L);
+    }
+
+    @Test
+    void repeatedRejectionsEscalateToABan() {
+        assertThat(store.evaluate("IP:10.0.0.1", ONE_PER_MINUTE, algorithm).isAllowed()).isTrue();
+
+        GuardDecision decision = null;
+        for (int i = 0; i < AbuseDetectionService.VIOLATION_THRESHOLD_MINOR; i++) {
+            decision = store.evaluate("IP:10.0.0.1", ONE_PER_MINUTE, algorithm);
+        }
+
+        assertThat(decision.getViolations()).isEqualTo(AbuseDetectionService.VIOLATION_THRESHOLD_MINOR);
+        assertThat(decision.getBanSeconds()).isEqualTo(AbuseDetectionService.BAN_DURATION_MINOR);
+        assertThat(store.evaluate("IP:10.0.0.1", ONE_PER_MINUTE, algorithm).getDecision())
+                .isEqualTo(AuditDecision.BANNED);
+    }
+
+    @Test
+    void subnetAggregateIsRateLimitedButNeverBanned() {
+        RateLimitConfig aggregate = ONE_PER_MINUTE.aggregate(1);
+        assertThat(store.evaluate("IPNET:10.0.0.0/24", aggregate, algorithm).isAllowed()).isTrue();
+
+        for (int i = 0; i < AbuseDetectionService.VIOLATION_THRESHOLD_SEVERE * 2; i++) {
+            GuardDecision decision = store.evaluate("IPNET:10.0.0.0/24", aggregate, algorithm);
+            assertThat(decision.getDecision()).isEqualTo(AuditDecision.RATE_LIMIT);
+            assertThat(decision.getViolations()).isZero();
+            assertThat(decision.getBanSeconds()).isZero();
+        }
+    }
+
+    @Test
+    void manualBanHoldsForEveryStrategy() {
+        store.evaluate("IP:10.0.0.2", ONE_PER_MINUTE, algorithm); // Allocates the table
+
+        store.ban("IP:10.0.0.2", 60);
+
+        for (RateLimitAlgorithm any : new RateLimitAlgorithm[]{
+                new TokenBucketAlgorithm(), new GcraAlgorithm(), new SlidingWindowAlgorithm()}) {
+            assertThat(store.evaluate("IP:10.0.0.2", ONE_PER_MINUTE, any).getDecision())
+                    .isEqualTo(AuditDecision.BANNED);
+        }
+
+        store.clearBan("IP:10.0.0.2");
+        assertThat(store.evaluate("IP:10.0.0.2", ONE_PER_MINUTE, new GcraAlgorithm()).isAllowed()).isTrue();
+    }
+}
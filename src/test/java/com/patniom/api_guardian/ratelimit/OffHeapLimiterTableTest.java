@@ -0,0 +1,133 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapLimiterTableTest {
+
+    // 64 entries -> 128 records; hashes START + k * 128 all probe from the same index
+    private static final long START = 1000;
+    private static final long STRIDE = 128;
+    private static final int PROBE_WINDOW = 64;
+
+    private final OffHeapLimiterTable table = new OffHeapLimiterTable(64, 2);
+
+    @Test
+    void writtenSlotsAreReadBackUnderTheSameHash() {
+        long index = table.acquire(42, 1);
+        try {
+            table.write(index, new long[]{7, 9});
+        } finally {
+            table.release(index);
+        }
+
+        long existing = table.acquireExisting(42);
+        long[] record = new long[2];
+        try {
+            table.read(existing, record);
+        } finally {
+            table.release(existing);
+        }
+
+        assertThat(existing).isEqualTo(index);
+        assertThat(record).containsExactly(7, 9);
+        assertThat(table.acquireExisting(43)).isEqualTo(-1);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void collidingHashesGetDistinctRecordsWithinTheProbeWindow() {
+        for (int k = 0; k < PROBE_WINDOW; k++) {
+            table.release(table.acquire(colliding(k), k + 1));
+        }
+
+        assertThat(table.size()).isEqualTo(PROBE_WINDOW);
+        for (int k = 0; k < PROBE_WINDOW; k++) {
+            long index = table.acquireExisting(colliding(k));
+            assertThat(index).isGreaterThanOrEqualTo(0);
+            table.release(index);
+        }
+    }
+
+    @Test
+    void fullProbeWindowRecyclesTheLeastRecentlyUsedRecord() {
+        long oldest = -1;
+        for (int k = 0; k < PROBE_WINDOW; k++) {
+            long index = table.acquire(colliding(k), k + 1);
+            try {
+                table.write(index, new long[]{k + 1, k + 1});
+            } finally {
+                table.release(index);
+            }
+            if (k == 0) {
+                oldest = index;
+            }
+        }
+
+        long index = table.acquire(colliding(PROBE_WINDOW), 1000);
+        long[] record = new long[2];
+        try {
+            table.read(index, record);
+        } finally {
+            table.release(index);
+        }
+
+        assertThat(index).isEqualTo(oldest);
+        assertThat(record).containsExactly(0, 0);
+        assertThat(table.acquireExisting(colliding(0))).isEqualTo(-1);
+        assertThat(table.size()).isEqualTo(PROBE_WINDOW);
+    }
+
+    @Test
+    void evictIdleRemovesOnlyRecordsOlderThanTheCutoff() {
+        table.release(table.acquire(colliding(0), 100));
+        table.release(table.acquire(colliding(1), 500));
+        table.release(table.acquire(colliding(2), 100));
+
+        assertThat(table.evictIdle(200)).isEqualTo(2);
+
+        assertThat(table.size()).isEqualTo(1);
+        assertThat(table.acquireExisting(colliding(0))).isEqualTo(-1);
+        assertThat(table.acquireExisting(colliding(2))).isEqualTo(-1);
+
+        // Probing continues past the tombstone left in front of it
+        long survivor = table.acquireExisting(colliding(1));
+        assertThat(survivor).isGreaterThanOrEqualTo(0);
+        table.release(survivor);
+    }
+
+    @Test
+    void removedRecordIsReusedWithZeroedSlots() {
+        long index = table.acquire(colliding(0), 1);
+        try {
+            table.write(index, new long[]{5, 6});
+            table.removeLocked(index);
+        } finally {
+            table.release(index);
+        }
+
+        long reused = table.acquire(colliding(1), 2);
+        long[] record = new long[2];
+        try {
+            table.read(reused, record);
+        } finally {
+            table.release(reused);
+        }
+
+        assertThat(reused).isEqualTo(index);
+        assertThat(record).containsExactly(0, 0);
+    }
+
+    @Test
+    void reservedHashValuesAreStillDistinctKeys() {
+        table.release(table.acquire(OffHeapLimiterTable.EMPTY, 1));
+        table.release(table.acquire(OffHeapLimiterTable.TOMBSTONE, 1));
+
+        assertThat(table.size()).isEqualTo(2);
+    }
+
+    private static long colliding(int k) {
+        return START + k * STRIDE;
+    }
+}
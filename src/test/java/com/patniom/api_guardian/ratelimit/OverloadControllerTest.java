@@ -0,0 +1,152 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OverloadControllerTest {
+
+    private static final int FREE = 1;
+    private static final int BASIC = 2;
+
+    private final OverloadController controller = new OverloadController();
+    private final RedisBatchDispatcher dispatcher = Mockito.mock(RedisBatchDispatcher.class);
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(controller, "redisBatchDispatcher", dispatcher);
+        ReflectionTestUtils.setField(controller, "metricsService", metricsService);
+        ReflectionTestUtils.setField(controller, "enabled", true);
+        ReflectionTestUtils.setField(controller, "maxInFlight", 100);
+        ReflectionTestUtils.setField(controller, "cpuTarget", 1e9); // Keep the test JVM's CPU out of it
+        ReflectionTestUtils.setField(controller, "latencyTargetMs", 1000L);
+        ReflectionTestUtils.setField(controller, "redisQueueTarget", 1000);
+        ReflectionTestUtils.setField(controller, "step", 0.25);
+        ReflectionTestUtils.setField(controller, "recoverRatio", 0.8);
+    }
+
+    @Test
+    void noPressureShedsNothing() {
+        tick(10, 0);
+
+        assertThat(controller.getShedLevel()).isZero();
+        for (int priority = OverloadController.PRIORITY_ANONYMOUS; priority <= OverloadController.PRIORITY_TOP; priority++) {
+            assertThat(admits(priority)).isTrue();
+        }
+    }
+
+    @Test
+    void sustainedPressureClimbsTheLadderFromTheBottom() {
+        tick(4, 1000);
+        assertThat(controller.getShedLevel()).isEqualTo(1.0);
+        assertThat(admits(OverloadController.PRIORITY_ANONYMOUS)).isFalse();
+        assertThat(admits(FREE)).isTrue();
+
+        tick(4, 1000);
+        assertThat(controller.getShedLevel()).isEqualTo(2.0);
+        assertThat(admits(FREE)).isFalse();
+        assertThat(admits(BASIC)).isTrue();
+        assertThat(admits(OverloadController.PRIORITY_TOP)).isTrue();
+        Mockito.verify(metricsService).setOverloadShedLevel(2.0);
+    }
+
+    @Test
+    void topOfTheLadderShedsEverything() {
+        tick(100, 5000);
+
+        assertThat(controller.getShedLevel()).isEqualTo(OverloadController.PRIORITY_TOP + 1);
+        assertThat(admits(OverloadController.PRIORITY_TOP)).isFalse();
+    }
+
+    @Test
+    void fractionalLevelShedsThatShareOfTheBoundaryClass() {
+        tick(6, 1000); // 1.5: all anonymous, half of FREE
+
+        int admitted = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (admits(FREE)) {
+                admitted++;
+            }
+        }
+        assertThat(admitted).isBetween(4000, 6000);
+        assertThat(admits(BASIC)).isTrue();
+    }
+
+    @Test
+    void recoveryIsHalfAsFastAsEscalation() {
+        tick(4, 1000);
+
+        tick(4, 0);
+        assertThat(controller.getShedLevel()).isEqualTo(0.5);
+        tick(4, 0);
+        assertThat(controller.getShedLevel()).isZero();
+    }
+
+    @Test
+    void pressureBetweenRecoverRatioAndOneHoldsTheLevel() {
+        tick(4, 1000);
+
+        tick(10, 900);
+
+        assertThat(controller.getShedLevel()).isEqualTo(1.0);
+    }
+
+    @Test
+    void slowRequestsRaisePressure() {
+        assertThat(controller.tryAdmit(FREE)).isTrue();
+        controller.onComplete(2_000_000_000L); // 2s against a 1s target
+
+        controller.tick();
+
+        assertThat(controller.getShedLevel()).isEqualTo(0.25);
+    }
+
+    @Test
+    void fullInFlightBudgetShedsAllButTheTopClassBetweenTicks() {
+        ReflectionTestUtils.setField(controller, "maxInFlight", 3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(controller.tryAdmit(FREE)).isTrue();
+        }
+
+        assertThat(controller.tryAdmit(BASIC)).isFalse();
+        assertThat(controller.tryAdmit(OverloadController.PRIORITY_TOP)).isTrue();
+
+        controller.onSuspended();
+        controller.onSuspended();
+        assertThat(controller.tryAdmit(BASIC)).isTrue();
+    }
+
+    @Test
+    void disabledControllerNeverSheds() {
+        ReflectionTestUtils.setField(controller, "enabled", false);
+
+        tick(20, 5000);
+
+        assertThat(controller.getShedLevel()).isZero();
+        assertThat(admits(OverloadController.PRIORITY_ANONYMOUS)).isTrue();
+        Mockito.verifyNoInteractions(metricsService);
+    }
+
+    private void tick(int ticks, int redisQueueDepth) {
+        Mockito.when(dispatcher.queueDepth()).thenReturn(redisQueueDepth);
+        for (int i = 0; i < ticks; i++) {
+            controller.tick();
+        }
+    }
+
+    /**
+     * Probe admission without leaving the request in flight
+     */
+    private boolean admits(int priority) {
+        if (!controller.tryAdmit(priority)) {
+            return false;
+        }
+        controller.onSuspended();
+        return true;
+    }
+}
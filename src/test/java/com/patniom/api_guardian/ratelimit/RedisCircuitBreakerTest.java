@@ -0,0 +1,161 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCircuitBreakerTest {
+
+    private final RedisCircuitBreaker breaker = new RedisCircuitBreaker();
+    private final AtomicInteger redisCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(breaker, "metricsService", Mockito.mock(MetricsService.class));
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "windowSize", 10);
+        ReflectionTestUtils.setField(breaker, "minCalls", 5);
+        ReflectionTestUtils.setField(breaker, "failureRatePercent", 50);
+        ReflectionTestUtils.setField(breaker, "slowCallMs", 10_000L);
+        ReflectionTestUtils.setField(breaker, "openMs", 60_000L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        breaker.init();
+    }
+
+    @Test
+    void staysClosedUntilMinCallsAreSeen() {
+        for (int i = 0; i < 4; i++) {
+            assertThat(fail()).isEqualTo("fallback");
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+
+        fail();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void tripsOnceTheFailureRateIsReached() {
+        for (int i = 0; i < 6; i++) {
+            succeed();
+        }
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED); // 4 of 10
+
+        fail(); // Overwrites the oldest success: 5 of 10
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void openCircuitSkipsRedis() {
+        trip();
+        redisCalls.set(0);
+
+        assertThat(succeed()).isEqualTo("fallback");
+        assertThat(redisCalls.get()).isZero();
+    }
+
+    @Test
+    void halfOpenSuccessesCloseTheCircuit() {
+        trip();
+        ReflectionTestUtils.setField(breaker, "openMs", 0L);
+
+        assertThat(succeed()).isEqualTo("redis");
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+        succeed();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+
+        // Fresh window: the failures from before the trip are gone
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenFailureReopensTheCircuit() {
+        trip();
+        ReflectionTestUtils.setField(breaker, "openMs", 0L);
+        succeed();
+
+        fail();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void halfOpenAdmitsOnlyTheTrialCalls() {
+        trip();
+        ReflectionTestUtils.setField(breaker, "openMs", 0L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 1);
+
+        String nested = breaker.execute(() -> succeed(), () -> "fallback");
+
+        assertThat(nested).isEqualTo("fallback"); // Second concurrent trial was refused
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void stragglerSuccessDuringHalfOpenIsNotATrial() {
+        String straggler = breaker.execute(() -> {
+            trip();
+            ReflectionTestUtils.setField(breaker, "openMs", 0L);
+            succeed(); // First of two trials
+            return "redis";
+        }, () -> "fallback");
+
+        assertThat(straggler).isEqualTo("redis");
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+
+        succeed();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void stragglerFailureDuringHalfOpenDoesNotReopen() {
+        breaker.execute(() -> {
+            trip();
+            ReflectionTestUtils.setField(breaker, "openMs", 0L);
+            succeed();
+            throw new IllegalStateException("timed out before the trip");
+        }, () -> "fallback");
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void disabledBreakerAlwaysCallsRedis() {
+        ReflectionTestUtils.setField(breaker, "enabled", false);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(breaker.execute(() -> "redis", () -> "fallback")).isEqualTo("redis");
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    private void trip() {
+        while (breaker.getState() != RedisCircuitBreaker.State.OPEN) {
+            fail();
+        }
+    }
+
+    private String succeed() {
+        return breaker.execute(() -> {
+            redisCalls.incrementAndGet();
+            return "redis";
+        }, () -> "fallback");
+    }
+
+    private String fail() {
+        return breaker.execute(() -> {
+            redisCalls.incrementAndGet();
+            throw new IllegalStateException("redis down");
+        }, () -> "fallback");
+    }
+}
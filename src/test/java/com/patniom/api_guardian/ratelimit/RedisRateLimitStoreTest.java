@@ -0,0 +1,62 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisRateLimitStoreTest {
+
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .capacity(10)
+            .refillIntervalMs(1000)
+            .build();
+
+    // Rejected by the burst limiter, no violation recorded
+    private static final List<Long> REJECTED = List.of(1L, 0L, 0L, 1L, 0L, 0L, 0L, 1000L);
+
+    private final RedisRateLimitStore store = new RedisRateLimitStore();
+    private final List<Object[]> calls = new ArrayList<>();
+
+    @Test
+    void ownIdentifierRejectionsRecordViolations() {
+        evaluate("IP:10.0.0.1", CONFIG);
+
+        assertThat(calls.get(0)[0]).isEqualTo(AbuseDetectionService.VIOLATION_WINDOW_SECONDS);
+    }
+
+    @Test
+    void subnetAggregateRejectionsNeverEscalate() {
+        evaluate("IPNET:10.0.0.0/24", CONFIG.aggregate(16));
+
+        assertThat(calls.get(0)[0]).isEqualTo(0); // Violation window 0: no violation, no ban
+    }
+
+    @Test
+    void shapedRejectionsNeverEscalate() {
+        RateLimitConfig shaped = CONFIG.withoutLevels();
+        shaped.setShapeMaxWaitMs(500);
+
+        evaluate("IP:10.0.0.1", shaped);
+
+        assertThat(calls.get(0)[0]).isEqualTo(0);
+    }
+
+    @Test
+    void missingScriptResultThrowsSoTheBreakerFallsBack() {
+        assertThatThrownBy(() -> store.evaluate("IP:10.0.0.1", CONFIG, new TokenBucketAlgorithm(),
+                (script, keys, args) -> null)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> store.evaluate("IP:10.0.0.1", CONFIG, new TokenBucketAlgorithm(),
+                (script, keys, args) -> List.of(1L, 0L))).isInstanceOf(IllegalStateException.class);
+    }
+
+    private GuardDecision evaluate(String identifier, RateLimitConfig config) {
+        return store.evaluate(identifier, config, new TokenBucketAlgorithm(), (script, keys, args) -> {
+            calls.add(args);
+            return REJECTED;
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisShardRingTest {
+
+    private static final int IDENTIFIERS = 30_000;
+
+    private final RedisShardRing ring = new RedisShardRing();
+
+    @Test
+    void emptyRingIsDisabled() {
+        assertThat(ring.isEnabled()).isFalse();
+    }
+
+    @Test
+    void identifierAlwaysMapsToTheSameShard() {
+        addNodes("10.0.0.1:6379", "10.0.0.2:6379", "10.0.0.3:6379");
+
+        RedisTemplate<String, Object> shard = ring.shardFor("USER:alice");
+        for (int i = 0; i < 10; i++) {
+            assertThat(ring.shardFor("USER:alice")).isSameAs(shard);
+        }
+        assertThat(ring.isEnabled()).isTrue();
+    }
+
+    @Test
+    void placementDependsOnAddressesNotOrder() {
+        RedisShardRing other = new RedisShardRing();
+        Map<String, RedisTemplate<String, Object>> byAddress = new HashMap<>();
+        for (String address : List.of("10.0.0.1:6379", "10.0.0.2:6379", "10.0.0.3:6379")) {
+            byAddress.put(address, new RedisTemplate<>());
+        }
+        byAddress.forEach((address, template) -> ring.addNode(address, template));
+        List.of("10.0.0.3:6379", "10.0.0.1:6379", "10.0.0.2:6379")
+                .forEach(address -> other.addNode(address, byAddress.get(address)));
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(other.shardFor("IP:" + i)).isSameAs(ring.shardFor("IP:" + i));
+        }
+    }
+
+    @Test
+    void identifiersSpreadEvenlyAcrossNodes() {
+        List<RedisTemplate<String, Object>> shards = addNodes("10.0.0.1:6379", "10.0.0.2:6379", "10.0.0.3:6379");
+
+        Map<RedisTemplate<String, Object>, Integer> counts = new HashMap<>();
+        for (int i = 0; i < IDENTIFIERS; i++) {
+            counts.merge(ring.shardFor("IP:" + i), 1, Integer::sum);
+        }
+
+        // A third each, within the skew 160 virtual nodes leave
+        for (RedisTemplate<String, Object> shard : shards) {
+            assertThat(counts.get(shard)).isBetween(IDENTIFIERS / 4, IDENTIFIERS * 5 / 12);
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesItsShareToTheNewNode() {
+        addNodes("10.0.0.1:6379", "10.0.0.2:6379", "10.0.0.3:6379");
+        Map<String, RedisTemplate<String, Object>> before = new HashMap<>();
+        for (int i = 0; i < IDENTIFIERS; i++) {
+            before.put("IP:" + i, ring.shardFor("IP:" + i));
+        }
+
+        RedisTemplate<String, Object> added = addNodes("10.0.0.4:6379").get(0);
+
+        int moved = 0;
+        for (Map.Entry<String, RedisTemplate<String, Object>> entry : before.entrySet()) {
+            RedisTemplate<String, Object> now = ring.shardFor(entry.getKey());
+            if (now != entry.getValue()) {
+                assertThat(now).isSameAs(added);
+                moved++;
+            }
+        }
+        // ~1/4 of the identifiers, nothing reshuffled between the old nodes
+        assertThat(moved).isBetween(IDENTIFIERS / 6, IDENTIFIERS / 3);
+    }
+
+    private List<RedisTemplate<String, Object>> addNodes(String... addresses) {
+        return Arrays.stream(addresses).map(address -> {
+            RedisTemplate<String, Object> template = new RedisTemplate<>();
+            ring.addNode(address, template);
+            return template;
+        }).toList();
+    }
+}
@@ -0,0 +1,107 @@
+package com.patniom.api_guardian.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowAlgorithmTest {
+
+    private static final long WINDOW = 1000;
+    private static final long LIMIT = 10;
+    private static final long START = 1_700_000_000_000L; // Window boundary (ms)
+
+    private final long[] state = new long[3];
+
+    @Test
+    void limitIsAdmittedWithinOneWindow() {
+        for (int i = 1; i <= LIMIT; i++) {
+            LimiterOutcome outcome = evaluate(START + 10);
+            assertThat(outcome.isAllowed()).isTrue();
+            assertThat(outcome.getRemaining()).isEqualTo(LIMIT - i);
+            assertThat(outcome.getResetEpochMs()).isEqualTo(START + WINDOW);
+        }
+
+        assertThat(evaluate(START + 10).isAllowed()).isFalse();
+        assertThat(state).containsExactly(START / WINDOW, LIMIT, 0);
+    }
+
+    @Test
+    void fullCurrentWindowRetriesOnceThePreviousWeightHasDecayed() {
+        fill(START);
+
+        // The next window starts with previous = 10 at full weight; one slot frees 10% into it
+        LimiterOutcome rejected = evaluate(START);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryMs()).isEqualTo(WINDOW + 100);
+
+        assertThat(evaluate(START + WINDOW).isAllowed()).isFalse();
+        assertThat(evaluate(START + WINDOW + 99).isAllowed()).isFalse();
+        assertThat(evaluate(START + WINDOW + 100).isAllowed()).isTrue();
+    }
+
+    @Test
+    void previousWindowIsWeightedByTheRemainingOverlap() {
+        fill(START);
+        long now = START + WINDOW + WINDOW / 2; // previous counts 50%: 5 of 10 left
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(evaluate(now).isAllowed()).isTrue();
+        }
+        LimiterOutcome rejected = evaluate(now);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getRetryMs()).isEqualTo(100);
+        assertThat(state).containsExactly(START / WINDOW + 1, 5, LIMIT);
+
+        assertThat(evaluate(now + rejected.getRetryMs() + 1).isAllowed()).isTrue();
+    }
+
+    @Test
+    void stateOlderThanOneWindowIsForgotten() {
+        fill(START);
+
+        LimiterOutcome outcome = evaluate(START + 2 * WINDOW);
+        assertThat(outcome.isAllowed()).isTrue();
+        assertThat(outcome.getRemaining()).isEqualTo(LIMIT - 1);
+        assertThat(state).containsExactly(START / WINDOW + 2, 1, 0);
+    }
+
+    @Test
+    void checkWithoutCommitLeavesStateUntouched() {
+        evaluate(START);
+        long[] before = state.clone();
+
+        LimiterOutcome outcome = SlidingWindowAlgorithm.evaluateWindow(state, 0, START + 1, LIMIT, WINDOW, false);
+
+        assertThat(outcome.isAllowed()).isTrue();
+        assertThat(outcome.getRemaining()).isEqualTo(LIMIT - 2);
+        assertThat(state).containsExactly(before);
+    }
+
+    @Test
+    void windowAtAnOffsetOnlyTouchesItsOwnSlots() {
+        long[] record = new long[6];
+        SlidingWindowAlgorithm.evaluateWindow(record, 3, START, LIMIT, WINDOW, true);
+
+        assertThat(record).containsExactly(0, 0, 0, START / WINDOW, 1, 0);
+    }
+
+    @Test
+    void algorithmEvaluatesInMicroseconds() {
+        RateLimitConfig config = RateLimitConfig.builder().capacity(2).refillIntervalMs(WINDOW).build();
+        SlidingWindowAlgorithm algorithm = new SlidingWindowAlgorithm();
+
+        assertThat(algorithm.evaluate(state, START * 1000, config).isAllowed()).isTrue();
+        assertThat(algorithm.evaluate(state, START * 1000, config).isAllowed()).isTrue();
+        assertThat(algorithm.evaluate(state, START * 1000, config).isAllowed()).isFalse();
+    }
+
+    private void fill(long window) {
+        for (int i = 0; i < LIMIT; i++) {
+            evaluate(window);
+        }
+    }
+
+    private LimiterOutcome evaluate(long now) {
+        return SlidingWindowAlgorithm.evaluateWindow(state, 0, now, LIMIT, WINDOW, true);
+    }
+}
@@ -0,0 +1,142 @@
+package com.patniom.api_guardian.ratelimit;
+
+import com.patniom.api_guardian.audit.AuditDecision;
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenLeaseManagerTest {
+
+    private static final String ID = "USER:alice";
+    private static final long INTERVAL = 60_000;
+
+    private static final RateLimitConfig CONFIG = RateLimitConfig.builder()
+            .capacity(10_000)
+            .refillIntervalMs(INTERVAL)
+            .build();
+
+    private final TokenLeaseManager manager = new TokenLeaseManager();
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+
+    // Script replies in order; each call's arguments are kept
+    private final Deque<Object> replies = new ArrayDeque<>();
+    private final List<Object[]> calls = new ArrayList<>();
+    private final RedisBatchDispatcher dispatcher = Mockito.mock(RedisBatchDispatcher.class, invocation -> {
+        calls.add(invocation.getArguments());
+        return replies.poll();
+    });
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(manager, "redisBatchDispatcher", dispatcher);
+        ReflectionTestUtils.setField(manager, "metricsService", metricsService);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "minCapacity", 1000L);
+        ReflectionTestUtils.setField(manager, "leaseTargetMs", 2000L);
+        ReflectionTestUtils.setField(manager, "maxFraction", 0.1);
+        ReflectionTestUtils.setField(manager, "idleReturnMs", 5000L);
+    }
+
+    @Test
+    void leaseSizeCoversTheTargetAtTheObservedRate() {
+        assertThat(manager.leaseSize(0, CONFIG)).isEqualTo(1); // Unknown rate: one token
+        assertThat(manager.leaseSize(100, CONFIG)).isEqualTo(200); // 100/s for 2s
+        assertThat(manager.leaseSize(0.3, CONFIG)).isEqualTo(1); // Rounded up
+        assertThat(manager.leaseSize(1_000_000, CONFIG)).isEqualTo(1000); // 10% of capacity
+    }
+
+    @Test
+    void leaseSizeNeverDropsBelowOneToken() {
+        RateLimitConfig tiny = RateLimitConfig.builder().capacity(5).refillIntervalMs(INTERVAL).build();
+
+        assertThat(manager.leaseSize(1_000_000, tiny)).isEqualTo(1);
+    }
+
+    @Test
+    void onlyLargePlainTokenBucketsLease() {
+        assertThat(manager.isEligible(CONFIG)).isTrue();
+        assertThat(manager.isEligible(RateLimitConfig.builder()
+                .capacity(999).refillIntervalMs(INTERVAL).build())).isFalse();
+        assertThat(manager.isEligible(RateLimitConfig.builder()
+                .capacity(10_000).refillIntervalMs(INTERVAL).strategy(RateLimitStrategy.GCRA).build())).isFalse();
+        assertThat(manager.isEligible(RateLimitConfig.builder()
+                .capacity(10_000).refillIntervalMs(INTERVAL).requestsPerHour(50_000L).build())).isFalse();
+    }
+
+    @Test
+    void leasedTokensAreSpentLocallyUntilGone() {
+        assertThat(manager.trySpend(ID, CONFIG)).isNull(); // No lease yet
+        replyLease(5, 0, 9_000);
+
+        GuardDecision leased = manager.tryLease(ID, CONFIG);
+        assertThat(leased.getDecision()).isEqualTo(AuditDecision.ALLOW);
+        assertThat(leased.getRemaining()).isEqualTo(4 + 9_000); // Lease balance plus the central bucket
+
+        for (int i = 3; i >= 0; i--) {
+            GuardDecision local = manager.trySpend(ID, CONFIG);
+            assertThat(local.getDecision()).isEqualTo(AuditDecision.ALLOW);
+            assertThat(local.getRemaining()).isEqualTo(i + 9_000);
+        }
+        assertThat(manager.trySpend(ID, CONFIG)).isNull();
+        assertThat(calls.size()).isEqualTo(1);
+    }
+
+    @Test
+    void leaseDiesWhenTheCentralWindowRefills() {
+        replyLease(5, INTERVAL + 1, 0); // Window already over on arrival
+        manager.tryLease(ID, CONFIG);
+
+        assertThat(manager.trySpend(ID, CONFIG)).isNull();
+        Mockito.verify(metricsService).recordLeaseTokensExpired(4);
+
+        // The next renewal takes a fresh lease from the refilled bucket
+        replyLease(5, 0, 9_995);
+        assertThat(manager.tryLease(ID, CONFIG).getRemaining()).isEqualTo(4 + 9_995);
+        assertThat(manager.trySpend(ID, CONFIG)).isNotNull();
+    }
+
+    @Test
+    void emptyCentralBucketIsNotAskedAgainRightAway() {
+        replyLease(0, 0, 0);
+
+        assertThat(manager.tryLease(ID, CONFIG)).isNull();
+        assertThat(manager.tryLease(ID, CONFIG)).isNull();
+        assertThat(calls.size()).isEqualTo(1);
+    }
+
+    @Test
+    void idleLeaseIsHandedBackToItsWindow() {
+        long window = replyLease(5, 0, 0);
+        manager.tryLease(ID, CONFIG);
+        ReflectionTestUtils.setField(manager, "idleReturnMs", 0L);
+        replies.add(4L);
+
+        manager.returnIdleLeases();
+
+        assertThat(calls.size()).isEqualTo(2);
+        Object[] returned = calls.get(1);
+        assertThat(returned[2]).isEqualTo(4L); // Tokens
+        assertThat(returned[3]).isEqualTo(window);
+        Mockito.verify(metricsService).recordLeaseTokensReturned(4);
+        assertThat(manager.trySpend(ID, CONFIG)).isNull();
+    }
+
+    /**
+     * Queue a lease script reply; ageMs = how far into its window the bucket is
+     */
+    private long replyLease(long granted, long ageMs, long central) {
+        long now = System.currentTimeMillis();
+        long lastRefill = now - ageMs;
+        replies.add(List.of(granted, lastRefill, now, central));
+        return lastRefill;
+    }
+}
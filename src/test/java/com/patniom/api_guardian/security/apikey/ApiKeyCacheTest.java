@@ -0,0 +1,248 @@
+package com.patniom.api_guardian.security.apikey;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiKeyCacheTest {
+
+    private static final String CHANNEL = "apikeys:invalidate";
+
+    private final ApiKeyCache cache = new ApiKeyCache();
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = Mockito.mock(RedisTemplate.class);
+
+    // Stored keys by hash, and how often each hash was loaded
+    private final Map<String, ApiKey> store = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, ApiKey> loader = hash -> {
+        loads.incrementAndGet();
+        return store.get(hash);
+    };
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "metricsService", metricsService);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "channel", CHANNEL);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "negativeTtlMs", 10_000L);
+        ReflectionTestUtils.setField(cache, "loadWaitMs", 2000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        Mockito.doReturn(RedisSerializer.string()).when(redisTemplate).getValueSerializer();
+
+        store.put("hash-1", key("key-1", "hash-1", ApiKey.ApiKeyStatus.ACTIVE));
+    }
+
+    @Test
+    void knownKeyIsLoadedOnce() {
+        ApiKeyAuth first = cache.get("hash-1", loader);
+        ApiKeyAuth second = cache.get("hash-1", loader);
+
+        assertThat(first.id()).isEqualTo("key-1");
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        Mockito.verify(metricsService).recordApiKeyCache("hit");
+    }
+
+    @Test
+    void unknownHashIsCachedUntilAKeyIsCreatedForIt() {
+        assertThat(cache.get("hash-2", loader)).isNull();
+        assertThat(cache.get("hash-2", loader)).isNull();
+        assertThat(loads.get()).isEqualTo(1);
+
+        store.put("hash-2", key("key-2", "hash-2", ApiKey.ApiKeyStatus.ACTIVE));
+        cache.evictUnknown("hash-2");
+
+        assertThat(cache.get("hash-2", loader).id()).isEqualTo("key-2");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void inactiveKeyIsCachedAsUnusable() {
+        store.put("hash-2", key("key-2", "hash-2", ApiKey.ApiKeyStatus.REVOKED));
+
+        assertThat(cache.get("hash-2", loader)).isNull();
+        assertThat(cache.get("hash-2", loader)).isNull();
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, ApiKey> slowLoader = hash -> {
+            entered.countDown();
+            await(release);
+            return loader.apply(hash);
+        };
+
+        List<ApiKeyAuth> results = new ArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread caller = new Thread(() -> {
+                ApiKeyAuth auth = cache.get("hash-1", slowLoader);
+                synchronized (results) {
+                    results.add(auth);
+                }
+            });
+            caller.start();
+            callers.add(caller);
+            if (i == 0) {
+                assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+
+        // Everyone else is parked on the first caller's load
+        Mockito.verify(metricsService, Mockito.timeout(2000).times(7)).recordApiKeyCache("coalesced");
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(results.size()).isEqualTo(8);
+        assertThat(results).allMatch(auth -> auth != null && auth.id().equals("key-1"));
+    }
+
+    @Test
+    void stuckLoadIsNotWaitedOnForever() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "loadWaitMs", 50L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = new Thread(() -> cache.get("hash-1", hash -> {
+            entered.countDown();
+            await(release);
+            return loader.apply(hash);
+        }));
+        first.start();
+        assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(cache.get("hash-1", loader).id()).isEqualTo("key-1");
+
+        Mockito.verify(metricsService).recordApiKeyCache("coalesced-timeout");
+        release.countDown();
+        first.join();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failedLoadReachesTheCoalescedCallersAndIsNotCached() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = new Thread(() -> {
+            try {
+                cache.get("hash-1", hash -> {
+                    entered.countDown();
+                    await(release);
+                    throw new IllegalStateException("mongo down");
+                });
+            } catch (IllegalStateException expected) {
+                // The loading caller sees it too
+            }
+        });
+        first.start();
+        assertThat(entered.await(2, TimeUnit.SECONDS)).isTrue();
+
+        Thread releaser = new Thread(() -> {
+            Mockito.verify(metricsService, Mockito.timeout(2000)).recordApiKeyCache("coalesced");
+            release.countDown();
+        });
+        releaser.start();
+        assertThatThrownBy(() -> cache.get("hash-1", loader))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("mongo down");
+        first.join();
+        releaser.join();
+
+        assertThat(cache.get("hash-1", loader).id()).isEqualTo("key-1");
+    }
+
+    @Test
+    void invalidateEvictsLocallyAndPublishes() {
+        cache.get("hash-1", loader);
+
+        cache.invalidate("key-1");
+
+        Mockito.verify(redisTemplate).convertAndSend(CHANNEL, "key-1");
+        cache.get("hash-1", loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidationFromAnotherNodeEvicts() {
+        cache.get("hash-1", loader);
+
+        cache.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "key-1".getBytes(StandardCharsets.UTF_8)), null);
+
+        cache.get("hash-1", loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void loadRacingAnEvictionIsNotCached() {
+        ApiKeyAuth auth = cache.get("hash-1", hash -> {
+            cache.evict("key-1"); // Key changed while the load was out
+            return loader.apply(hash);
+        });
+
+        assertThat(auth.id()).isEqualTo("key-1");
+        cache.get("hash-1", loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void fullCacheIsDroppedRatherThanGrowing() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        for (int i = 2; i <= 3; i++) {
+            store.put("hash-" + i, key("key-" + i, "hash-" + i, ApiKey.ApiKeyStatus.ACTIVE));
+        }
+
+        cache.get("hash-1", loader);
+        cache.get("hash-2", loader);
+        cache.get("hash-3", loader); // Map full - dropped before this one is stored
+        cache.get("hash-1", loader);
+
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    private static ApiKey key(String id, String hash, ApiKey.ApiKeyStatus status) {
+        return ApiKey.builder()
+                .id(id)
+                .keyValue(hash)
+                .userId("user-1")
+                .status(status)
+                .tier(ApiKey.RateLimitTier.BASIC)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
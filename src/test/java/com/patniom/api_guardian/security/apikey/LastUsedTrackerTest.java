@@ -0,0 +1,113 @@
+package com.patniom.api_guardian.security.apikey;
+
+import com.patniom.api_guardian.metrics.MetricsService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LastUsedTrackerTest {
+
+    private final LastUsedTracker tracker = new LastUsedTracker();
+    private final MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+    private final MetricsService metricsService = Mockito.mock(MetricsService.class);
+    private final BulkOperations bulk = Mockito.mock(BulkOperations.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tracker, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(tracker, "metricsService", metricsService);
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class)).thenReturn(bulk);
+    }
+
+    @Test
+    void nothingRecordedMeansNoWrite() {
+        tracker.flush();
+
+        Mockito.verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void repeatedUsesBecomeOneMaxUpdatePerKey() {
+        for (int i = 0; i < 100; i++) {
+            tracker.recordUse("key-1");
+            tracker.recordUse("key-2");
+        }
+
+        tracker.flush();
+
+        List<Update> updates = captureUpdates(2);
+        assertThat(updates).allMatch(update -> update.getUpdateObject().containsKey("$max"));
+        Mockito.verify(bulk).execute();
+        Mockito.verify(metricsService).recordApiKeyWriteBehind(2);
+    }
+
+    @Test
+    void expiryOnlyAppliesToKeysStillActive() {
+        tracker.recordExpired("key-1");
+
+        tracker.flush();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(bulk).updateOne(query.capture(), update.capture());
+        assertThat(query.getValue().getQueryObject().get("status")).isEqualTo(ApiKey.ApiKeyStatus.ACTIVE);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("status"))
+                .isEqualTo(ApiKey.ApiKeyStatus.EXPIRED);
+    }
+
+    @Test
+    void flushedChangesAreNotWrittenAgain() {
+        tracker.recordUse("key-1");
+        tracker.recordExpired("key-2");
+        tracker.flush();
+
+        tracker.flush();
+
+        Mockito.verify(mongoTemplate, Mockito.times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, ApiKey.class);
+    }
+
+    @Test
+    void failedFlushKeepsItsChangesForTheNextOne() {
+        tracker.recordUse("key-1");
+        tracker.recordExpired("key-2");
+        Mockito.when(bulk.execute())
+                .thenThrow(new IllegalStateException("mongo down"))
+                .thenReturn(null);
+
+        tracker.flush();
+        tracker.flush();
+
+        // Both changes written by each flush; counted only once they land
+        captureUpdates(4);
+        Mockito.verify(bulk, Mockito.times(2)).execute();
+        Mockito.verify(metricsService).recordApiKeyWriteBehind(2);
+    }
+
+    @Test
+    void disabledTrackerRecordsNoUses() {
+        ReflectionTestUtils.setField(tracker, "enabled", false);
+
+        tracker.recordUse("key-1");
+        tracker.flush();
+
+        Mockito.verifyNoInteractions(mongoTemplate);
+    }
+
+    private List<Update> captureUpdates(int count) {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(bulk, Mockito.times(count)).updateOne(Mockito.any(Query.class), update.capture());
+        return update.getAllValues();
+    }
+}
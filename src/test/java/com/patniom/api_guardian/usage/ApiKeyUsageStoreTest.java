@@ -0,0 +1,68 @@
+package com.patniom.api_guardian.usage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiKeyUsageStoreTest {
+
+    private final ApiKeyUsageStore store = new ApiKeyUsageStore();
+    private final Instant now = Instant.now();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "minuteRetentionHours", 48L);
+        ReflectionTestUtils.setField(store, "hourRetentionDays", 90L);
+        ReflectionTestUtils.setField(store, "dayRetentionDays", 730L);
+    }
+
+    @Test
+    void recentShortRangesUseMinutes() {
+        assertThat(store.autoGranularity(now.minus(Duration.ofHours(1)), now)).isEqualTo(UsageGranularity.MINUTE);
+        assertThat(store.autoGranularity(now.minus(Duration.ofHours(6)), now)).isEqualTo(UsageGranularity.MINUTE);
+    }
+
+    @Test
+    void longerRangesUseCoarserBuckets() {
+        assertThat(store.autoGranularity(now.minus(Duration.ofHours(7)), now)).isEqualTo(UsageGranularity.HOUR);
+        assertThat(store.autoGranularity(now.minus(Duration.ofDays(14)), now)).isEqualTo(UsageGranularity.HOUR);
+        assertThat(store.autoGranularity(now.minus(Duration.ofDays(15)), now)).isEqualTo(UsageGranularity.DAY);
+    }
+
+    @Test
+    void rangesOlderThanARetentionSkipThatGranularity() {
+        Instant threeDaysAgo = now.minus(Duration.ofDays(3));
+        assertThat(store.autoGranularity(threeDaysAgo, threeDaysAgo.plus(Duration.ofHours(1))))
+                .isEqualTo(UsageGranularity.HOUR);
+
+        Instant hundredDaysAgo = now.minus(Duration.ofDays(100));
+        assertThat(store.autoGranularity(hundredDaysAgo, hundredDaysAgo.plus(Duration.ofHours(1))))
+                .isEqualTo(UsageGranularity.DAY);
+    }
+
+    @Test
+    void retentionIsReadFromSettings() {
+        ReflectionTestUtils.setField(store, "minuteRetentionHours", 1L);
+
+        assertThat(store.autoGranularity(now.minus(Duration.ofHours(2)), now)).isEqualTo(UsageGranularity.HOUR);
+    }
+
+    @Test
+    void rangeNeedingTooManyBucketsIsRejected() {
+        assertThatThrownBy(() -> store.stats("key", now.minus(Duration.ofDays(2)), now, UsageGranularity.MINUTE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("max 1500");
+    }
+
+    @Test
+    void recordingNothingSucceedsWithoutAWrite() {
+        assertThat(store.record(List.of())).isTrue();
+    }
+}
@@ -0,0 +1,41 @@
+package com.patniom.api_guardian.usage;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageGranularityTest {
+
+    private static final long AT = Instant.parse("2026-03-14T15:09:26.535Z").toEpochMilli();
+
+    @Test
+    void truncatesToTheUtcBucketStart() {
+        assertThat(UsageGranularity.MINUTE.truncate(AT)).isEqualTo(Instant.parse("2026-03-14T15:09:00Z").toEpochMilli());
+        assertThat(UsageGranularity.HOUR.truncate(AT)).isEqualTo(Instant.parse("2026-03-14T15:00:00Z").toEpochMilli());
+        assertThat(UsageGranularity.DAY.truncate(AT)).isEqualTo(Instant.parse("2026-03-14T00:00:00Z").toEpochMilli());
+    }
+
+    @Test
+    void bucketStartIsItsOwnBucket() {
+        for (UsageGranularity granularity : UsageGranularity.values()) {
+            long start = granularity.truncate(AT);
+            assertThat(granularity.truncate(start)).isEqualTo(start);
+            assertThat(granularity.truncate(start + granularity.getMillis() - 1)).isEqualTo(start);
+            assertThat(granularity.truncate(start + granularity.getMillis())).isEqualTo(start + granularity.getMillis());
+        }
+    }
+
+    @Test
+    void timesBeforeTheEpochRoundDown() {
+        assertThat(UsageGranularity.MINUTE.truncate(-1)).isEqualTo(-60_000L);
+        assertThat(UsageGranularity.DAY.truncate(-1)).isEqualTo(-86_400_000L);
+    }
+
+    @Test
+    void everyCoarserBucketHoldsWholeFinerOnes() {
+        assertThat(UsageGranularity.HOUR.getMillis() % UsageGranularity.MINUTE.getMillis()).isZero();
+        assertThat(UsageGranularity.DAY.getMillis() % UsageGranularity.HOUR.getMillis()).isZero();
+    }
+}